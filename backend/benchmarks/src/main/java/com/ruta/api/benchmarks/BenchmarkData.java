@@ -0,0 +1,133 @@
+package com.ruta.api.benchmarks;
+
+import com.ruta.api.model.CompactGraph;
+import com.ruta.api.model.Graph;
+import com.ruta.api.model.RouteResult;
+import com.ruta.api.model.RoutingAlgorithm;
+import com.ruta.api.util.ConnectionCsvParser;
+import com.ruta.api.util.CsvFormatException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Inputs shared by the benchmarks. A dataset is either {@code large-test-data}, the CSV at the root of the
+ * repository, or {@code synthetic-<edges>}, a seeded random graph of that many connections.
+ */
+final class BenchmarkData {
+    static final String LARGE_TEST_DATA = "large-test-data";
+    static final String SYNTHETIC_PREFIX = "synthetic-";
+    static final long SEED = 42L;
+
+    private static final String HEADER = "loc_start;loc_end;time\n";
+
+    private BenchmarkData() {
+    }
+
+    // Upload bytes of the dataset, header line included
+    static byte[] csv(String dataset) throws IOException {
+        if (dataset.equals(LARGE_TEST_DATA)) {
+            return Files.readAllBytes(locate(LARGE_TEST_DATA + ".csv"));
+        }
+        if (dataset.startsWith(SYNTHETIC_PREFIX)) {
+            return syntheticCsv(Integer.parseInt(dataset.substring(SYNTHETIC_PREFIX.length())), SEED);
+        }
+        throw new IllegalArgumentException("Unknown dataset: " + dataset);
+    }
+
+    // CsvValidator has no header handling, so it gets the rows only
+    static byte[] withoutHeader(byte[] csv) {
+        int newline = 0;
+        while (newline < csv.length && csv[newline] != '\n') {
+            newline++;
+        }
+        return Arrays.copyOfRange(csv, Math.min(newline + 1, csv.length), csv.length);
+    }
+
+    static Graph graph(byte[] csv) throws IOException {
+        try {
+            return new ConnectionCsvParser().parse(new ByteArrayInputStream(csv));
+        } catch (CsvFormatException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Road-like network with roughly four connections per location: a ring keeps every location reachable,
+     * most other connections go to a nearby location and one in ten is a longer, slower shortcut.
+     */
+    static byte[] syntheticCsv(int edges, long seed) {
+        Random random = new Random(seed);
+        int locations = Math.max(16, edges / 4);
+        StringBuilder csv = new StringBuilder(HEADER.length() + edges * 20).append(HEADER);
+        for (int i = 0; i < edges; i++) {
+            int source;
+            int target;
+            int time;
+            if (i < locations) {
+                source = i;
+                target = (i + 1) % locations;
+                time = 1 + random.nextInt(200);
+            } else if (random.nextInt(10) > 0) {
+                source = random.nextInt(locations);
+                int offset = 1 + random.nextInt(32);
+                target = Math.floorMod(source + (random.nextBoolean() ? offset : -offset), locations);
+                time = 1 + random.nextInt(200);
+            } else {
+                source = random.nextInt(locations);
+                target = random.nextInt(locations);
+                time = 200 + random.nextInt(1800);
+            }
+            csv.append('L').append(source).append(";L").append(target).append(';').append(time).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // count origin/destination pairs of distinct locations, as two arrays of names
+    static String[][] randomPairs(CompactGraph graph, int count, long seed) {
+        Random random = new Random(seed);
+        String[] origins = new String[count];
+        String[] destinations = new String[count];
+        for (int i = 0; i < count; i++) {
+            int from = random.nextInt(graph.nodeCount());
+            int to = random.nextInt(graph.nodeCount() - 1);
+            origins[i] = graph.nameOf(from);
+            destinations[i] = graph.nameOf(to >= from ? to + 1 : to);
+        }
+        return new String[][] {origins, destinations};
+    }
+
+    // Of the sampled pairs, the one whose plain Dijkstra search settles the most locations
+    static String[] worstCasePair(CompactGraph graph, int samples, long seed) {
+        String[][] pairs = randomPairs(graph, samples, seed);
+        String[] worst = null;
+        int mostSettled = -1;
+        for (int i = 0; i < samples; i++) {
+            RouteResult result = graph.findRoute(pairs[0][i], pairs[1][i], RoutingAlgorithm.DIJKSTRA);
+            if (result.getSettledNodes() > mostSettled) {
+                mostSettled = result.getSettledNodes();
+                worst = new String[] {pairs[0][i], pairs[1][i]};
+            }
+        }
+        return worst;
+    }
+
+    // The file in the working directory or the closest parent that has it, so runs work from any module
+    private static Path locate(String fileName) throws IOException {
+        String configured = System.getProperty("benchmark.data.dir");
+        if (configured != null) {
+            return Path.of(configured, fileName);
+        }
+        for (Path dir = Path.of("").toAbsolutePath(); dir != null; dir = dir.getParent()) {
+            if (Files.isRegularFile(dir.resolve(fileName))) {
+                return dir.resolve(fileName);
+            }
+        }
+        throw new IOException(fileName + " not found; set -Dbenchmark.data.dir to the directory that has it");
+    }
+}
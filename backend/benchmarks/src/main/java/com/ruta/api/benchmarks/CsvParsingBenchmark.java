@@ -0,0 +1,96 @@
+package com.ruta.api.benchmarks;
+
+import com.ruta.api.model.Connection;
+import com.ruta.api.model.Graph;
+import com.ruta.api.util.ConnectionCsvParser;
+import com.ruta.api.util.CsvFormatException;
+import com.ruta.api.util.CsvValidator;
+import com.ruta.api.util.MappedCsvIngestor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning upload bytes into connections: the old {@link CsvValidator}, the String-based upload loop the
+ * byte-level parser replaced, the streaming parser the upload endpoint uses and the parallel ingestor it
+ * switches to for large files.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CsvParsingBenchmark {
+    @Param({"large-test-data", "synthetic-10000", "synthetic-100000", "synthetic-1000000"})
+    public String dataset;
+
+    private byte[] csv;
+    private MockMultipartFile rows;
+    private Path spooled;
+
+    @Setup
+    public void setUp() throws IOException {
+        csv = BenchmarkData.csv(dataset);
+        rows = new MockMultipartFile("file", "connections.csv", "text/csv", BenchmarkData.withoutHeader(csv));
+        spooled = Files.createTempFile("benchmark-", ".csv");
+        Files.write(spooled, csv);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(spooled);
+    }
+
+    @Benchmark
+    public List<Connection> csvValidator() throws IOException {
+        return CsvValidator.parseCSV(rows);
+    }
+
+    // The upload loop as it was before the byte-level parser: a String per line, split and trimmed
+    @Benchmark
+    public Graph stringParser() throws IOException {
+        Graph graph = new Graph();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(csv), StandardCharsets.UTF_8));
+        reader.readLine();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] parts = line.split(";");
+            graph.addConnection(new Connection(parts[0].trim(), parts[1].trim(), Integer.parseInt(parts[2].trim())));
+        }
+        return graph;
+    }
+
+    @Benchmark
+    public Graph uploadParser() throws IOException, CsvFormatException {
+        return new ConnectionCsvParser().parse(new ByteArrayInputStream(csv));
+    }
+
+    @Benchmark
+    public Graph mappedIngestor() throws IOException, CsvFormatException {
+        return new MappedCsvIngestor(spooled, Runtime.getRuntime().availableProcessors()).parse();
+    }
+}
@@ -0,0 +1,59 @@
+package com.ruta.api.benchmarks;
+
+import com.ruta.api.model.CompactGraph;
+import com.ruta.api.model.Connection;
+import com.ruta.api.model.Graph;
+import com.ruta.api.util.CsvValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Graph construction from already parsed connections: staging them in a {@link Graph}, and freezing that
+ * into the {@link CompactGraph} queries run on.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GraphBuildBenchmark {
+    @Param({"large-test-data", "synthetic-10000", "synthetic-100000", "synthetic-1000000"})
+    public String dataset;
+
+    private List<Connection> connections;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] rows = BenchmarkData.withoutHeader(BenchmarkData.csv(dataset));
+        connections = CsvValidator.parseCSV(new MockMultipartFile("file", rows));
+    }
+
+    @Benchmark
+    public Graph addConnections() {
+        Graph graph = new Graph();
+        for (Connection connection : connections) {
+            graph.addConnection(connection);
+        }
+        return graph;
+    }
+
+    @Benchmark
+    public CompactGraph addConnectionsAndCompact() {
+        return addConnections().compact();
+    }
+}
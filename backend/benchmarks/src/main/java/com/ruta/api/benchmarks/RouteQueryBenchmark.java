@@ -0,0 +1,115 @@
+package com.ruta.api.benchmarks;
+
+import com.ruta.api.model.CompactGraph;
+import com.ruta.api.model.ContractionHierarchy;
+import com.ruta.api.model.Graph;
+import com.ruta.api.model.LandmarkIndex;
+import com.ruta.api.model.LandmarkSelection;
+import com.ruta.api.model.RouteResult;
+import com.ruta.api.model.RoutingAlgorithm;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Graph#findShortestRoute} on a frozen graph without landmarks or hierarchy, cycling through random
+ * pairs, and on the sampled pair whose search has to settle the most locations. {@code algorithm} runs the
+ * same random pairs with each {@link RoutingAlgorithm} on a graph with landmarks and hierarchy attached, and
+ * reports next to the latency how many locations the searches settled.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RouteQueryBenchmark {
+    private static final int PAIRS = 1024;
+    private static final int WORST_CASE_SAMPLES = 256;
+
+    @Param({"large-test-data", "synthetic-10000", "synthetic-100000", "synthetic-1000000"})
+    public String dataset;
+
+    private Graph graph;
+    private String[] origins;
+    private String[] destinations;
+    private String[] worstCase;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        graph = BenchmarkData.graph(BenchmarkData.csv(dataset));
+        CompactGraph compact = graph.compact();
+        String[][] pairs = BenchmarkData.randomPairs(compact, PAIRS, BenchmarkData.SEED);
+        origins = pairs[0];
+        destinations = pairs[1];
+        worstCase = BenchmarkData.worstCasePair(compact, WORST_CASE_SAMPLES, BenchmarkData.SEED + 1);
+    }
+
+    @State(Scope.Thread)
+    public static class Preprocessed {
+        @Param({"DIJKSTRA", "BIDIRECTIONAL", "ALT", "CH"})
+        public RoutingAlgorithm algorithm;
+
+        private CompactGraph graph;
+
+        @Setup
+        public void setUp(RouteQueryBenchmark benchmark) {
+            graph = benchmark.graph.compact();
+            graph.attachLandmarks(LandmarkIndex.build(graph, 8, LandmarkSelection.FARTHEST, BenchmarkData.SEED));
+            graph.attachHierarchy(ContractionHierarchy.build(graph));
+        }
+    }
+
+    // Totals per iteration; settledNodes / queries is the average per search
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class SearchWork {
+        public long queries;
+        public long settledNodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            queries = 0;
+            settledNodes = 0;
+        }
+    }
+
+    @Benchmark
+    public RouteResult algorithm(Preprocessed preprocessed, SearchWork work) {
+        int pair = next;
+        next = (pair + 1) % PAIRS;
+        RouteResult result = preprocessed.graph.findRoute(origins[pair], destinations[pair], preprocessed.algorithm);
+        work.queries++;
+        if (result != null) {
+            work.settledNodes += result.getSettledNodes();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<String> randomPair() {
+        int pair = next;
+        next = (pair + 1) % PAIRS;
+        return graph.findShortestRoute(origins[pair], destinations[pair]);
+    }
+
+    @Benchmark
+    public List<String> worstCasePair() {
+        return graph.findShortestRoute(worstCase[0], worstCase[1]);
+    }
+}
@@ -0,0 +1,75 @@
+package com.ruta.api.benchmarks;
+
+import com.ruta.api.model.CompactGraph;
+import com.ruta.api.model.Graph;
+import com.ruta.api.service.CompanyGraphService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CompanyGraphService#calculateRouteTime} over routes the graph actually has. It is benchmarked as a
+ * public service API for callers that already hold a route; the route endpoints take the total time from the
+ * search itself and do not call it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RouteTimeBenchmark {
+    private static final String COMPANY_ID = "benchmark";
+    private static final int ROUTES = 1024;
+
+    @Param({"large-test-data", "synthetic-10000", "synthetic-100000", "synthetic-1000000"})
+    public String dataset;
+
+    private CompanyGraphService service;
+    private List<List<String>> routes;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        service = new CompanyGraphService();
+        // No background index builds competing with the measurement; route times do not use them
+        ReflectionTestUtils.setField(service, "landmarkCount", 0);
+        ReflectionTestUtils.setField(service, "hierarchyEnabled", false);
+        service.init();
+        Graph graph = BenchmarkData.graph(BenchmarkData.csv(dataset));
+        CompactGraph compact = graph.compact();
+        String[][] pairs = BenchmarkData.randomPairs(compact, ROUTES, BenchmarkData.SEED);
+        routes = new ArrayList<>(ROUTES);
+        for (int i = 0; i < ROUTES; i++) {
+            routes.add(compact.findShortestRoute(pairs[0][i], pairs[1][i]));
+        }
+        service.publishGraph(COMPANY_ID, graph);
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public int calculateRouteTime() {
+        int route = next;
+        next = (route + 1) % ROUTES;
+        return service.calculateRouteTime(COMPANY_ID, routes.get(route));
+    }
+}
@@ -0,0 +1,70 @@
+package com.ruta.api.cache;
+
+/**
+ * 4-bit count-min sketch used as the TinyLFU admission filter. Counters are halved once the
+ * number of increments reaches ten times the table width, so popularity decays over time.
+ * Not thread-safe; {@link RouteCache} only touches it under its eviction lock.
+ */
+final class FrequencySketch {
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int size = Integer.highestOneBit(Math.max(64, expectedEntries) - 1) << 1;
+        table = new long[size];
+        mask = size - 1;
+        sampleSize = 10 * size;
+    }
+
+    int frequency(int hash) {
+        int h = spread(hash);
+        int frequency = 15;
+        for (int i = 0; i < 4; i++) {
+            int offset = counterOffset(h, i);
+            frequency = Math.min(frequency, (int) ((table[indexOf(h, i)] >>> offset) & 0xF));
+        }
+        return frequency;
+    }
+
+    void increment(int hash) {
+        int h = spread(hash);
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(h, i);
+            int offset = counterOffset(h, i);
+            if (((table[index] >>> offset) & 0xF) != 0xF) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions >>>= 1;
+        }
+    }
+
+    private int indexOf(int h, int i) {
+        long hash = (h + SEEDS[i]) * SEEDS[i];
+        hash += hash >>> 32;
+        return (int) hash & mask;
+    }
+
+    // Each 64-bit slot holds sixteen 4-bit counters; a nibble of the hash picks one per row
+    private static int counterOffset(int h, int i) {
+        return ((h >>> (i << 3)) & 0xF) << 2;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,241 @@
+package com.ruta.api.cache;
+
+import com.ruta.api.model.RouteResult;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Size-bounded route cache with W-TinyLFU-style eviction: new entries land in a small LRU window,
+ * and an entry leaving the window only displaces the main region's LRU victim if the frequency
+ * sketch says it is requested more often. Lookups go straight to a concurrent map; recency and
+ * frequency bookkeeping is skipped rather than waited for when the policy lock is busy.
+ */
+public final class RouteCache {
+    private final ConcurrentHashMap<RouteKey, Node> data = new ConcurrentHashMap<>();
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final Node window = Node.sentinel();
+    private final Node main = Node.sentinel();
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long mainMaximum;
+    private long windowWeight;
+    private long mainWeight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RouteCache(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, maximumWeight / 100);
+        this.mainMaximum = maximumWeight - windowMaximum;
+        this.sketch = new FrequencySketch((int) Math.min(1 << 24, Math.max(64, maximumWeight / 256)));
+    }
+
+    public RouteResult get(RouteKey key) {
+        Node node = data.get(key);
+        if (node == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        if (policyLock.tryLock()) {
+            try {
+                sketch.increment(key.hashCode());
+                if (node != null && node.prev != null) {
+                    moveToTail(node);
+                }
+            } finally {
+                policyLock.unlock();
+            }
+        }
+        return node == null ? null : node.value;
+    }
+
+    public void put(RouteKey key, RouteResult value) {
+        long weight = weigh(key, value);
+        if (weight > mainMaximum) {
+            return;
+        }
+        Node node = new Node(key, value, weight);
+        policyLock.lock();
+        try {
+            Node previous = data.put(key, node);
+            if (previous != null) {
+                detach(previous);
+            }
+            append(window, node);
+            windowWeight += weight;
+            evict();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    // Drops every entry whose key matches, e.g. entries of superseded graph versions
+    public void removeIf(Predicate<RouteKey> filter) {
+        policyLock.lock();
+        try {
+            for (Node node : data.values()) {
+                if (filter.test(node.key) && data.remove(node.key, node)) {
+                    detach(node);
+                }
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * Moves every entry whose key matches to the key {@code rekey} returns for it, or drops it when that is
+     * null. Used to carry results a graph delta cannot have changed over to the new graph version; moved
+     * entries keep their place in the eviction order.
+     */
+    public void rekey(Predicate<RouteKey> filter, BiFunction<RouteKey, RouteResult, RouteKey> rekey) {
+        policyLock.lock();
+        try {
+            for (Node node : data.values()) {
+                if (!filter.test(node.key)) {
+                    continue;
+                }
+                RouteKey moved = rekey.apply(node.key, node.value);
+                if (!data.remove(node.key, node)) {
+                    continue;
+                }
+                if (moved == null) {
+                    detach(node);
+                    continue;
+                }
+                Node replacement = new Node(moved, node.value, weigh(moved, node.value));
+                replacement.inMain = node.inMain;
+                replacement.prev = node.prev;
+                replacement.next = node.next;
+                node.prev.next = replacement;
+                node.next.prev = replacement;
+                adjustWeight(replacement, replacement.weight - node.weight);
+                Node displaced = data.put(moved, replacement);
+                if (displaced != null) {
+                    detach(displaced);
+                }
+            }
+            evict();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        removeIf(key -> true);
+    }
+
+    public CacheStats stats() {
+        policyLock.lock();
+        try {
+            return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), data.size(),
+                    windowWeight + mainWeight, maximumWeight);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void evict() {
+        while (windowWeight > windowMaximum) {
+            Node candidate = window.next;
+            unlink(candidate);
+            windowWeight -= candidate.weight;
+            int candidateFrequency = sketch.frequency(candidate.key.hashCode());
+            while (mainWeight + candidate.weight > mainMaximum) {
+                Node victim = main.next;
+                if (victim == main || sketch.frequency(victim.key.hashCode()) >= candidateFrequency) {
+                    break;
+                }
+                remove(victim);
+            }
+            if (mainWeight + candidate.weight > mainMaximum) {
+                remove(candidate); // rejected by the admission filter
+            } else {
+                append(main, candidate);
+                mainWeight += candidate.weight;
+            }
+        }
+    }
+
+    private void remove(Node node) {
+        if (node.prev != null) {
+            detach(node);
+        }
+        data.remove(node.key, node);
+        evictions.increment();
+    }
+
+    private void detach(Node node) {
+        unlink(node);
+        if (node.inMain) {
+            mainWeight -= node.weight;
+        } else {
+            windowWeight -= node.weight;
+        }
+    }
+
+    private void adjustWeight(Node node, long delta) {
+        if (node.inMain) {
+            mainWeight += delta;
+        } else {
+            windowWeight += delta;
+        }
+    }
+
+    private void moveToTail(Node node) {
+        Node list = node.inMain ? main : window;
+        unlink(node);
+        append(list, node);
+    }
+
+    private void append(Node list, Node node) {
+        node.inMain = list == main;
+        node.prev = list.prev;
+        node.next = list;
+        list.prev.next = node;
+        list.prev = node;
+    }
+
+    private static void unlink(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    // Rough heap footprint: node, key, list and one reference per route stop
+    static long weigh(RouteKey key, RouteResult value) {
+        return 160L + 2L * (key.getCompanyId().length() + key.getFrom().length() + key.getTo().length())
+                + 8L * value.getRoute().size();
+    }
+
+    private static final class Node {
+        final RouteKey key;
+        final RouteResult value;
+        final long weight;
+        Node prev;
+        Node next;
+        boolean inMain;
+
+        Node(RouteKey key, RouteResult value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+
+        static Node sentinel() {
+            Node node = new Node(null, null, 0);
+            node.prev = node;
+            node.next = node;
+            return node;
+        }
+    }
+}
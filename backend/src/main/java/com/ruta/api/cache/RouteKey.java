@@ -0,0 +1,68 @@
+package com.ruta.api.cache;
+
+import java.util.Objects;
+
+/**
+ * Identifies one route query against one frozen graph version.
+ */
+public final class RouteKey {
+    private final String companyId;
+    private final long graphVersion;
+    private final String from;
+    private final String to;
+    private final int hash;
+
+    public RouteKey(String companyId, long graphVersion, String from, String to) {
+        this.companyId = companyId;
+        this.graphVersion = graphVersion;
+        this.from = from;
+        this.to = to;
+        int h = companyId.hashCode();
+        h = 31 * h + Long.hashCode(graphVersion);
+        h = 31 * h + from.hashCode();
+        this.hash = 31 * h + to.hashCode();
+    }
+
+    public String getCompanyId() {
+        return companyId;
+    }
+
+    public long getGraphVersion() {
+        return graphVersion;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        RouteKey that = (RouteKey) obj;
+        return hash == that.hash &&
+               graphVersion == that.graphVersion &&
+               Objects.equals(companyId, that.companyId) &&
+               Objects.equals(from, that.from) &&
+               Objects.equals(to, that.to);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "RouteKey{" +
+                "companyId='" + companyId + '\'' +
+                ", graphVersion=" + graphVersion +
+                ", from='" + from + '\'' +
+                ", to='" + to + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,38 @@
+package com.ruta.api.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.regex.Pattern;
+
+/**
+ * Picks the tenant a request works on: the {@code X-Company-Id} header, else the {@code companyId}
+ * parameter, else the default company.
+ */
+final class CompanyIds {
+    static final String HEADER = "X-Company-Id";
+    static final String PARAMETER = "companyId";
+    static final String DEFAULT_COMPANY_ID = "default";
+    static final String INVALID_MESSAGE = "Invalid company id";
+
+    // Ids also name log records and spill files, so they are kept short and plain
+    private static final Pattern VALID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    private CompanyIds() {
+    }
+
+    // The requested company id, or null when the request names one that is not valid
+    static String resolve(HttpServletRequest request) {
+        if (request == null) {
+            return DEFAULT_COMPANY_ID;
+        }
+        String companyId = request.getHeader(HEADER);
+        if (companyId == null) {
+            companyId = request.getParameter(PARAMETER);
+        }
+        if (companyId == null) {
+            return DEFAULT_COMPANY_ID;
+        }
+        companyId = companyId.trim();
+        return VALID.matcher(companyId).matches() ? companyId : null;
+    }
+}
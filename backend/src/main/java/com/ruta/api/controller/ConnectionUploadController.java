@@ -1,18 +1,38 @@
 package com.ruta.api.controller;
 
-import com.ruta.api.model.Connection;
+import com.ruta.api.model.CompactGraph;
+import com.ruta.api.model.Graph;
+import com.ruta.api.model.GraphDelta;
+import com.ruta.api.model.GraphUpdate;
 import com.ruta.api.service.CompanyGraphService;
+import com.ruta.api.service.GraphMemoryStats;
+import com.ruta.api.service.GraphMetrics;
+import com.ruta.api.service.UploadJob;
+import com.ruta.api.service.UploadJobService;
+import com.ruta.api.util.CompressedUploads;
+import com.ruta.api.util.ConnectionCsvParser;
+import com.ruta.api.util.CsvParseEvent;
+import com.ruta.api.util.CsvFormatException;
+import com.ruta.api.util.InvalidCompressedDataException;
+import com.ruta.api.util.MappedCsvIngestor;
+import com.ruta.api.util.ReadAheadInputStream;
+import com.ruta.api.util.UploadTooLargeException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import jakarta.servlet.http.HttpServletRequest;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Logger;
 
 @RestController
@@ -20,86 +40,352 @@ import java.util.logging.Logger;
 public class ConnectionUploadController {
 
     private static final Logger logger = Logger.getLogger(ConnectionUploadController.class.getName());
-    private static final String DEFAULT_COMPANY_ID = "default";
 
     @Autowired
     private CompanyGraphService companyGraphService;
 
+    @Autowired
+    private UploadJobService uploadJobService;
+
+    @Autowired(required = false)
+    private GraphMetrics metrics = GraphMetrics.detached();
+
+    // Uploads at least this large are spooled to disk and parsed in parallel chunks
+    @Value("${upload.parallel.min-bytes:8388608}")
+    private long parallelMinBytes = 8L * 1024 * 1024;
+
+    // Largest body accepted by /ingest
+    @Value("${upload.stream.max-bytes:536870912}")
+    private long streamMaxBytes = 512L * 1024 * 1024;
+
+    // 64 KiB chunks /ingest reads ahead of the parser
+    @Value("${upload.stream.read-ahead-buffers:4}")
+    private int readAheadBuffers = 4;
+
+    // Plain CSV a gzip or deflate upload may inflate to, the most that could have been sent uncompressed
+    @Value("${upload.compressed.max-inflated-bytes:536870912}")
+    private long maxInflatedBytes = 512L * 1024 * 1024;
+
     @PostMapping("/upload")
     public ResponseEntity<String> uploadConnectionsCSV(@RequestParam("file") MultipartFile file, HttpServletRequest request) {
         logger.info("Received request to upload CSV");
-        String companyId = DEFAULT_COMPANY_ID;
-        logger.info("Using default companyId: " + companyId);
-        
+        String companyId = CompanyIds.resolve(request);
+        if (companyId == null) {
+            return ResponseEntity.badRequest().body(CompanyIds.INVALID_MESSAGE);
+        }
+        logger.info("Using companyId: " + companyId);
+
         if (file.isEmpty()) {
             logger.warning("File is empty");
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.EMPTY);
             return ResponseEntity.badRequest().body("File is empty");
         }
         logger.info("Processing file: " + file.getOriginalFilename());
-        int lineNumber = 0;
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
-            String line;
-            companyGraphService.clearGraph(companyId);
-            boolean isFirstLine = true;
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                if (line.trim().isEmpty()) continue;
-                
-                // Skip header line if it contains non-numeric values
-                if (isFirstLine) {
-                    try {
-                        String[] parts = line.split(";");
-                        if (parts.length == 3) {
-                            Integer.parseInt(parts[2].trim());
-                        }
-                    } catch (NumberFormatException e) {
-                        // This is a header line, skip it
-                        isFirstLine = false;
-                        continue;
-                    }
-                    isFirstLine = false;
-                }
-                
-                String[] parts = line.split(";");
-                if (parts.length != 3) {
-                    logger.warning("Invalid format at line " + lineNumber);
-                    return ResponseEntity.badRequest().body("Invalid format at line " + lineNumber);
-                }
-                String source = parts[0].trim();
-                String target = parts[1].trim();
-                int time;
+        int lineNumber;
+        CsvParseEvent parseEvent = null;
+        try {
+            // Built off to the side and only published once every line validated
+            Graph graph;
+            long parseStart;
+            // Compressed files cannot be mapped and cut into chunks, so they always stream through the parser
+            if (file.getSize() >= parallelMinBytes && !isCompressed(file)) {
+                Path spool = Files.createTempFile("connections-", ".csv");
                 try {
-                    time = Integer.parseInt(parts[2].trim());
-                } catch (NumberFormatException e) {
-                    logger.warning("Invalid time at line " + lineNumber);
-                    return ResponseEntity.badRequest().body("Invalid time at line " + lineNumber);
+                    file.transferTo(spool);
+                    parseStart = System.nanoTime();
+                    parseEvent = CsvParseEvent.start(companyId, file.getSize(), true);
+                    MappedCsvIngestor ingestor = new MappedCsvIngestor(spool, Runtime.getRuntime().availableProcessors());
+                    graph = ingestor.parse();
+                    lineNumber = ingestor.lineCount();
+                } finally {
+                    Files.deleteIfExists(spool);
                 }
-                if (source.isEmpty() || target.isEmpty() || time < 0) {
-                    logger.warning("Invalid data at line " + lineNumber);
-                    return ResponseEntity.badRequest().body("Invalid data at line " + lineNumber);
+            } else {
+                parseStart = System.nanoTime();
+                parseEvent = CsvParseEvent.start(companyId, file.getSize(), false);
+                try (InputStream in = CompressedUploads.decode(file.getInputStream(), null, maxInflatedBytes)) {
+                    ConnectionCsvParser parser = new ConnectionCsvParser();
+                    graph = parser.parse(in);
+                    lineNumber = parser.lineCount();
                 }
-                companyGraphService.addConnection(companyId, new Connection(source, target, time));
             }
+            if (lineNumber == 0) {
+                // Only a compressed file can be non-empty and still hold no lines
+                logger.warning("File is empty");
+                metrics.recordRejectedUpload(GraphMetrics.Rejection.EMPTY);
+                return ResponseEntity.badRequest().body("File is empty");
+            }
+            metrics.recordParse(System.nanoTime() - parseStart, graph.edgeCount());
+            parseEvent.accepted(lineNumber, graph.edgeCount());
+            companyGraphService.publishGraph(companyId, graph);
+        } catch (CsvFormatException e) {
+            logger.warning(e.getMessage());
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.INVALID);
+            if (parseEvent != null) {
+                parseEvent.rejected();
+            }
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (InvalidCompressedDataException e) {
+            logger.warning(e.getMessage() + ": " + e.getCause().getMessage());
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.INVALID);
+            if (parseEvent != null) {
+                parseEvent.rejected();
+            }
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (UploadTooLargeException e) {
+            logger.warning(e.getMessage() + " for companyId: " + companyId);
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.TOO_LARGE);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
         } catch (IOException e) {
             logger.severe("Error reading file: " + e.getMessage());
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.ERROR);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error reading file");
+        }
+        logger.info("Successfully processed " + lineNumber + " lines for companyId: " + companyId);
+        return ResponseEntity.ok("Connections uploaded successfully");
+    }
+
+    private static boolean isCompressed(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return CompressedUploads.startsCompressed(in);
+        }
+    }
+
+    /**
+     * Takes the CSV as the raw request body and parses it while it is still arriving, so neither the body nor
+     * a copy of it is ever held whole: memory stays at the read-ahead chunks plus the graph being built.
+     * A gzip or deflate body is inflated on the way into the parser; the size limit applies to what was sent.
+     */
+    @PostMapping("/ingest")
+    public ResponseEntity<String> ingestConnections(HttpServletRequest request) {
+        String companyId = CompanyIds.resolve(request);
+        if (companyId == null) {
+            return ResponseEntity.badRequest().body(CompanyIds.INVALID_MESSAGE);
+        }
+        String contentEncoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+        if (!CompressedUploads.isSupported(contentEncoding)) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                    .body("Unsupported content encoding: " + contentEncoding);
+        }
+        long declared = request.getContentLengthLong();
+        if (declared > streamMaxBytes) {
+            logger.warning("Rejected " + declared + " byte upload for companyId: " + companyId);
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.TOO_LARGE);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("Upload exceeds " + streamMaxBytes + " bytes");
+        }
+        logger.info("Streaming CSV upload for companyId: " + companyId);
+        long parseStart = System.nanoTime();
+        CsvParseEvent parseEvent = CsvParseEvent.start(companyId, Math.max(declared, 0), false);
+        Graph graph;
+        int lineNumber;
+        try (ReadAheadInputStream body = new ReadAheadInputStream(request.getInputStream(), readAheadBuffers, streamMaxBytes);
+             InputStream in = CompressedUploads.decode(body, contentEncoding, maxInflatedBytes)) {
+            ConnectionCsvParser parser = new ConnectionCsvParser();
+            graph = parser.parse(in);
+            lineNumber = parser.lineCount();
+        } catch (CsvFormatException e) {
+            logger.warning(e.getMessage());
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.INVALID);
+            parseEvent.rejected();
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (InvalidCompressedDataException e) {
+            logger.warning(e.getMessage() + ": " + e.getCause().getMessage());
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.INVALID);
+            parseEvent.rejected();
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (UploadTooLargeException e) {
+            logger.warning(e.getMessage() + " for companyId: " + companyId);
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.TOO_LARGE);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+        } catch (IOException e) {
+            logger.severe("Error reading upload: " + e.getMessage());
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.ERROR);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error reading file");
         }
+        if (lineNumber == 0) {
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.EMPTY);
+            return ResponseEntity.badRequest().body("File is empty");
+        }
+        metrics.recordParse(System.nanoTime() - parseStart, graph.edgeCount());
+        parseEvent.accepted(lineNumber, graph.edgeCount());
+        companyGraphService.publishGraph(companyId, graph);
         logger.info("Successfully processed " + lineNumber + " lines for companyId: " + companyId);
         return ResponseEntity.ok("Connections uploaded successfully");
     }
 
+    /**
+     * Accepts the file and answers 202 with its job right away; parsing and publishing happen in the
+     * background. Queries keep using the company's previous graph until the job succeeds.
+     */
+    @PostMapping("/upload/async")
+    public ResponseEntity<?> uploadConnectionsCSVAsync(@RequestParam("file") MultipartFile file, HttpServletRequest request) {
+        String companyId = CompanyIds.resolve(request);
+        if (companyId == null) {
+            return ResponseEntity.badRequest().body(CompanyIds.INVALID_MESSAGE);
+        }
+        if (file.isEmpty()) {
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.EMPTY);
+            return ResponseEntity.badRequest().body("File is empty");
+        }
+        try (InputStream in = file.getInputStream()) {
+            UploadJob job = uploadJobService.submit(companyId, in);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/connections/upload/jobs/" + job.getJobId()))
+                    .body(job);
+        } catch (RejectedExecutionException e) {
+            logger.warning("Upload queue is full, rejected upload for companyId: " + companyId);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Too many uploads in progress");
+        } catch (IOException e) {
+            logger.severe("Error spooling file: " + e.getMessage());
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.ERROR);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error reading file");
+        }
+    }
+
+    // Phase, progress and outcome of an asynchronous upload; only visible to the company that made it
+    @GetMapping("/upload/jobs/{jobId}")
+    public ResponseEntity<?> getUploadJob(@PathVariable String jobId, HttpServletRequest request) {
+        String companyId = CompanyIds.resolve(request);
+        if (companyId == null) {
+            return ResponseEntity.badRequest().body(CompanyIds.INVALID_MESSAGE);
+        }
+        UploadJob job = uploadJobService.getJob(jobId);
+        if (job == null || !job.getCompanyId().equals(companyId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    /**
+     * Applies upserts and deletes of single connections, in order, without reloading the whole graph.
+     * An upsert replaces every connection between the pair with one of the given time.
+     */
+    @PostMapping("/delta")
+    public ResponseEntity<?> applyDelta(@RequestBody DeltaRequest request, HttpServletRequest httpRequest) {
+        String companyId = CompanyIds.resolve(httpRequest);
+        if (companyId == null) {
+            return ResponseEntity.badRequest().body(CompanyIds.INVALID_MESSAGE);
+        }
+        List<DeltaOperation> operations = request == null ? null : request.getOperations();
+        if (operations == null || operations.isEmpty()) {
+            return ResponseEntity.badRequest().body("No operations provided");
+        }
+        GraphDelta delta = new GraphDelta();
+        for (int i = 0; i < operations.size(); i++) {
+            DeltaOperation operation = operations.get(i);
+            String from = operation.getFrom() == null ? "" : operation.getFrom().trim();
+            String to = operation.getTo() == null ? "" : operation.getTo().trim();
+            if (from.isEmpty() || to.isEmpty()) {
+                return ResponseEntity.badRequest().body("Invalid operation at index " + i);
+            }
+            if ("delete".equalsIgnoreCase(operation.getOp())) {
+                delta.delete(from, to);
+            } else if ("upsert".equalsIgnoreCase(operation.getOp()) && operation.getTime() != null && operation.getTime() >= 0) {
+                delta.upsert(from, to, operation.getTime());
+            } else {
+                return ResponseEntity.badRequest().body("Invalid operation at index " + i);
+            }
+        }
+        logger.info("Applying " + delta.size() + " connection edits for companyId: " + companyId);
+        GraphUpdate update = companyGraphService.applyDelta(companyId, delta);
+        return ResponseEntity.ok(new DeltaResponse(delta.size(), update.getChanges().size()));
+    }
+
     @GetMapping("/list")
-    public ResponseEntity<String> listConnections() {
-        logger.info("Listing connections for default company");
-        String companyId = DEFAULT_COMPANY_ID;
-        
+    public ResponseEntity<String> listConnections(HttpServletRequest request) {
+        String companyId = CompanyIds.resolve(request);
+        if (companyId == null) {
+            return ResponseEntity.badRequest().body(CompanyIds.INVALID_MESSAGE);
+        }
+        logger.info("Listing connections for companyId: " + companyId);
+
         StringBuilder response = new StringBuilder();
         response.append("Connections for company ").append(companyId).append(":\n");
         
         // This is a simple debug endpoint - in a real app you'd return JSON
         // For now, just return a simple text response
-        response.append("Graph contains ").append(companyGraphService.getOrCreateGraph(companyId).getLocations().size()).append(" locations\n");
+        // The published snapshot already knows its size; no copy of the graph is needed to count it
+        CompactGraph graph = companyGraphService.getGraph(companyId);
+        response.append("Graph contains ").append(graph == null ? 0 : graph.nodeCount()).append(" locations\n");
         
         return ResponseEntity.ok(response.toString());
     }
-} 
\ No newline at end of file
+
+    /**
+     * Estimated heap use of every company's graph, which ones are spilled to disk under the memory
+     * budget and how long reloading them took.
+     */
+    @GetMapping("/memory")
+    public ResponseEntity<GraphMemoryStats> getMemoryStats() {
+        return ResponseEntity.ok(companyGraphService.getMemoryStats());
+    }
+
+    public static class DeltaOperation {
+        private String op;
+        private String from;
+        private String to;
+        private Integer time;
+
+        public String getOp() {
+            return op;
+        }
+
+        public void setOp(String op) {
+            this.op = op;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public void setFrom(String from) {
+            this.from = from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public void setTo(String to) {
+            this.to = to;
+        }
+
+        public Integer getTime() {
+            return time;
+        }
+
+        public void setTime(Integer time) {
+            this.time = time;
+        }
+    }
+
+    public static class DeltaRequest {
+        private List<DeltaOperation> operations;
+
+        public List<DeltaOperation> getOperations() {
+            return operations;
+        }
+
+        public void setOperations(List<DeltaOperation> operations) {
+            this.operations = operations;
+        }
+    }
+
+    public static class DeltaResponse {
+        private final int applied;
+        private final int changedConnections;
+
+        public DeltaResponse(int applied, int changedConnections) {
+            this.applied = applied;
+            this.changedConnections = changedConnections;
+        }
+
+        public int getApplied() {
+            return applied;
+        }
+
+        public int getChangedConnections() {
+            return changedConnections;
+        }
+    }
+}
@@ -1,10 +1,25 @@
 package com.ruta.api.controller;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.ruta.api.cache.CacheStats;
+import com.ruta.api.model.DistanceMatrix;
+import com.ruta.api.model.RouteResult;
+import com.ruta.api.model.RoutingAlgorithm;
+import com.ruta.api.model.SearchStats;
 import com.ruta.api.service.CompanyGraphService;
+import com.ruta.api.service.RouteOutcome;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import jakarta.servlet.http.HttpServletRequest;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -13,40 +28,175 @@ import java.util.logging.Logger;
 public class RouteController {
 
     private static final Logger logger = Logger.getLogger(RouteController.class.getName());
-    private static final String DEFAULT_COMPANY_ID = "default";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    // Search statistics of a debug query, also sent when no route was found
+    static final String STATS_HEADER = "X-Search-Stats";
 
     @Autowired
     private CompanyGraphService companyGraphService;
 
+    @Value("${routing.batch.max-pairs:100000}")
+    private int maxBatchPairs = 100_000;
+
+    @Value("${routing.matrix.max-cells:4000000}")
+    private long maxMatrixCells = 4_000_000;
+
     @GetMapping("/shortest")
     public ResponseEntity<?> findShortestRoute(
             @RequestParam("from") String from,
-            @RequestParam("to") String to) {
-        
-        logger.info("Finding shortest route from " + from + " to " + to);
+            @RequestParam("to") String to,
+            @RequestParam(value = "algorithm", defaultValue = "auto") String algorithm,
+            @RequestParam(value = "debug", defaultValue = "false") boolean debug,
+            HttpServletRequest request) {
+        String companyId = CompanyIds.resolve(request);
+        if (companyId == null) {
+            return ResponseEntity.badRequest().body(CompanyIds.INVALID_MESSAGE);
+        }
+        logger.info("Finding shortest route from " + from + " to " + to + " using " + algorithm + " for companyId: " + companyId);
+        RoutingAlgorithm routingAlgorithm = RoutingAlgorithm.fromName(algorithm);
+        if (routingAlgorithm == null) {
+            return ResponseEntity.badRequest().body("Unknown algorithm: " + algorithm);
+        }
         
         try {
-            List<String> route = companyGraphService.findShortestRoute(DEFAULT_COMPANY_ID, from, to);
-            if (route == null || route.isEmpty()) {
-                return ResponseEntity.badRequest().body("No route found between " + from + " and " + to);
+            // Debug queries skip the cache, so their statistics describe a search that actually ran
+            RouteResult result = debug
+                    ? companyGraphService.findRouteWithStats(companyId, from, to, routingAlgorithm)
+                    : companyGraphService.findRoute(companyId, from, to, routingAlgorithm);
+            SearchStats stats = result == null ? null : result.getStats();
+            if (result == null || result.getRoute().isEmpty()) {
+                return withStatsHeader(ResponseEntity.badRequest(), stats)
+                        .body("No route found between " + from + " and " + to);
             }
+            logger.info("Route found after settling " + result.getSettledNodes() + " nodes");
             
-            int totalTime = companyGraphService.calculateRouteTime(DEFAULT_COMPANY_ID, route);
-            
-            return ResponseEntity.ok(new RouteResponse(route, totalTime));
+            return withStatsHeader(ResponseEntity.ok(), stats)
+                    .body(new RouteResponse(result.getRoute(), result.getTotalTime(), stats));
         } catch (Exception e) {
             logger.severe("Error finding route: " + e.getMessage());
             return ResponseEntity.internalServerError().body("Error finding route: " + e.getMessage());
         }
     }
 
+    private static ResponseEntity.BodyBuilder withStatsHeader(ResponseEntity.BodyBuilder response, SearchStats stats) {
+        return stats == null ? response : response.header(STATS_HEADER, stats.toString());
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<?> findRoutesBatch(@RequestBody BatchRouteRequest request, HttpServletRequest httpRequest) {
+        String companyId = CompanyIds.resolve(httpRequest);
+        if (companyId == null) {
+            return ResponseEntity.badRequest().body(CompanyIds.INVALID_MESSAGE);
+        }
+        List<RoutePair> pairs = request == null ? null : request.getPairs();
+        if (pairs == null || pairs.isEmpty()) {
+            return ResponseEntity.badRequest().body("No pairs provided");
+        }
+        if (pairs.size() > maxBatchPairs) {
+            return ResponseEntity.badRequest().body("Too many pairs: " + pairs.size() + " (max " + maxBatchPairs + ")");
+        }
+        logger.info("Finding " + pairs.size() + " routes in batch");
+
+        List<String> origins = new ArrayList<>(pairs.size());
+        List<String> destinations = new ArrayList<>(pairs.size());
+        for (RoutePair pair : pairs) {
+            origins.add(pair.getFrom());
+            destinations.add(pair.getTo());
+        }
+        try {
+            List<RouteOutcome> outcomes = companyGraphService.findRoutes(companyId, origins, destinations);
+            List<BatchRouteEntry> entries = new ArrayList<>(outcomes.size());
+            int failed = 0;
+            for (int i = 0; i < outcomes.size(); i++) {
+                RouteOutcome outcome = outcomes.get(i);
+                if (!outcome.isFound()) {
+                    failed++;
+                }
+                entries.add(new BatchRouteEntry(origins.get(i), destinations.get(i), outcome));
+            }
+            return ResponseEntity.ok(new BatchRouteResponse(entries, failed));
+        } catch (Exception e) {
+            logger.severe("Error finding batch routes: " + e.getMessage());
+            return ResponseEntity.internalServerError().body("Error finding routes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Travel times between every origin and destination. Rows follow {@code origins} and columns follow
+     * {@code destinations}; pairs with no path are {@link DistanceMatrix#UNREACHABLE}. The body is written
+     * straight from the flat result array, so large matrices never become a tree of JSON objects.
+     */
+    @PostMapping("/matrix")
+    public ResponseEntity<?> findMatrix(@RequestBody MatrixRequest request, HttpServletRequest httpRequest) {
+        String companyId = CompanyIds.resolve(httpRequest);
+        if (companyId == null) {
+            return ResponseEntity.badRequest().body(CompanyIds.INVALID_MESSAGE);
+        }
+        List<String> origins = request == null ? null : request.getOrigins();
+        List<String> destinations = request == null ? null : request.getDestinations();
+        if (origins == null || origins.isEmpty() || destinations == null || destinations.isEmpty()) {
+            return ResponseEntity.badRequest().body("Origins and destinations are required");
+        }
+        long cells = (long) origins.size() * destinations.size();
+        if (cells > maxMatrixCells) {
+            return ResponseEntity.badRequest().body("Matrix too large: " + cells + " cells (max " + maxMatrixCells + ")");
+        }
+        logger.info("Computing " + origins.size() + "x" + destinations.size() + " travel-time matrix");
+
+        DistanceMatrix matrix;
+        try {
+            matrix = companyGraphService.computeMatrix(companyId, origins, destinations);
+        } catch (Exception e) {
+            logger.severe("Error computing matrix: " + e.getMessage());
+            return ResponseEntity.internalServerError().body("Error computing matrix: " + e.getMessage());
+        }
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = JSON_FACTORY.createGenerator(out)) {
+                json.writeStartObject();
+                writeNames(json, "origins", origins);
+                writeNames(json, "destinations", destinations);
+                json.writeNumberField("unreachable", DistanceMatrix.UNREACHABLE);
+                json.writeArrayFieldStart("times");
+                for (int row = 0; row < matrix.rows(); row++) {
+                    json.writeStartArray();
+                    for (int column = 0; column < matrix.columns(); column++) {
+                        json.writeNumber(matrix.time(row, column));
+                    }
+                    json.writeEndArray();
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private static void writeNames(JsonGenerator json, String field, List<String> names) throws IOException {
+        json.writeArrayFieldStart(field);
+        for (String name : names) {
+            json.writeString(name);
+        }
+        json.writeEndArray();
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<CacheStats> getCacheStats() {
+        return ResponseEntity.ok(companyGraphService.getRouteCacheStats());
+    }
+
     public static class RouteResponse {
         private List<String> route;
         private int totalTime;
+        private SearchStats stats;
 
         public RouteResponse(List<String> route, int totalTime) {
+            this(route, totalTime, null);
+        }
+
+        public RouteResponse(List<String> route, int totalTime, SearchStats stats) {
             this.route = route;
             this.totalTime = totalTime;
+            this.stats = stats;
         }
 
         public List<String> getRoute() {
@@ -56,5 +206,119 @@ public class RouteController {
         public int getTotalTime() {
             return totalTime;
         }
+
+        // Only present on debug queries
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public SearchStats getStats() {
+            return stats;
+        }
+    }
+
+    public static class RoutePair {
+        private String from;
+        private String to;
+
+        public RoutePair() {
+        }
+
+        public RoutePair(String from, String to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public void setFrom(String from) {
+            this.from = from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public void setTo(String to) {
+            this.to = to;
+        }
+    }
+
+    public static class MatrixRequest {
+        private List<String> origins;
+        private List<String> destinations;
+
+        public List<String> getOrigins() {
+            return origins;
+        }
+
+        public void setOrigins(List<String> origins) {
+            this.origins = origins;
+        }
+
+        public List<String> getDestinations() {
+            return destinations;
+        }
+
+        public void setDestinations(List<String> destinations) {
+            this.destinations = destinations;
+        }
+    }
+
+    public static class BatchRouteRequest {
+        private List<RoutePair> pairs;
+
+        public List<RoutePair> getPairs() {
+            return pairs;
+        }
+
+        public void setPairs(List<RoutePair> pairs) {
+            this.pairs = pairs;
+        }
+    }
+
+    // A RouteResponse tagged with its pair; failed entries carry an error instead of a route
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class BatchRouteEntry extends RouteResponse {
+        private final String from;
+        private final String to;
+        private final String error;
+
+        BatchRouteEntry(String from, String to, RouteOutcome outcome) {
+            super(outcome.isFound() ? outcome.getResult().getRoute() : null,
+                  outcome.isFound() ? outcome.getResult().getTotalTime() : 0);
+            this.from = from;
+            this.to = to;
+            this.error = outcome.getError();
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    public static class BatchRouteResponse {
+        private final List<BatchRouteEntry> results;
+        private final int failed;
+
+        public BatchRouteResponse(List<BatchRouteEntry> results, int failed) {
+            this.results = results;
+            this.failed = failed;
+        }
+
+        public List<BatchRouteEntry> getResults() {
+            return results;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,87 @@
+package com.ruta.api.model;
+
+/**
+ * Immutable map from node id to a replacement edge range, used by {@link CompactGraph} versions produced by
+ * deltas. A patched node's edges live in {@code [start, end)} of the shared edge arena instead of its CSR slot.
+ */
+final class AdjacencyOverlay {
+    static final AdjacencyOverlay EMPTY = new AdjacencyOverlay(new int[16], new int[16], new int[16], 0);
+
+    private final int[] keys; // slot -> node + 1, 0 means empty
+    private final int[] starts;
+    private final int[] ends;
+    private final int size;
+
+    private AdjacencyOverlay(int[] keys, int[] starts, int[] ends, int size) {
+        this.keys = keys;
+        this.starts = starts;
+        this.ends = ends;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Slot of the node, or -1 when it is not patched
+    int slotOf(int node) {
+        int mask = keys.length - 1;
+        for (int slot = mix(node) & mask; ; slot = (slot + 1) & mask) {
+            int key = keys[slot];
+            if (key == 0) {
+                return -1;
+            }
+            if (key == node + 1) {
+                return slot;
+            }
+        }
+    }
+
+    int start(int slot) {
+        return starts[slot];
+    }
+
+    int end(int slot) {
+        return ends[slot];
+    }
+
+    // Copy with the given nodes patched to new ranges, replacing earlier patches of the same nodes
+    AdjacencyOverlay with(int[] nodes, int[] newStarts, int[] newEnds, int count) {
+        int capacity = keys.length;
+        while ((size + count) * 2 > capacity) {
+            capacity <<= 1;
+        }
+        int[] k = new int[capacity];
+        int[] s = new int[capacity];
+        int[] e = new int[capacity];
+        int n = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                n += put(k, s, e, keys[slot] - 1, starts[slot], ends[slot]);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            n += put(k, s, e, nodes[i], newStarts[i], newEnds[i]);
+        }
+        return new AdjacencyOverlay(k, s, e, n);
+    }
+
+    // Returns 1 when the node was not in the table yet
+    private static int put(int[] k, int[] s, int[] e, int node, int start, int end) {
+        int mask = k.length - 1;
+        int slot = mix(node) & mask;
+        while (k[slot] != 0 && k[slot] != node + 1) {
+            slot = (slot + 1) & mask;
+        }
+        int added = k[slot] == 0 ? 1 : 0;
+        k[slot] = node + 1;
+        s[slot] = start;
+        e[slot] = end;
+        return added;
+    }
+
+    private static int mix(int node) {
+        int h = node * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,61 @@
+package com.ruta.api.model;
+
+/**
+ * A* guided by landmark lower bounds (ALT). The bounds are consistent, so a node is never
+ * settled twice and the first time the target leaves the queue its distance is final.
+ */
+public final class AltSearch {
+
+    private AltSearch() {
+    }
+
+    // Returns null when there is no path
+    public static RouteResult shortestRoute(LandmarkIndex landmarks, int source, int target) {
+        if (landmarks.lowerBound(source, target) == LandmarkIndex.UNREACHABLE) {
+            SearchScratch.current().recordWork(0, 0, 0);
+            return null;
+        }
+        SearchScratch scratch = SearchScratch.acquire();
+        try {
+            return shortestRoute(landmarks, source, target, scratch);
+        } finally {
+            scratch.release();
+        }
+    }
+
+    private static RouteResult shortestRoute(LandmarkIndex landmarks, int source, int target, SearchScratch scratch) {
+        CompactGraph graph = landmarks.graph();
+        SearchSpace space = scratch.forward;
+        space.reset(graph.nodeCount());
+        space.start(source);
+        IndexedMinHeap heap = space.heap;
+        int settled = 0;
+        int relaxed = 0;
+
+        while (!heap.isEmpty()) {
+            int u = heap.pollMin();
+            settled++;
+            if (u == target) {
+                scratch.recordWork(settled, relaxed, heap.operations());
+                return DijkstraSearch.toResult(graph, space, target, settled);
+            }
+            int du = space.distance(u);
+            int start = graph.edgeStart(u);
+            int end = graph.edgeEnd(u);
+            relaxed += end - start;
+            for (int e = start; e < end; e++) {
+                int v = graph.target(e);
+                int newDistance = du + graph.weight(e);
+                if (!space.improves(v, newDistance)) {
+                    continue;
+                }
+                int bound = landmarks.lowerBound(v, target);
+                if (bound != LandmarkIndex.UNREACHABLE) {
+                    space.relax(v, newDistance, u, newDistance + bound);
+                }
+            }
+        }
+        scratch.recordWork(settled, relaxed, heap.operations());
+        return null;
+    }
+}
@@ -0,0 +1,107 @@
+package com.ruta.api.model;
+
+import java.util.Arrays;
+
+/**
+ * Dijkstra run from both ends at once: forward over outgoing edges from the source and
+ * backward over the reverse index from the target. The search stops once the two queue
+ * minima together reach the best meeting cost, which is the point where no shorter path
+ * through an unsettled node can exist.
+ */
+public final class BidirectionalDijkstraSearch {
+
+    private BidirectionalDijkstraSearch() {
+    }
+
+    // Returns null when there is no path
+    public static RouteResult shortestRoute(CompactGraph graph, int source, int target) {
+        SearchScratch scratch = SearchScratch.acquire();
+        try {
+            return shortestRoute(graph, source, target, scratch);
+        } finally {
+            scratch.release();
+        }
+    }
+
+    private static RouteResult shortestRoute(CompactGraph graph, int source, int target, SearchScratch scratch) {
+        SearchSpace forward = scratch.forward;
+        SearchSpace backward = scratch.backward;
+        forward.reset(graph.nodeCount());
+        backward.reset(graph.nodeCount());
+        forward.start(source);
+        backward.start(target);
+        IndexedMinHeap forwardHeap = forward.heap;
+        IndexedMinHeap backwardHeap = backward.heap;
+
+        int best = source == target ? 0 : Integer.MAX_VALUE;
+        int meeting = source == target ? source : -1;
+        int settled = 0;
+        int relaxed = 0;
+
+        while (!forwardHeap.isEmpty() && !backwardHeap.isEmpty()) {
+            if ((long) forwardHeap.minKey() + backwardHeap.minKey() >= best) {
+                break;
+            }
+            settled++;
+            if (forwardHeap.minKey() <= backwardHeap.minKey()) {
+                int u = forwardHeap.pollMin();
+                int du = forward.distance(u);
+                int start = graph.edgeStart(u);
+                int end = graph.edgeEnd(u);
+                relaxed += end - start;
+                for (int e = start; e < end; e++) {
+                    int v = graph.target(e);
+                    int newDistance = du + graph.weight(e);
+                    forward.relax(v, newDistance, u, newDistance);
+                    if (backward.reached(v) && newDistance + backward.distance(v) < best) {
+                        best = newDistance + backward.distance(v);
+                        meeting = v;
+                    }
+                }
+            } else {
+                int u = backwardHeap.pollMin();
+                int du = backward.distance(u);
+                int start = graph.reverseEdgeStart(u);
+                int end = graph.reverseEdgeEnd(u);
+                relaxed += end - start;
+                for (int e = start; e < end; e++) {
+                    int v = graph.reverseSource(e);
+                    int newDistance = du + graph.reverseWeight(e);
+                    backward.relax(v, newDistance, u, newDistance);
+                    if (forward.reached(v) && newDistance + forward.distance(v) < best) {
+                        best = newDistance + forward.distance(v);
+                        meeting = v;
+                    }
+                }
+            }
+        }
+
+        scratch.recordWork(settled, relaxed, forwardHeap.operations() + backwardHeap.operations());
+        if (meeting < 0) {
+            return null;
+        }
+        return toResult(graph, forward, backward, meeting, best, settled);
+    }
+
+    private static RouteResult toResult(CompactGraph graph, SearchSpace forward, SearchSpace backward,
+                                        int meeting, int totalTime, int settled) {
+        int head = 0;
+        for (int v = meeting; v != -1; v = forward.predecessor(v)) {
+            head++;
+        }
+        int tail = 0;
+        for (int v = backward.predecessor(meeting); v != -1; v = backward.predecessor(v)) {
+            tail++;
+        }
+        String[] path = new String[head + tail];
+        int i = head - 1;
+        for (int v = meeting; v != -1; v = forward.predecessor(v)) {
+            path[i--] = graph.nameOf(v);
+        }
+        i = head;
+        for (int v = backward.predecessor(meeting); v != -1; v = backward.predecessor(v)) {
+            path[i++] = graph.nameOf(v);
+        }
+        return new RouteResult(Arrays.asList(path), totalTime, settled);
+    }
+}
@@ -0,0 +1,623 @@
+package com.ruta.api.model;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Frozen compressed-sparse-row form of a {@link Graph}.
+ * Outgoing edges of node {@code u} live in {@code targets/weights[offsets[u] .. offsets[u + 1])},
+ * in the order they were added. The reverse index stores the same edges grouped by target,
+ * so backward searches can walk incoming edges.
+ *
+ * <p>Versions made by {@link #apply(GraphDelta)} share the arrays of the version they came from and only
+ * rewrite the adjacency lists of the nodes a delta touched; an {@link AdjacencyOverlay} points those nodes at
+ * their new lists. Once overlays grow large the next delta rebuilds a plain CSR.
+ *
+ * <p>{@link #toOffHeap()} moves the adjacency arrays and the dictionary into native memory, so a large
+ * network adds a handful of objects to the heap rather than arrays and Strings the collector has to track.
+ * Versions derived from an off-heap graph stay off-heap. Their memory is released explicitly: readers
+ * bracket their work with {@link #acquire()} and {@link #release()}, and whoever replaces the version calls
+ * {@link #retire()}; the blocks are freed once no version or reader holds them.
+ */
+public final class CompactGraph {
+    // Every frozen graph gets a fresh version, so results can be keyed by the exact snapshot they came from
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    private final long version;
+    private final LocationDictionary locations;
+    private final IntStore offsets;
+    private final IntStore targets;
+    private final IntStore weights;
+    private final IntStore reverseOffsets;
+    private final IntStore reverseSources;
+    private final IntStore reverseWeights;
+    private final int csrNodes; // nodes with a CSR slot; later ones were added by deltas
+    private final int edgeCount;
+
+    // Delta bookkeeping: patched nodes and the arena slots this version owns
+    private final AdjacencyOverlay overlay;
+    private final AdjacencyOverlay reverseOverlay;
+    private final EdgeArena arena;
+    private final int arenaEnd;
+    private final EdgeArena reverseArena;
+    private final int reverseArenaEnd;
+
+    // Indexes attached by background preprocessing once they are ready
+    private volatile LandmarkIndex landmarks;
+    private volatile ContractionHierarchy hierarchy;
+
+    // Off-heap versions only: the native blocks this version holds and its users, the owner plus readers
+    private final NativeBlock[] blocks;
+    private final AtomicInteger users = new AtomicInteger(1);
+    private final AtomicBoolean retired = new AtomicBoolean();
+
+    private CompactGraph(LocationDictionary locations, IntStore offsets, IntStore reverseOffsets, int edgeCount,
+                         AdjacencyOverlay overlay, EdgeArena arena, int arenaEnd,
+                         AdjacencyOverlay reverseOverlay, EdgeArena reverseArena, int reverseArenaEnd) {
+        this.version = VERSIONS.incrementAndGet();
+        this.locations = locations;
+        this.offsets = offsets;
+        this.targets = arena.heads;
+        this.weights = arena.weights;
+        this.reverseOffsets = reverseOffsets;
+        this.reverseSources = reverseArena.heads;
+        this.reverseWeights = reverseArena.weights;
+        this.csrNodes = offsets.length() - 1;
+        this.edgeCount = edgeCount;
+        this.overlay = overlay;
+        this.arena = arena;
+        this.arenaEnd = arenaEnd;
+        this.reverseOverlay = reverseOverlay;
+        this.reverseArena = reverseArena;
+        this.reverseArenaEnd = reverseArenaEnd;
+        this.blocks = retainBlocks(locations.block(), offsets.block(), reverseOffsets.block(),
+                arena.heads.block(), arena.weights.block(), reverseArena.heads.block(), reverseArena.weights.block());
+    }
+
+    private static NativeBlock[] retainBlocks(NativeBlock... candidates) {
+        NativeBlock[] held = Arrays.stream(candidates).filter(Objects::nonNull).toArray(NativeBlock[]::new);
+        for (NativeBlock block : held) {
+            block.retain();
+        }
+        return held.length == 0 ? null : held;
+    }
+
+    /**
+     * Builds the CSR arrays from parallel edge arrays with a stable counting sort on the source.
+     * The dictionary is copied, so the caller may keep mutating its own.
+     */
+    public static CompactGraph build(LocationDictionary locations, int[] sources, int[] edgeTargets, int[] times, int edgeCount) {
+        int nodeCount = locations.size();
+        int capacity = EdgeArena.initialCapacity(edgeCount);
+        int[] offsets = offsetsByKey(sources, edgeCount, nodeCount);
+        int[] targets = new int[capacity];
+        int[] weights = new int[capacity];
+        scatter(offsets, sources, edgeTargets, times, edgeCount, targets, weights);
+
+        int[] reverseOffsets = offsetsByKey(edgeTargets, edgeCount, nodeCount);
+        int[] reverseSources = new int[capacity];
+        int[] reverseWeights = new int[capacity];
+        scatter(reverseOffsets, edgeTargets, sources, times, edgeCount, reverseSources, reverseWeights);
+
+        return new CompactGraph(locations.copy(), IntStore.of(offsets), IntStore.of(reverseOffsets), edgeCount,
+                null, new EdgeArena(IntStore.of(targets), IntStore.of(weights), edgeCount), edgeCount,
+                null, new EdgeArena(IntStore.of(reverseSources), IntStore.of(reverseWeights), edgeCount), edgeCount);
+    }
+
+    // Graph over CSR arrays read back by GraphSnapshot; edge arrays may be longer than edgeCount
+    static CompactGraph restore(LocationDictionary locations, IntStore offsets, IntStore targets, IntStore weights,
+                                IntStore reverseOffsets, IntStore reverseSources, IntStore reverseWeights, int edgeCount) {
+        return new CompactGraph(locations, offsets, reverseOffsets, edgeCount,
+                null, new EdgeArena(targets, weights, edgeCount), edgeCount,
+                null, new EdgeArena(reverseSources, reverseWeights, edgeCount), edgeCount);
+    }
+
+    /**
+     * CSR arrays for GraphSnapshot: offsets, targets, weights, reverse offsets, sources and weights.
+     * A delta version is flattened first; only the first {@link #edgeCount()} edge slots are meaningful.
+     */
+    IntStore[] csrStores() {
+        CompactGraph plain = overlay == null && reverseOverlay == null ? this : rebuilt();
+        return new IntStore[]{plain.offsets, plain.targets, plain.weights,
+                plain.reverseOffsets, plain.reverseSources, plain.reverseWeights};
+    }
+
+    /**
+     * Copy of this version with its adjacency and dictionary in native memory, keeping location ids, edge
+     * order and the indexes attached so far. Returns this graph when it already is off-heap. The copy is a
+     * new version and must be {@link #retire() retired} once it is replaced.
+     */
+    public CompactGraph toOffHeap() {
+        if (blocks != null) {
+            return this;
+        }
+        CompactGraph plain = overlay == null && reverseOverlay == null ? this : rebuilt();
+        int capacity = EdgeArena.initialCapacity(edgeCount);
+        int slots = plain.offsets.length();
+        CompactGraph copy = new CompactGraph(plain.locations.toDirect(),
+                plain.offsets.toDirect(slots, slots), plain.reverseOffsets.toDirect(slots, slots), edgeCount,
+                null, new EdgeArena(plain.targets.toDirect(capacity, edgeCount),
+                        plain.weights.toDirect(capacity, edgeCount), edgeCount), edgeCount,
+                null, new EdgeArena(plain.reverseSources.toDirect(capacity, edgeCount),
+                        plain.reverseWeights.toDirect(capacity, edgeCount), edgeCount), edgeCount);
+        LandmarkIndex index = landmarks;
+        if (index != null) {
+            int[][] arrays = index.arrays();
+            copy.attachLandmarks(LandmarkIndex.restore(copy, arrays[0], arrays[1], arrays[2]));
+        }
+        ContractionHierarchy ch = hierarchy;
+        if (ch != null) {
+            copy.attachHierarchy(ContractionHierarchy.restore(copy, ch.arrays(), ch.shortcutCount()));
+        }
+        return copy;
+    }
+
+    public boolean isOffHeap() {
+        return blocks != null;
+    }
+
+    /**
+     * Registers a reader of an off-heap version. Returns false once the version has been retired and its
+     * last reader is gone; the caller should then read the current version instead. Heap versions need no
+     * bookkeeping, so this always succeeds for them.
+     */
+    public boolean acquire() {
+        if (blocks == null) {
+            return true;
+        }
+        for (int n = users.get(); n > 0; n = users.get()) {
+            if (users.compareAndSet(n, n + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Ends a read started with a successful acquire()
+    public void release() {
+        if (blocks != null && users.decrementAndGet() == 0) {
+            for (NativeBlock block : blocks) {
+                block.release();
+            }
+        }
+    }
+
+    // Drops the hold of whoever published this version; repeated calls are ignored
+    public void retire() {
+        if (blocks != null && retired.compareAndSet(false, true)) {
+            release();
+        }
+    }
+
+    private static int[] offsetsByKey(int[] keys, int edgeCount, int nodeCount) {
+        int[] offsets = new int[nodeCount + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            offsets[keys[i] + 1]++;
+        }
+        for (int u = 0; u < nodeCount; u++) {
+            offsets[u + 1] += offsets[u];
+        }
+        return offsets;
+    }
+
+    private static void scatter(int[] offsets, int[] keys, int[] others, int[] times, int edgeCount,
+                                int[] otherOut, int[] weightOut) {
+        int[] cursor = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int i = 0; i < edgeCount; i++) {
+            int slot = cursor[keys[i]]++;
+            otherOut[slot] = others[i];
+            weightOut[slot] = times[i];
+        }
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public LandmarkIndex landmarks() {
+        return landmarks;
+    }
+
+    public void attachLandmarks(LandmarkIndex index) {
+        if (index.graph() != this) {
+            throw new IllegalArgumentException("Landmark index was built for a different graph");
+        }
+        landmarks = index;
+    }
+
+    public ContractionHierarchy hierarchy() {
+        return hierarchy;
+    }
+
+    public void attachHierarchy(ContractionHierarchy index) {
+        if (index.graph() != this) {
+            throw new IllegalArgumentException("Hierarchy was built for a different graph");
+        }
+        hierarchy = index;
+    }
+
+    public int nodeCount() {
+        return locations.size();
+    }
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    public LocationDictionary locations() {
+        return locations;
+    }
+
+    public int idOf(String location) {
+        return locations.idOf(location);
+    }
+
+    public String nameOf(int id) {
+        return locations.nameOf(id);
+    }
+
+    // Nodes added by a delta have no CSR slot; unless patched their edge range is empty
+    public int edgeStart(int node) {
+        if (overlay != null) {
+            int slot = overlay.slotOf(node);
+            if (slot >= 0) {
+                return overlay.start(slot);
+            }
+        }
+        return node < csrNodes ? offsets.get(node) : 0;
+    }
+
+    public int edgeEnd(int node) {
+        if (overlay != null) {
+            int slot = overlay.slotOf(node);
+            if (slot >= 0) {
+                return overlay.end(slot);
+            }
+        }
+        return node < csrNodes ? offsets.get(node + 1) : 0;
+    }
+
+    public int target(int edge) {
+        return targets.get(edge);
+    }
+
+    public int weight(int edge) {
+        return weights.get(edge);
+    }
+
+    public int reverseEdgeStart(int node) {
+        if (reverseOverlay != null) {
+            int slot = reverseOverlay.slotOf(node);
+            if (slot >= 0) {
+                return reverseOverlay.start(slot);
+            }
+        }
+        return node < csrNodes ? reverseOffsets.get(node) : 0;
+    }
+
+    public int reverseEdgeEnd(int node) {
+        if (reverseOverlay != null) {
+            int slot = reverseOverlay.slotOf(node);
+            if (slot >= 0) {
+                return reverseOverlay.end(slot);
+            }
+        }
+        return node < csrNodes ? reverseOffsets.get(node + 1) : 0;
+    }
+
+    public int reverseSource(int edge) {
+        return reverseSources.get(edge);
+    }
+
+    public int reverseWeight(int edge) {
+        return reverseWeights.get(edge);
+    }
+
+    // Weight of the first edge from -> to, or -1 when there is none
+    public int weightBetween(int from, int to) {
+        for (int e = edgeStart(from), end = edgeEnd(from); e < end; e++) {
+            if (targets.get(e) == to) {
+                return weights.get(e);
+            }
+        }
+        return -1;
+    }
+
+    public Connection getConnection(String from, String to) {
+        int u = locations.idOf(from);
+        int v = locations.idOf(to);
+        if (u < 0 || v < 0) {
+            return null;
+        }
+        int time = weightBetween(u, v);
+        return time < 0 ? null : new Connection(locations.nameOf(u), locations.nameOf(v), time);
+    }
+
+    public List<Connection> getConnectionsFrom(String source) {
+        int u = locations.idOf(source);
+        if (u < 0 || edgeStart(u) == edgeEnd(u)) {
+            return Collections.emptyList();
+        }
+        List<Connection> connections = new ArrayList<>(edgeEnd(u) - edgeStart(u));
+        for (int e = edgeStart(u), end = edgeEnd(u); e < end; e++) {
+            connections.add(new Connection(locations.nameOf(u), locations.nameOf(targets.get(e)), weights.get(e)));
+        }
+        return connections;
+    }
+
+    public long estimatedBytes() {
+        LandmarkIndex index = landmarks;
+        ContractionHierarchy ch = hierarchy;
+        long arrays = offsets.length() + targets.length() + weights.length()
+                + reverseOffsets.length() + reverseSources.length() + reverseWeights.length()
+                + 3L * ((overlay == null ? 0 : overlay.size()) + (reverseOverlay == null ? 0 : reverseOverlay.size()));
+        return 64L + 4L * arrays + locations.estimatedBytes()
+                + (index == null ? 0 : index.estimatedBytes()) + (ch == null ? 0 : ch.estimatedBytes());
+    }
+
+    // Part of estimatedBytes() held in native memory, counting blocks shared with other versions in full
+    public long offHeapBytes() {
+        long bytes = 0;
+        if (blocks != null) {
+            for (NativeBlock block : blocks) {
+                bytes += block.bytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * New version of this graph with the delta applied. Only the adjacency lists of nodes the delta touches
+     * are rewritten, so the cost follows the size of the delta rather than of the graph; a new location
+     * additionally copies the dictionary. Indexes are not carried over.
+     */
+    public GraphUpdate apply(GraphDelta delta) {
+        LocationDictionary names = locations;
+        boolean locationsAdded = false;
+        for (int i = 0; i < delta.size(); i++) {
+            if (!delta.isDelete(i) && (names.idOf(delta.from(i)) < 0 || names.idOf(delta.to(i)) < 0)) {
+                if (!locationsAdded) {
+                    names = names.copy();
+                    locationsAdded = true;
+                }
+                names.intern(delta.from(i));
+                names.intern(delta.to(i));
+            }
+        }
+        if (locationsAdded && blocks != null) {
+            names = names.toDirect();
+        }
+
+        Map<Integer, EdgeList> outgoing = new LinkedHashMap<>();
+        Map<Long, Integer> oldTimes = new LinkedHashMap<>();
+        for (int i = 0; i < delta.size(); i++) {
+            int u = names.idOf(delta.from(i));
+            int t = names.idOf(delta.to(i));
+            if (u < 0 || t < 0) {
+                continue; // deleting a connection between unknown locations changes nothing
+            }
+            EdgeList edges = outgoing.computeIfAbsent(u, node -> EdgeList.of(this, node, false));
+            oldTimes.putIfAbsent(pair(u, t), edges.minWeightTo(t));
+            if (delta.isDelete(i)) {
+                edges.removeAll(t);
+            } else {
+                edges.upsert(t, delta.time(i));
+            }
+        }
+
+        List<GraphUpdate.EdgeChange> changes = new ArrayList<>();
+        Map<Integer, EdgeList> incoming = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> touched : oldTimes.entrySet()) {
+            int u = (int) (touched.getKey() >>> 32);
+            int t = (int) (long) touched.getKey();
+            EdgeList edges = outgoing.get(u);
+            int newTime = edges.minWeightTo(t);
+            if (newTime != touched.getValue()) {
+                changes.add(new GraphUpdate.EdgeChange(u, t, touched.getValue(), newTime));
+            }
+            EdgeList reverse = incoming.computeIfAbsent(t, node -> EdgeList.of(this, node, true));
+            reverse.removeAll(u);
+            for (int i = 0; i < edges.size; i++) {
+                if (edges.heads[i] == t) {
+                    reverse.add(u, edges.weights[i]);
+                }
+            }
+        }
+
+        int newEdgeCount = edgeCount;
+        for (EdgeList edges : outgoing.values()) {
+            newEdgeCount += edges.size - edges.originalSize;
+        }
+        int forwardSlots = 0;
+        for (EdgeList edges : outgoing.values()) {
+            forwardSlots += edges.size;
+        }
+        int reverseSlots = 0;
+        for (EdgeList edges : incoming.values()) {
+            reverseSlots += edges.size;
+        }
+        EdgeArena forwardArena = arena.reserve(arenaEnd, forwardSlots);
+        EdgeArena backwardArena = reverseArena.reserve(reverseArenaEnd, reverseSlots);
+        AdjacencyOverlay forward = patch(overlay, outgoing, forwardArena, arenaEnd);
+        AdjacencyOverlay backward = patch(reverseOverlay, incoming, backwardArena, reverseArenaEnd);
+
+        CompactGraph next = new CompactGraph(names, offsets, reverseOffsets, newEdgeCount,
+                forward, forwardArena, arenaEnd + forwardSlots,
+                backward, backwardArena, reverseArenaEnd + reverseSlots);
+        // Rebuild once lookups through the overlay or dead arena slots start to cost more than a fresh CSR
+        if (forward.size() + backward.size() > names.size() / 4 + 64
+                || next.arenaEnd > 2L * newEdgeCount + 1024) {
+            CompactGraph flat = blocks == null ? next.rebuilt() : next.rebuilt().toOffHeap();
+            next.retire();
+            next = flat;
+        }
+        return new GraphUpdate(next, changes, locationsAdded);
+    }
+
+    private static AdjacencyOverlay patch(AdjacencyOverlay current, Map<Integer, EdgeList> lists,
+                                          EdgeArena arena, int position) {
+        int[] nodes = new int[lists.size()];
+        int[] starts = new int[lists.size()];
+        int[] ends = new int[lists.size()];
+        int i = 0;
+        for (Map.Entry<Integer, EdgeList> entry : lists.entrySet()) {
+            EdgeList edges = entry.getValue();
+            for (int j = 0; j < edges.size; j++) {
+                arena.heads.set(position + j, edges.heads[j]);
+                arena.weights.set(position + j, edges.weights[j]);
+            }
+            nodes[i] = entry.getKey();
+            starts[i] = position;
+            position += edges.size;
+            ends[i] = position;
+            i++;
+        }
+        return (current == null ? AdjacencyOverlay.EMPTY : current).with(nodes, starts, ends, i);
+    }
+
+    // Plain CSR copy of this version, keeping location ids and per-node edge order
+    private CompactGraph rebuilt() {
+        int[] sources = new int[edgeCount];
+        int[] edgeTargets = new int[edgeCount];
+        int[] times = new int[edgeCount];
+        int i = 0;
+        for (int u = 0; u < nodeCount(); u++) {
+            for (int e = edgeStart(u), end = edgeEnd(u); e < end; e++) {
+                sources[i] = u;
+                edgeTargets[i] = targets.get(e);
+                times[i++] = weights.get(e);
+            }
+        }
+        return build(locations, sources, edgeTargets, times, i);
+    }
+
+    private static long pair(int source, int target) {
+        return ((long) source << 32) | (target & 0xFFFFFFFFL);
+    }
+
+    // Small growable adjacency list for the nodes a delta rewrites
+    private static final class EdgeList {
+        int[] heads;
+        int[] weights;
+        int size;
+        final int originalSize;
+
+        private EdgeList(int[] heads, int[] weights) {
+            this.heads = heads;
+            this.weights = weights;
+            this.size = heads.length;
+            this.originalSize = heads.length;
+        }
+
+        static EdgeList of(CompactGraph graph, int node, boolean reverse) {
+            int start = reverse ? graph.reverseEdgeStart(node) : graph.edgeStart(node);
+            int end = reverse ? graph.reverseEdgeEnd(node) : graph.edgeEnd(node);
+            int[] heads = new int[end - start];
+            int[] weights = new int[end - start];
+            for (int e = start; e < end; e++) {
+                heads[e - start] = reverse ? graph.reverseSource(e) : graph.target(e);
+                weights[e - start] = reverse ? graph.reverseWeight(e) : graph.weight(e);
+            }
+            return new EdgeList(heads, weights);
+        }
+
+        int minWeightTo(int head) {
+            int min = GraphUpdate.EdgeChange.ABSENT;
+            for (int i = 0; i < size; i++) {
+                if (heads[i] == head && (min == GraphUpdate.EdgeChange.ABSENT || weights[i] < min)) {
+                    min = weights[i];
+                }
+            }
+            return min;
+        }
+
+        // The first connection to head takes the new time in place; any parallel ones are dropped
+        void upsert(int head, int weight) {
+            int first = -1;
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (heads[i] == head) {
+                    if (first >= 0) {
+                        continue;
+                    }
+                    first = kept;
+                }
+                heads[kept] = heads[i];
+                weights[kept++] = heads[i] == head ? weight : weights[i];
+            }
+            size = kept;
+            if (first < 0) {
+                add(head, weight);
+            }
+        }
+
+        void removeAll(int head) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (heads[i] != head) {
+                    heads[kept] = heads[i];
+                    weights[kept++] = weights[i];
+                }
+            }
+            size = kept;
+        }
+
+        void add(int head, int weight) {
+            if (size == heads.length) {
+                heads = Arrays.copyOf(heads, Math.max(4, size * 2));
+                weights = Arrays.copyOf(weights, heads.length);
+            }
+            heads[size] = head;
+            weights[size++] = weight;
+        }
+    }
+
+    public List<String> findShortestRoute(String from, String to) {
+        RouteResult result = findRoute(from, to);
+        return result == null ? null : result.getRoute();
+    }
+
+    public RouteResult findRoute(String from, String to) {
+        return findRoute(from, to, RoutingAlgorithm.DIJKSTRA);
+    }
+
+    // Returns null when either location is unknown or there is no path
+    public RouteResult findRoute(String from, String to, RoutingAlgorithm algorithm) {
+        int source = locations.idOf(from);
+        int target = locations.idOf(to);
+        if (source < 0 || target < 0) {
+            SearchScratch scratch = SearchScratch.current();
+            scratch.recordWork(0, 0, 0);
+            scratch.recordElapsed(0);
+            return null;
+        }
+        long start = System.nanoTime();
+        RouteResult result = search(source, target, algorithm);
+        SearchScratch.current().recordElapsed(System.nanoTime() - start);
+        return result;
+    }
+
+    private RouteResult search(int source, int target, RoutingAlgorithm algorithm) {
+        // Until preprocessing finishes, ALT degrades to plain Dijkstra and CH to bidirectional Dijkstra
+        switch (algorithm) {
+            case AUTO:
+            case CH:
+                ContractionHierarchy ch = hierarchy;
+                return ch == null
+                        ? BidirectionalDijkstraSearch.shortestRoute(this, source, target)
+                        : ch.shortestRoute(source, target);
+            case BIDIRECTIONAL:
+                return BidirectionalDijkstraSearch.shortestRoute(this, source, target);
+            case ALT:
+                LandmarkIndex index = landmarks;
+                return index == null
+                        ? DijkstraSearch.shortestRoute(this, source, target)
+                        : AltSearch.shortestRoute(index, source, target);
+            case DIJKSTRA:
+            default:
+                return DijkstraSearch.shortestRoute(this, source, target);
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package com.ruta.api.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Contraction Hierarchies over a {@link CompactGraph}.
+ * <p>
+ * Nodes are contracted in edge-difference order; contracting {@code v} adds a shortcut
+ * {@code u -> w} whenever no witness path avoiding {@code v} is as short as {@code u -> v -> w}.
+ * A query then only needs upward edges: a forward search from the source and a backward
+ * search from the target both climb the hierarchy and meet at the highest node of the route.
+ * Shortcuts remember the node they bypass, so routes are unpacked back to original edges.
+ */
+public final class ContractionHierarchy {
+    private static final int NO_MIDDLE = -1;
+    // Witness searches give up after this many settled nodes and add the shortcut instead
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+
+    private final CompactGraph graph;
+    private final int[] rank;
+    // Edges u -> w with rank[u] < rank[w], grouped by u
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final int[] upWeights;
+    private final int[] upMiddles;
+    // Edges u -> w with rank[u] > rank[w], grouped by w and walked from w to u
+    private final int[] downOffsets;
+    private final int[] downSources;
+    private final int[] downWeights;
+    private final int[] downMiddles;
+    private final int shortcutCount;
+
+    private ContractionHierarchy(CompactGraph graph, int[] rank, int[][] up, int[][] down, int shortcutCount) {
+        this.graph = graph;
+        this.rank = rank;
+        this.upOffsets = up[0];
+        this.upTargets = up[1];
+        this.upWeights = up[2];
+        this.upMiddles = up[3];
+        this.downOffsets = down[0];
+        this.downSources = down[1];
+        this.downWeights = down[2];
+        this.downMiddles = down[3];
+        this.shortcutCount = shortcutCount;
+    }
+
+    public static ContractionHierarchy build(CompactGraph graph) {
+        return new Contractor(graph).contract();
+    }
+
+    // Rank, then the upward and downward CSR arrays (offsets, neighbours, weights, middles), for GraphSnapshot
+    int[][] arrays() {
+        return new int[][]{rank, upOffsets, upTargets, upWeights, upMiddles,
+                downOffsets, downSources, downWeights, downMiddles};
+    }
+
+    static ContractionHierarchy restore(CompactGraph graph, int[][] arrays, int shortcutCount) {
+        int n = graph.nodeCount();
+        if (arrays.length != 9 || arrays[0].length != n || arrays[1].length != n + 1 || arrays[5].length != n + 1) {
+            throw new IllegalArgumentException("Hierarchy does not match the graph");
+        }
+        return new ContractionHierarchy(graph, arrays[0], Arrays.copyOfRange(arrays, 1, 5),
+                Arrays.copyOfRange(arrays, 5, 9), shortcutCount);
+    }
+
+    public CompactGraph graph() {
+        return graph;
+    }
+
+    public int shortcutCount() {
+        return shortcutCount;
+    }
+
+    public long estimatedBytes() {
+        return 64L + 4L * (rank.length + upOffsets.length + 3L * upTargets.length
+                + downOffsets.length + 3L * downSources.length);
+    }
+
+    // Returns null when there is no path
+    public RouteResult shortestRoute(int source, int target) {
+        SearchScratch scratch = SearchScratch.acquire();
+        try {
+            return shortestRoute(source, target, scratch);
+        } finally {
+            scratch.release();
+        }
+    }
+
+    private RouteResult shortestRoute(int source, int target, SearchScratch scratch) {
+        SearchSpace forward = scratch.forward;
+        SearchSpace backward = scratch.backward;
+        forward.reset(graph.nodeCount());
+        backward.reset(graph.nodeCount());
+        forward.start(source);
+        backward.start(target);
+        IndexedMinHeap forwardHeap = forward.heap;
+        IndexedMinHeap backwardHeap = backward.heap;
+
+        int best = Integer.MAX_VALUE;
+        int meeting = -1;
+        int settled = 0;
+        int relaxed = 0;
+
+        while (true) {
+            boolean forwardOpen = !forwardHeap.isEmpty() && forwardHeap.minKey() < best;
+            boolean backwardOpen = !backwardHeap.isEmpty() && backwardHeap.minKey() < best;
+            if (!forwardOpen && !backwardOpen) {
+                break;
+            }
+            settled++;
+            if (forwardOpen && (!backwardOpen || forwardHeap.minKey() <= backwardHeap.minKey())) {
+                int u = forwardHeap.pollMin();
+                int du = forward.distance(u);
+                if (backward.reached(u) && du + backward.distance(u) < best) {
+                    best = du + backward.distance(u);
+                    meeting = u;
+                }
+                relaxed += upOffsets[u + 1] - upOffsets[u];
+                for (int e = upOffsets[u], end = upOffsets[u + 1]; e < end; e++) {
+                    int newDistance = du + upWeights[e];
+                    forward.relax(upTargets[e], newDistance, u, newDistance);
+                }
+            } else {
+                int u = backwardHeap.pollMin();
+                int du = backward.distance(u);
+                if (forward.reached(u) && du + forward.distance(u) < best) {
+                    best = du + forward.distance(u);
+                    meeting = u;
+                }
+                relaxed += downOffsets[u + 1] - downOffsets[u];
+                for (int e = downOffsets[u], end = downOffsets[u + 1]; e < end; e++) {
+                    int newDistance = du + downWeights[e];
+                    backward.relax(downSources[e], newDistance, u, newDistance);
+                }
+            }
+        }
+
+        scratch.recordWork(settled, relaxed, forwardHeap.operations() + backwardHeap.operations());
+        if (meeting < 0) {
+            return null;
+        }
+        return new RouteResult(unpack(forward, backward, source, meeting), best, settled);
+    }
+
+    private List<String> unpack(SearchSpace forward, SearchSpace backward, int source, int meeting) {
+        // Hierarchy-level route: source .. meeting .. target
+        int head = 0;
+        for (int v = meeting; v != -1; v = forward.predecessor(v)) {
+            head++;
+        }
+        int tail = 0;
+        for (int v = backward.predecessor(meeting); v != -1; v = backward.predecessor(v)) {
+            tail++;
+        }
+        int[] coarse = new int[head + tail];
+        int i = head - 1;
+        for (int v = meeting; v != -1; v = forward.predecessor(v)) {
+            coarse[i--] = v;
+        }
+        i = head;
+        for (int v = backward.predecessor(meeting); v != -1; v = backward.predecessor(v)) {
+            coarse[i++] = v;
+        }
+
+        // Expand shortcuts with an explicit stack of (from, to) pairs
+        int[] path = new int[Math.max(8, coarse.length * 2)];
+        int length = 0;
+        path[length++] = source;
+        int[] stack = new int[16];
+        for (int h = 1; h < coarse.length; h++) {
+            int top = 0;
+            stack[top++] = coarse[h - 1];
+            stack[top++] = coarse[h];
+            while (top > 0) {
+                int to = stack[--top];
+                int from = stack[--top];
+                int middle = middleOf(from, to);
+                if (middle == NO_MIDDLE) {
+                    if (length == path.length) {
+                        path = Arrays.copyOf(path, length * 2);
+                    }
+                    path[length++] = to;
+                } else {
+                    if (top + 4 > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top++] = middle;
+                    stack[top++] = to;
+                    stack[top++] = from;
+                    stack[top++] = middle;
+                }
+            }
+        }
+        String[] names = new String[length];
+        for (int k = 0; k < length; k++) {
+            names[k] = graph.nameOf(path[k]);
+        }
+        return Arrays.asList(names);
+    }
+
+    private int middleOf(int from, int to) {
+        if (rank[from] < rank[to]) {
+            for (int e = upOffsets[from], end = upOffsets[from + 1]; e < end; e++) {
+                if (upTargets[e] == to) {
+                    return upMiddles[e];
+                }
+            }
+        } else {
+            for (int e = downOffsets[to], end = downOffsets[to + 1]; e < end; e++) {
+                if (downSources[e] == from) {
+                    return downMiddles[e];
+                }
+            }
+        }
+        throw new IllegalStateException("Missing hierarchy edge " + from + " -> " + to);
+    }
+
+    // Growable (owner, neighbour, weight, middle) edge list turned into CSR at the end
+    private static final class EdgeList {
+        int[] owners = new int[64];
+        int[] neighbours = new int[64];
+        int[] weights = new int[64];
+        int[] middles = new int[64];
+        int size;
+
+        void add(int owner, int neighbour, int weight, int middle) {
+            if (size == owners.length) {
+                owners = Arrays.copyOf(owners, size * 2);
+                neighbours = Arrays.copyOf(neighbours, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+                middles = Arrays.copyOf(middles, size * 2);
+            }
+            owners[size] = owner;
+            neighbours[size] = neighbour;
+            weights[size] = weight;
+            middles[size] = middle;
+            size++;
+        }
+
+        // Offsets, neighbours, weights and middles grouped by owner
+        int[][] toCsr(int nodeCount) {
+            int[] offsets = new int[nodeCount + 1];
+            for (int i = 0; i < size; i++) {
+                offsets[owners[i] + 1]++;
+            }
+            for (int u = 0; u < nodeCount; u++) {
+                offsets[u + 1] += offsets[u];
+            }
+            int[] neighbourOut = new int[size];
+            int[] weightOut = new int[size];
+            int[] middleOut = new int[size];
+            int[] cursor = Arrays.copyOf(offsets, nodeCount);
+            for (int i = 0; i < size; i++) {
+                int slot = cursor[owners[i]]++;
+                neighbourOut[slot] = neighbours[i];
+                weightOut[slot] = weights[i];
+                middleOut[slot] = middles[i];
+            }
+            return new int[][]{offsets, neighbourOut, weightOut, middleOut};
+        }
+    }
+
+    // Mutable adjacency of the remaining graph while nodes are contracted
+    private static final class Contractor {
+        private final CompactGraph graph;
+        private final int n;
+        private final int[][] outTo;
+        private final int[][] outWeight;
+        private final int[][] outMiddle;
+        private final int[] outSize;
+        private final int[][] inFrom;
+        private final int[][] inWeight;
+        private final int[][] inMiddle;
+        private final int[] inSize;
+        private final boolean[] contracted;
+        private final int[] deletedNeighbours;
+        private final SearchSpace witness;
+        private int shortcuts;
+
+        Contractor(CompactGraph graph) {
+            this.graph = graph;
+            this.n = graph.nodeCount();
+            outTo = new int[n][];
+            outWeight = new int[n][];
+            outMiddle = new int[n][];
+            outSize = new int[n];
+            inFrom = new int[n][];
+            inWeight = new int[n][];
+            inMiddle = new int[n][];
+            inSize = new int[n];
+            for (int u = 0; u < n; u++) {
+                int outDegree = Math.max(2, graph.edgeEnd(u) - graph.edgeStart(u));
+                int inDegree = Math.max(2, graph.reverseEdgeEnd(u) - graph.reverseEdgeStart(u));
+                outTo[u] = new int[outDegree];
+                outWeight[u] = new int[outDegree];
+                outMiddle[u] = new int[outDegree];
+                inFrom[u] = new int[inDegree];
+                inWeight[u] = new int[inDegree];
+                inMiddle[u] = new int[inDegree];
+            }
+            contracted = new boolean[n];
+            deletedNeighbours = new int[n];
+            witness = new SearchSpace(n);
+            for (int u = 0; u < n; u++) {
+                for (int e = graph.edgeStart(u), end = graph.edgeEnd(u); e < end; e++) {
+                    if (graph.target(e) != u) {
+                        addEdge(u, graph.target(e), graph.weight(e), NO_MIDDLE);
+                    }
+                }
+            }
+        }
+
+        ContractionHierarchy contract() {
+            IndexedMinHeap queue = new IndexedMinHeap(n);
+            for (int v = 0; v < n; v++) {
+                queue.insert(v, priority(v));
+            }
+            int[] rank = new int[n];
+            EdgeList up = new EdgeList();
+            EdgeList down = new EdgeList();
+            int next = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.pollMin();
+                // Lazy update: priorities go stale as neighbours are contracted
+                int current = priority(v);
+                if (!queue.isEmpty() && current > queue.minKey()) {
+                    queue.insert(v, current);
+                    continue;
+                }
+                for (int i = 0; i < outSize[v]; i++) {
+                    int w = outTo[v][i];
+                    if (!contracted[w]) {
+                        up.add(v, w, outWeight[v][i], outMiddle[v][i]);
+                    }
+                }
+                for (int i = 0; i < inSize[v]; i++) {
+                    int u = inFrom[v][i];
+                    if (!contracted[u]) {
+                        down.add(v, u, inWeight[v][i], inMiddle[v][i]);
+                    }
+                }
+                shortcuts += contractNode(v, true);
+                contracted[v] = true;
+                rank[v] = next++;
+                for (int i = 0; i < outSize[v]; i++) {
+                    deletedNeighbours[outTo[v][i]]++;
+                }
+                for (int i = 0; i < inSize[v]; i++) {
+                    deletedNeighbours[inFrom[v][i]]++;
+                }
+            }
+            int n = graph.nodeCount();
+            return new ContractionHierarchy(graph, rank, up.toCsr(n), down.toCsr(n), shortcuts);
+        }
+
+        // Edge difference, with the deleted-neighbour count spreading contraction evenly
+        private int priority(int v) {
+            int removed = 0;
+            for (int i = 0; i < outSize[v]; i++) {
+                if (!contracted[outTo[v][i]]) removed++;
+            }
+            for (int i = 0; i < inSize[v]; i++) {
+                if (!contracted[inFrom[v][i]]) removed++;
+            }
+            return contractNode(v, false) - removed + deletedNeighbours[v];
+        }
+
+        // Returns the number of shortcuts contracting v needs, adding them when apply is set
+        private int contractNode(int v, boolean apply) {
+            int added = 0;
+            int maxOut = 0;
+            for (int j = 0; j < outSize[v]; j++) {
+                if (!contracted[outTo[v][j]]) {
+                    maxOut = Math.max(maxOut, outWeight[v][j]);
+                }
+            }
+            for (int i = 0; i < inSize[v]; i++) {
+                int u = inFrom[v][i];
+                if (contracted[u]) {
+                    continue;
+                }
+                int toV = inWeight[v][i];
+                witnessSearch(u, v, toV + maxOut);
+                for (int j = 0; j < outSize[v]; j++) {
+                    int w = outTo[v][j];
+                    if (contracted[w] || w == u) {
+                        continue;
+                    }
+                    int via = toV + outWeight[v][j];
+                    if (witness.distance(w) > via) {
+                        added++;
+                        if (apply) {
+                            addEdge(u, w, via, v);
+                        }
+                    }
+                }
+            }
+            return added;
+        }
+
+        // Bounded Dijkstra from u that ignores v and contracted nodes
+        private void witnessSearch(int u, int v, int limit) {
+            witness.reset(n);
+            witness.start(u);
+            int settled = 0;
+            while (!witness.heap.isEmpty() && witness.heap.minKey() <= limit && settled++ < WITNESS_SETTLE_LIMIT) {
+                int x = witness.heap.pollMin();
+                int dx = witness.distance(x);
+                for (int i = 0; i < outSize[x]; i++) {
+                    int y = outTo[x][i];
+                    if (y != v && !contracted[y]) {
+                        int newDistance = dx + outWeight[x][i];
+                        witness.relax(y, newDistance, x, newDistance);
+                    }
+                }
+            }
+        }
+
+        // Adds u -> w or lowers its weight; parallel edges collapse to the cheapest one
+        private void addEdge(int u, int w, int weight, int middle) {
+            int i = indexOf(outTo[u], outSize[u], w);
+            if (i >= 0) {
+                if (weight >= outWeight[u][i]) {
+                    return;
+                }
+                outWeight[u][i] = weight;
+                outMiddle[u][i] = middle;
+                int j = indexOf(inFrom[w], inSize[w], u);
+                inWeight[w][j] = weight;
+                inMiddle[w][j] = middle;
+                return;
+            }
+            if (outSize[u] == outTo[u].length) {
+                int capacity = outSize[u] * 2;
+                outTo[u] = Arrays.copyOf(outTo[u], capacity);
+                outWeight[u] = Arrays.copyOf(outWeight[u], capacity);
+                outMiddle[u] = Arrays.copyOf(outMiddle[u], capacity);
+            }
+            outTo[u][outSize[u]] = w;
+            outWeight[u][outSize[u]] = weight;
+            outMiddle[u][outSize[u]] = middle;
+            outSize[u]++;
+            if (inSize[w] == inFrom[w].length) {
+                int capacity = inSize[w] * 2;
+                inFrom[w] = Arrays.copyOf(inFrom[w], capacity);
+                inWeight[w] = Arrays.copyOf(inWeight[w], capacity);
+                inMiddle[w] = Arrays.copyOf(inMiddle[w], capacity);
+            }
+            inFrom[w][inSize[w]] = u;
+            inWeight[w][inSize[w]] = weight;
+            inMiddle[w][inSize[w]] = middle;
+            inSize[w]++;
+        }
+
+        private static int indexOf(int[] values, int size, int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
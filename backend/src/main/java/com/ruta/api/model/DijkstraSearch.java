@@ -0,0 +1,112 @@
+package com.ruta.api.model;
+
+import java.util.Arrays;
+
+/**
+ * Unidirectional Dijkstra over a {@link CompactGraph} using a scratch lent for the length of the search.
+ */
+public final class DijkstraSearch {
+
+    private DijkstraSearch() {
+    }
+
+    // Returns null when there is no path
+    public static RouteResult shortestRoute(CompactGraph graph, int source, int target) {
+        SearchScratch scratch = SearchScratch.acquire();
+        try {
+            return shortestRoute(graph, source, target, scratch);
+        } finally {
+            scratch.release();
+        }
+    }
+
+    private static RouteResult shortestRoute(CompactGraph graph, int source, int target, SearchScratch scratch) {
+        SearchSpace space = scratch.forward;
+        space.reset(graph.nodeCount());
+        space.start(source);
+        IndexedMinHeap heap = space.heap;
+        int settled = 0;
+        int relaxed = 0;
+
+        while (!heap.isEmpty()) {
+            int u = heap.pollMin();
+            settled++;
+            if (u == target) {
+                scratch.recordWork(settled, relaxed, heap.operations());
+                return toResult(graph, space, target, settled);
+            }
+            int du = space.distance(u);
+            int start = graph.edgeStart(u);
+            int end = graph.edgeEnd(u);
+            relaxed += end - start;
+            for (int e = start; e < end; e++) {
+                int newDistance = du + graph.weight(e);
+                space.relax(graph.target(e), newDistance, u, newDistance);
+            }
+        }
+        scratch.recordWork(settled, relaxed, heap.operations());
+        return null;
+    }
+
+    /**
+     * One shortest-path tree from {@code source}, grown only until every target is settled.
+     * Entry {@code i} of the result is the route to {@code targets[i]}, or null when it is unreachable.
+     */
+    public static RouteResult[] shortestRoutesFrom(CompactGraph graph, int source, int[] targets) {
+        SearchScratch scratch = SearchScratch.acquire();
+        try {
+            return shortestRoutesFrom(graph, source, targets, scratch);
+        } finally {
+            scratch.release();
+        }
+    }
+
+    private static RouteResult[] shortestRoutesFrom(CompactGraph graph, int source, int[] targets,
+                                                    SearchScratch scratch) {
+        int[] pending = Arrays.stream(targets).distinct().sorted().toArray();
+        SearchSpace space = scratch.forward;
+        space.reset(graph.nodeCount());
+        space.start(source);
+        IndexedMinHeap heap = space.heap;
+        int remaining = pending.length;
+        int settled = 0;
+        int relaxed = 0;
+
+        while (remaining > 0 && !heap.isEmpty()) {
+            int u = heap.pollMin();
+            settled++;
+            if (Arrays.binarySearch(pending, u) >= 0) {
+                remaining--;
+            }
+            int du = space.distance(u);
+            int start = graph.edgeStart(u);
+            int end = graph.edgeEnd(u);
+            relaxed += end - start;
+            for (int e = start; e < end; e++) {
+                int newDistance = du + graph.weight(e);
+                space.relax(graph.target(e), newDistance, u, newDistance);
+            }
+        }
+        scratch.recordWork(settled, relaxed, heap.operations());
+
+        RouteResult[] results = new RouteResult[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            if (space.settled(targets[i])) {
+                results[i] = toResult(graph, space, targets[i], settled);
+            }
+        }
+        return results;
+    }
+
+    static RouteResult toResult(CompactGraph graph, SearchSpace space, int target, int settled) {
+        int hops = 0;
+        for (int v = target; v != -1; v = space.predecessor(v)) {
+            hops++;
+        }
+        String[] path = new String[hops];
+        for (int v = target, i = hops - 1; v != -1; v = space.predecessor(v), i--) {
+            path[i] = graph.nameOf(v);
+        }
+        return new RouteResult(Arrays.asList(path), space.distance(target), settled);
+    }
+}
@@ -0,0 +1,94 @@
+package com.ruta.api.model;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Travel times between every origin and every destination, kept in one flat row-major {@code int[]}.
+ * Each row is a single Dijkstra tree from its origin that stops once all destinations are settled.
+ */
+public final class DistanceMatrix {
+    /** Value stored for pairs with no path, including origins or destinations the graph does not know. */
+    public static final int UNREACHABLE = -1;
+
+    private final int rows;
+    private final int columns;
+    private final int[] times;
+
+    private DistanceMatrix(int rows, int columns, int[] times) {
+        this.rows = rows;
+        this.columns = columns;
+        this.times = times;
+    }
+
+    /**
+     * Computes the matrix for the given node ids; negative ids stand for unknown locations.
+     * Independent rows run in parallel on the common fork-join pool.
+     */
+    public static DistanceMatrix compute(CompactGraph graph, int[] origins, int[] destinations) {
+        int columns = destinations.length;
+        int[] times = new int[origins.length * columns];
+        boolean[] isTarget = new boolean[graph.nodeCount()];
+        int targetCount = 0;
+        for (int t : destinations) {
+            if (t >= 0 && !isTarget[t]) {
+                isTarget[t] = true;
+                targetCount++;
+            }
+        }
+        int distinctTargets = targetCount;
+        IntStream.range(0, origins.length).parallel()
+                .forEach(row -> fillRow(graph, origins[row], isTarget, distinctTargets, destinations, times, row * columns));
+        return new DistanceMatrix(origins.length, columns, times);
+    }
+
+    private static void fillRow(CompactGraph graph, int source, boolean[] isTarget, int targetCount,
+                                int[] destinations, int[] times, int offset) {
+        if (source < 0) {
+            Arrays.fill(times, offset, offset + destinations.length, UNREACHABLE);
+            return;
+        }
+        SearchScratch scratch = SearchScratch.acquire();
+        try {
+            fillRow(graph, source, isTarget, targetCount, destinations, times, offset, scratch.forward);
+        } finally {
+            scratch.release();
+        }
+    }
+
+    private static void fillRow(CompactGraph graph, int source, boolean[] isTarget, int targetCount,
+                                int[] destinations, int[] times, int offset, SearchSpace space) {
+        space.reset(graph.nodeCount());
+        space.start(source);
+        IndexedMinHeap heap = space.heap;
+        int remaining = targetCount;
+
+        while (remaining > 0 && !heap.isEmpty()) {
+            int u = heap.pollMin();
+            if (isTarget[u]) {
+                remaining--;
+            }
+            int du = space.distance(u);
+            for (int e = graph.edgeStart(u), end = graph.edgeEnd(u); e < end; e++) {
+                int newDistance = du + graph.weight(e);
+                space.relax(graph.target(e), newDistance, u, newDistance);
+            }
+        }
+        for (int j = 0; j < destinations.length; j++) {
+            int t = destinations[j];
+            times[offset + j] = t >= 0 && space.settled(t) ? space.distance(t) : UNREACHABLE;
+        }
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public int time(int row, int column) {
+        return times[row * columns + column];
+    }
+}
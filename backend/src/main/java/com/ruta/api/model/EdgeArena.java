@@ -0,0 +1,38 @@
+package com.ruta.api.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Edge slots shared by a {@link CompactGraph} and the delta versions derived from it. Every version only reads
+ * slots below its own high-water mark, so the newest version can append patched adjacency lists behind it
+ * without disturbing queries still running on older versions.
+ */
+final class EdgeArena {
+    final IntStore heads; // targets for outgoing edges, sources for incoming ones
+    final IntStore weights;
+    private final AtomicInteger used;
+
+    EdgeArena(IntStore heads, IntStore weights, int used) {
+        this.heads = heads;
+        this.weights = weights;
+        this.used = new AtomicInteger(used);
+    }
+
+    // Capacity for a freshly built graph, with slack so the first deltas append in place
+    static int initialCapacity(int edgeCount) {
+        return edgeCount + (edgeCount >> 3) + 16;
+    }
+
+    /**
+     * Arena in which {@code [end, end + count)} is reserved for the caller: this one if {@code end} is still its
+     * high-water mark and the slots fit, otherwise a grown copy of the first {@code end} slots, kept on or off
+     * the heap like this one.
+     */
+    EdgeArena reserve(int end, int count) {
+        if (end + count <= heads.length() && used.compareAndSet(end, end + count)) {
+            return this;
+        }
+        int capacity = Math.max(end + count, end + (end >> 1) + 16);
+        return new EdgeArena(heads.copyOf(capacity, end), weights.copyOf(capacity, end), end + count);
+    }
+}
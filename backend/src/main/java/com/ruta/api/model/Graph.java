@@ -3,120 +3,110 @@ package com.ruta.api.model;
 import java.util.*;
 
 public class Graph {
-    // Map from source location to list of outgoing connections
-    private final Map<String, List<Connection>> adjacencyMap = new HashMap<>();
+    // Edges are staged as parallel int arrays over dense location ids
+    private final LocationDictionary locations = new LocationDictionary();
+    private int[] sources = new int[16];
+    private int[] targets = new int[16];
+    private int[] times = new int[16];
+    private int edgeCount;
+
+    // Frozen CSR form, rebuilt on the first query after a mutation
+    private CompactGraph compact;
+
+    // Mutable copy of a frozen snapshot that keeps its location ids and per-node edge order
+    public static Graph copyOf(CompactGraph snapshot) {
+        Graph graph = new Graph();
+        for (int u = 0; u < snapshot.nodeCount(); u++) {
+            graph.locations.intern(snapshot.nameOf(u));
+        }
+        for (int u = 0; u < snapshot.nodeCount(); u++) {
+            for (int e = snapshot.edgeStart(u), end = snapshot.edgeEnd(u); e < end; e++) {
+                graph.addEdge(u, snapshot.target(e), snapshot.weight(e));
+            }
+        }
+        return graph;
+    }
 
     public void addConnection(Connection connection) {
-        adjacencyMap.computeIfAbsent(connection.getSource(), k -> new ArrayList<>()).add(connection);
+        addEdge(locations.intern(connection.getSource()), locations.intern(connection.getTarget()), connection.getTime());
+    }
+
+    // Id of the location, registering it if new; ids are dense and follow first appearance
+    public int addLocation(String name) {
+        return locations.intern(name);
+    }
+
+    // Adds an edge between ids returned by addLocation, for loaders that resolve names themselves
+    public void addEdge(int source, int target, int time) {
+        if (edgeCount == sources.length) {
+            int capacity = edgeCount * 2;
+            sources = Arrays.copyOf(sources, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            times = Arrays.copyOf(times, capacity);
+        }
+        sources[edgeCount] = source;
+        targets[edgeCount] = target;
+        times[edgeCount] = time;
+        edgeCount++;
+        compact = null;
+    }
+
+    // Appends every edge of other, mapping its locations onto this graph's ids in other's id order
+    public void addAll(Graph other) {
+        int[] ids = new int[other.locations.size()];
+        for (int id = 0; id < ids.length; id++) {
+            ids[id] = locations.intern(other.locations.nameOf(id));
+        }
+        for (int i = 0; i < other.edgeCount; i++) {
+            addEdge(ids[other.sources[i]], ids[other.targets[i]], other.times[i]);
+        }
     }
 
     public List<Connection> getConnectionsFrom(String source) {
-        return adjacencyMap.getOrDefault(source, Collections.emptyList());
+        return compact().getConnectionsFrom(source);
+    }
+
+    // Connections staged so far, duplicates included
+    public int edgeCount() {
+        return edgeCount;
     }
 
     public Set<String> getLocations() {
         Set<String> allLocations = new HashSet<>();
-        for (String source : adjacencyMap.keySet()) {
-            allLocations.add(source);
-            for (Connection connection : adjacencyMap.get(source)) {
-                allLocations.add(connection.getTarget());
-            }
+        for (int id = 0; id < locations.size(); id++) {
+            allLocations.add(locations.nameOf(id));
         }
         return allLocations;
     }
 
     public void clear() {
-        adjacencyMap.clear();
+        locations.clear();
+        edgeCount = 0;
+        compact = null;
     }
 
     public Connection getConnection(String from, String to) {
-        List<Connection> connections = adjacencyMap.get(from);
-        if (connections != null) {
-            for (Connection connection : connections) {
-                if (connection.getTarget().equals(to)) {
-                    return connection;
-                }
-            }
-        }
-        return null;
+        return compact().getConnection(from, to);
     }
 
     public List<String> findShortestRoute(String from, String to) {
-        Set<String> allLocations = getLocations();
-        if (!allLocations.contains(from) || !allLocations.contains(to)) {
-            return null;
-        }
-
-        // Dijkstra's algorithm
-        Map<String, String> previous = new HashMap<>();
-        Map<String, Integer> distances = new HashMap<>();
-        Set<String> visited = new HashSet<>();
-        
-        // Initialize
-        for (String location : allLocations) {
-            distances.put(location, Integer.MAX_VALUE);
-        }
-        distances.put(from, 0);
-        
-        // Priority queue for Dijkstra
-        PriorityQueue<Node> queue = new PriorityQueue<>(Comparator.comparingInt(Node::getDistance));
-        queue.add(new Node(from, 0));
-        
-        while (!queue.isEmpty()) {
-            Node current = queue.poll();
-            String currentLocation = current.getLocation();
-            
-            if (currentLocation.equals(to)) {
-                break;
-            }
-            
-            if (visited.contains(currentLocation)) {
-                continue;
-            }
-            visited.add(currentLocation);
-            
-            for (Connection connection : getConnectionsFrom(currentLocation)) {
-                String neighbor = connection.getTarget();
-                int newDistance = distances.get(currentLocation) + connection.getTime();
-                
-                if (newDistance < distances.get(neighbor)) {
-                    distances.put(neighbor, newDistance);
-                    previous.put(neighbor, currentLocation);
-                    queue.add(new Node(neighbor, newDistance));
-                }
-            }
-        }
-        
-        // Reconstruct path
-        if (distances.get(to) == Integer.MAX_VALUE) {
-            return null; // No path found
-        }
-        
-        List<String> path = new ArrayList<>();
-        String current = to;
-        while (current != null) {
-            path.add(0, current);
-            current = previous.get(current);
-        }
-        
-        return path;
+        return compact().findShortestRoute(from, to);
     }
 
-    private static class Node {
-        private final String location;
-        private final int distance;
-
-        public Node(String location, int distance) {
-            this.location = location;
-            this.distance = distance;
-        }
+    public RouteResult findRoute(String from, String to) {
+        return compact().findRoute(from, to);
+    }
 
-        public String getLocation() {
-            return location;
-        }
+    public RouteResult findRoute(String from, String to, RoutingAlgorithm algorithm) {
+        return compact().findRoute(from, to, algorithm);
+    }
 
-        public int getDistance() {
-            return distance;
+    public CompactGraph compact() {
+        CompactGraph frozen = compact;
+        if (frozen == null) {
+            frozen = CompactGraph.build(locations, sources, targets, times, edgeCount);
+            compact = frozen;
         }
+        return frozen;
     }
-} 
\ No newline at end of file
+}
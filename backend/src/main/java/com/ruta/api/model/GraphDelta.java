@@ -0,0 +1,55 @@
+package com.ruta.api.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ordered batch of edge edits for {@link CompactGraph#apply(GraphDelta)}. An upsert sets the time of the
+ * connection {@code from -> to}, replacing any existing connections between the pair; a delete removes them.
+ */
+public final class GraphDelta {
+    private final List<String> froms = new ArrayList<>();
+    private final List<String> tos = new ArrayList<>();
+    private final List<Integer> times = new ArrayList<>();
+
+    public GraphDelta upsert(String from, String to, int time) {
+        if (time < 0) {
+            throw new IllegalArgumentException("Time must not be negative");
+        }
+        froms.add(from);
+        tos.add(to);
+        times.add(time);
+        return this;
+    }
+
+    public GraphDelta delete(String from, String to) {
+        froms.add(from);
+        tos.add(to);
+        times.add(null);
+        return this;
+    }
+
+    public int size() {
+        return froms.size();
+    }
+
+    public boolean isEmpty() {
+        return froms.isEmpty();
+    }
+
+    public boolean isDelete(int operation) {
+        return times.get(operation) == null;
+    }
+
+    public String from(int operation) {
+        return froms.get(operation);
+    }
+
+    public String to(int operation) {
+        return tos.get(operation);
+    }
+
+    public int time(int operation) {
+        return times.get(operation);
+    }
+}
@@ -0,0 +1,382 @@
+package com.ruta.api.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary on-disk form of a {@link CompactGraph} and its indexes, loaded back by memory-mapping the file.
+ * <p>
+ * Layout, little-endian: a 24-byte header ({@code long} magic, {@code int} format version, {@code int}
+ * CRC32C of the payload, {@code long} payload length) followed by blocks of {@code int} tag,
+ * {@code long} length and content. Int arrays are stored as a length and the raw values, so loading them is
+ * one bulk copy out of the mapping per array. The dictionary and adjacency blocks are required; landmark,
+ * hierarchy and log position blocks are optional and unknown tags are skipped.
+ * <p>
+ * Files are written to a temporary sibling, forced to disk and renamed over the target, so readers only ever
+ * see a complete snapshot. A file cut short or altered anyway fails the length or checksum check on load.
+ */
+public final class GraphSnapshot {
+    static final long MAGIC = 0x4850_4152_4741_5452L; // "RTAGRAPH" read as little-endian bytes
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_BYTES = 24;
+    // read maps the whole file as one buffer, which cannot exceed 2 GB
+    static final long MAX_PAYLOAD_BYTES = Integer.MAX_VALUE - HEADER_BYTES;
+
+    private static final int DICTIONARY = 1;
+    private static final int ADJACENCY = 2;
+    private static final int LANDMARKS = 3;
+    private static final int HIERARCHY = 4;
+    private static final int LOG_POSITION = 5;
+
+    private final CompactGraph graph;
+    private final long logPosition;
+
+    private GraphSnapshot(CompactGraph graph, long logPosition) {
+        this.graph = graph;
+        this.logPosition = logPosition;
+    }
+
+    public CompactGraph graph() {
+        return graph;
+    }
+
+    // Position of the last logged change the graph includes, 0 when none was recorded
+    public long logPosition() {
+        return logPosition;
+    }
+
+    /**
+     * Writes the graph with whatever landmark and hierarchy indexes are attached to it and atomically
+     * replaces {@code file}. Delta versions are flattened to a plain CSR on the way out. Fails without touching
+     * {@code file} when the snapshot would be too large for {@link #read} to map.
+     */
+    public static void write(CompactGraph graph, long logPosition, Path file) throws IOException {
+        write(graph, logPosition, file, MAX_PAYLOAD_BYTES);
+    }
+
+    static void write(CompactGraph graph, long logPosition, Path file, long maxPayloadBytes) throws IOException {
+        LandmarkIndex landmarks = graph.landmarks();
+        ContractionHierarchy hierarchy = graph.hierarchy();
+        int edgeCount = graph.edgeCount();
+        IntStore[] csr = graph.csrStores();
+        int[] limits = {csr[0].length(), edgeCount, edgeCount, csr[3].length(), edgeCount, edgeCount};
+
+        int n = graph.nodeCount();
+        byte[][] names = new byte[n][];
+        long dictionaryBytes = 4;
+        for (int i = 0; i < n; i++) {
+            names[i] = graph.nameOf(i).getBytes(StandardCharsets.UTF_8);
+            dictionaryBytes += 4 + names[i].length;
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Output out = new Output(channel, maxPayloadBytes);
+            out.buffer.position(HEADER_BYTES); // header goes in last, once the checksum is known
+
+            out.beginBlock(DICTIONARY, dictionaryBytes);
+            out.putInt(n);
+            for (byte[] name : names) {
+                out.putInt(name.length);
+                out.putBytes(name);
+            }
+            out.beginBlock(ADJACENCY, 4 + arraysBytes(limits));
+            out.putInt(edgeCount);
+            for (int i = 0; i < csr.length; i++) {
+                out.putInts(csr[i], limits[i]);
+            }
+            if (landmarks != null) {
+                int[][] arrays = landmarks.arrays();
+                out.beginBlock(LANDMARKS, arraysBytes(lengths(arrays)));
+                for (int[] array : arrays) {
+                    out.putInts(array, array.length);
+                }
+            }
+            if (hierarchy != null) {
+                int[][] arrays = hierarchy.arrays();
+                out.beginBlock(HIERARCHY, 4 + arraysBytes(lengths(arrays)));
+                out.putInt(hierarchy.shortcutCount());
+                for (int[] array : arrays) {
+                    out.putInts(array, array.length);
+                }
+            }
+            if (logPosition != 0) {
+                out.beginBlock(LOG_POSITION, 8);
+                out.putLong(logPosition);
+            }
+            out.finish();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static GraphSnapshot read(Path file) throws IOException {
+        return read(file, false);
+    }
+
+    /**
+     * Maps {@code file} and rebuilds the graph with the indexes it carries attached. With {@code offHeap} the
+     * adjacency and dictionary are copied straight into native memory, as {@link CompactGraph#toOffHeap()}
+     * would leave them. Throws when the file is not a snapshot, comes from another format version, is
+     * truncated or fails its checksum.
+     */
+    public static GraphSnapshot read(Path file, boolean offHeap) throws IOException {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a graph snapshot: " + file);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (mapped.getLong(0) != MAGIC) {
+            throw new IOException("Not a graph snapshot: " + file);
+        }
+        if (mapped.getInt(8) != FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format " + mapped.getInt(8) + ": " + file);
+        }
+        if (mapped.getLong(16) != mapped.capacity() - HEADER_BYTES) {
+            throw new IOException("Truncated graph snapshot: " + file);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(mapped.slice(HEADER_BYTES, mapped.capacity() - HEADER_BYTES));
+        if ((int) crc.getValue() != mapped.getInt(12)) {
+            throw new IOException("Graph snapshot checksum mismatch: " + file);
+        }
+
+        try {
+            return decode(mapped.position(HEADER_BYTES), offHeap);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed graph snapshot: " + file, e);
+        }
+    }
+
+    private static GraphSnapshot decode(ByteBuffer in, boolean offHeap) throws IOException {
+        LocationDictionary locations = null;
+        CompactGraph graph = null;
+        long logPosition = 0;
+        while (in.hasRemaining()) {
+            int tag = in.getInt();
+            long length = in.getLong();
+            int end = Math.toIntExact(in.position() + length);
+            switch (tag) {
+                case DICTIONARY -> locations = readDictionary(in);
+                case ADJACENCY -> {
+                    if (locations == null) {
+                        throw new IOException("Adjacency block before the dictionary");
+                    }
+                    graph = readAdjacency(in, offHeap ? locations.toDirect() : locations, offHeap);
+                }
+                case LANDMARKS -> {
+                    if (graph != null) {
+                        graph.attachLandmarks(LandmarkIndex.restore(graph, readInts(in), readInts(in), readInts(in)));
+                    }
+                }
+                case HIERARCHY -> {
+                    if (graph != null) {
+                        int shortcutCount = in.getInt();
+                        int[][] arrays = new int[9][];
+                        for (int i = 0; i < arrays.length; i++) {
+                            arrays[i] = readInts(in);
+                        }
+                        graph.attachHierarchy(ContractionHierarchy.restore(graph, arrays, shortcutCount));
+                    }
+                }
+                case LOG_POSITION -> logPosition = in.getLong();
+                default -> {
+                    // Block written by a newer build; nothing here depends on it
+                }
+            }
+            if (in.position() > end) {
+                throw new IOException("Block " + tag + " overruns its length");
+            }
+            in.position(end);
+        }
+        if (graph == null) {
+            throw new IOException("Snapshot has no adjacency block");
+        }
+        return new GraphSnapshot(graph, logPosition);
+    }
+
+    private static LocationDictionary readDictionary(ByteBuffer in) throws IOException {
+        int n = in.getInt();
+        LocationDictionary locations = new LocationDictionary(n);
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < n; i++) {
+            int length = in.getInt();
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            in.get(bytes, 0, length);
+            if (locations.intern(new String(bytes, 0, length, StandardCharsets.UTF_8)) != i) {
+                throw new IOException("Duplicate location in snapshot dictionary");
+            }
+        }
+        return locations;
+    }
+
+    private static CompactGraph readAdjacency(ByteBuffer in, LocationDictionary locations, boolean offHeap)
+            throws IOException {
+        int edgeCount = in.getInt();
+        int n = locations.size();
+        // Edge arrays get the same slack a freshly built graph has, so the first deltas append in place
+        int capacity = EdgeArena.initialCapacity(edgeCount);
+        IntStore offsets = readStore(in, 0, offHeap);
+        IntStore targets = readStore(in, capacity, offHeap);
+        IntStore weights = readStore(in, capacity, offHeap);
+        IntStore reverseOffsets = readStore(in, 0, offHeap);
+        IntStore reverseSources = readStore(in, capacity, offHeap);
+        IntStore reverseWeights = readStore(in, capacity, offHeap);
+        if (offsets.length() != n + 1 || reverseOffsets.length() != n + 1
+                || offsets.get(n) != edgeCount || reverseOffsets.get(n) != edgeCount) {
+            throw new IOException("Adjacency arrays do not match the dictionary");
+        }
+        return CompactGraph.restore(locations, offsets, targets, weights,
+                reverseOffsets, reverseSources, reverseWeights, edgeCount);
+    }
+
+    private static int[] readInts(ByteBuffer in) {
+        return readInts(in, 0);
+    }
+
+    // Bulk copy of a length-prefixed int array into an array of at least minCapacity
+    private static int[] readInts(ByteBuffer in, int minCapacity) {
+        int length = in.getInt();
+        int[] values = new int[Math.max(length, minCapacity)];
+        in.slice(in.position(), Math.multiplyExact(length, 4)).order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer().get(values, 0, length);
+        in.position(in.position() + length * 4);
+        return values;
+    }
+
+    private static IntStore readStore(ByteBuffer in, int minCapacity, boolean offHeap) {
+        if (!offHeap) {
+            return IntStore.of(readInts(in, minCapacity));
+        }
+        int length = in.getInt();
+        IntBuffer values = in.slice(in.position(), Math.multiplyExact(length, 4)).order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer();
+        in.position(in.position() + length * 4);
+        return IntStore.direct(values, Math.max(length, minCapacity));
+    }
+
+    private static int[] lengths(int[][] arrays) {
+        int[] lengths = new int[arrays.length];
+        for (int i = 0; i < arrays.length; i++) {
+            lengths[i] = arrays[i].length;
+        }
+        return lengths;
+    }
+
+    private static long arraysBytes(int[] lengths) {
+        long bytes = 0;
+        for (int length : lengths) {
+            bytes += 4 + 4L * length;
+        }
+        return bytes;
+    }
+
+    // Buffered channel writer that checksums everything after the header as it goes out
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+        private final long maxPayloadBytes;
+        private long payloadBytes;
+        // Sum of the blocks begun so far, checked before their content is written
+        private long declaredBytes;
+        private boolean headerPending = true;
+
+        Output(FileChannel channel, long maxPayloadBytes) {
+            this.channel = channel;
+            this.maxPayloadBytes = maxPayloadBytes;
+        }
+
+        void beginBlock(int tag, long length) throws IOException {
+            declaredBytes += 12 + length;
+            if (declaredBytes > maxPayloadBytes) {
+                throw new IOException("Graph too large for a snapshot: over " + maxPayloadBytes + " bytes");
+            }
+            putInt(tag);
+            putLong(length);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        void putInts(int[] values, int length) throws IOException {
+            putInts(IntStore.of(values), length);
+        }
+
+        void putInts(IntStore values, int length) throws IOException {
+            putInt(length);
+            for (int offset = 0; offset < length; ) {
+                ensure(4);
+                int chunk = Math.min(buffer.remaining() / 4, length - offset);
+                values.copyTo(offset, chunk, buffer.asIntBuffer());
+                buffer.position(buffer.position() + chunk * 4);
+                offset += chunk;
+            }
+        }
+
+        void finish() throws IOException {
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC).putInt(FORMAT_VERSION).putInt((int) crc.getValue()).putLong(payloadBytes).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            if (headerPending) {
+                // The first flush starts with the space reserved for the header
+                buffer.position(HEADER_BYTES);
+                channel.position(HEADER_BYTES);
+                headerPending = false;
+            }
+            payloadBytes += buffer.remaining();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.ruta.api.model;
+
+import java.util.List;
+
+/**
+ * Outcome of applying a {@link GraphDelta}: the new graph version and, for every connected pair whose
+ * effective time (the smallest of its parallel connections) changed, the time before and after.
+ */
+public final class GraphUpdate {
+    private final CompactGraph graph;
+    private final List<EdgeChange> changes;
+    private final boolean locationsAdded;
+
+    GraphUpdate(CompactGraph graph, List<EdgeChange> changes, boolean locationsAdded) {
+        this.graph = graph;
+        this.changes = changes;
+        this.locationsAdded = locationsAdded;
+    }
+
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    public List<EdgeChange> getChanges() {
+        return changes;
+    }
+
+    public boolean isLocationsAdded() {
+        return locationsAdded;
+    }
+
+    // True when no pair got cheaper or newly connected, so every distance can only have grown
+    public boolean isIncreaseOnly() {
+        for (EdgeChange change : changes) {
+            if (change.isDecrease()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static final class EdgeChange {
+        /** Time of a pair with no connection. */
+        public static final int ABSENT = -1;
+
+        private final int source;
+        private final int target;
+        private final int oldTime;
+        private final int newTime;
+
+        EdgeChange(int source, int target, int oldTime, int newTime) {
+            this.source = source;
+            this.target = target;
+            this.oldTime = oldTime;
+            this.newTime = newTime;
+        }
+
+        public int getSource() {
+            return source;
+        }
+
+        public int getTarget() {
+            return target;
+        }
+
+        public int getOldTime() {
+            return oldTime;
+        }
+
+        public int getNewTime() {
+            return newTime;
+        }
+
+        public boolean isDecrease() {
+            return newTime != ABSENT && (oldTime == ABSENT || newTime < oldTime);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.ruta.api.model;
+
+import java.util.Arrays;
+
+/**
+ * 4-ary min-heap of node ids with decrease-key.
+ * {@code position[node]} is only meaningful for nodes inserted since the last {@link #clear()};
+ * the owning {@link SearchSpace} tracks which nodes those are.
+ */
+final class IndexedMinHeap {
+    private static final int ARITY = 4;
+
+    private int[] nodes;
+    private int[] keys;
+    private int[] position;
+    private int size;
+    // Inserts, key changes and removals since the last clear(), for search statistics
+    private int operations;
+
+    IndexedMinHeap(int capacity) {
+        nodes = new int[Math.max(1, capacity)];
+        keys = new int[nodes.length];
+        position = new int[nodes.length];
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity > position.length) {
+            nodes = Arrays.copyOf(nodes, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            position = Arrays.copyOf(position, capacity);
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int minKey() {
+        return keys[0];
+    }
+
+    int minNode() {
+        return nodes[0];
+    }
+
+    void clear() {
+        size = 0;
+        operations = 0;
+    }
+
+    int operations() {
+        return operations;
+    }
+
+    boolean contains(int node) {
+        int slot = position[node];
+        return slot < size && nodes[slot] == node;
+    }
+
+    void insert(int node, int key) {
+        operations++;
+        int slot = size++;
+        nodes[slot] = node;
+        keys[slot] = key;
+        position[node] = slot;
+        siftUp(slot);
+    }
+
+    void decreaseKey(int node, int key) {
+        operations++;
+        int slot = position[node];
+        keys[slot] = key;
+        siftUp(slot);
+    }
+
+    // Moves a queued node to a new key in either direction
+    void changeKey(int node, int key) {
+        operations++;
+        int slot = position[node];
+        int old = keys[slot];
+        keys[slot] = key;
+        if (key < old) {
+            siftUp(slot);
+        } else {
+            siftDown(slot);
+        }
+    }
+
+    int pollMin() {
+        operations++;
+        int min = nodes[0];
+        int last = --size;
+        if (last > 0) {
+            nodes[0] = nodes[last];
+            keys[0] = keys[last];
+            position[nodes[0]] = 0;
+            siftDown(0);
+        }
+        // Park the removed node out of range so contains() reports false
+        position[min] = Integer.MAX_VALUE;
+        return min;
+    }
+
+    private void siftUp(int slot) {
+        int node = nodes[slot];
+        int key = keys[slot];
+        while (slot > 0) {
+            int parent = (slot - 1) / ARITY;
+            if (keys[parent] <= key) {
+                break;
+            }
+            nodes[slot] = nodes[parent];
+            keys[slot] = keys[parent];
+            position[nodes[slot]] = slot;
+            slot = parent;
+        }
+        nodes[slot] = node;
+        keys[slot] = key;
+        position[node] = slot;
+    }
+
+    private void siftDown(int slot) {
+        int node = nodes[slot];
+        int key = keys[slot];
+        while (true) {
+            int first = slot * ARITY + 1;
+            if (first >= size) {
+                break;
+            }
+            int best = first;
+            int bestKey = keys[first];
+            for (int child = first + 1, end = Math.min(first + ARITY, size); child < end; child++) {
+                if (keys[child] < bestKey) {
+                    best = child;
+                    bestKey = keys[child];
+                }
+            }
+            if (bestKey >= key) {
+                break;
+            }
+            nodes[slot] = nodes[best];
+            keys[slot] = bestKey;
+            position[nodes[slot]] = slot;
+            slot = best;
+        }
+        nodes[slot] = node;
+        keys[slot] = key;
+        position[node] = slot;
+    }
+}
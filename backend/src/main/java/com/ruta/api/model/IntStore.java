@@ -0,0 +1,120 @@
+package com.ruta.api.model;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Fixed-length int array behind {@link CompactGraph}: a plain {@code int[]} on the heap, or a view of a
+ * {@link NativeBlock} for off-heap graphs. Stores of one graph are all of the same kind, so the accessors
+ * stay monomorphic on the query path.
+ */
+abstract class IntStore {
+    static IntStore of(int[] values) {
+        return new Heap(values);
+    }
+
+    // Off-heap store of the given length that starts with the remaining values of source
+    static IntStore direct(IntBuffer source, int length) {
+        Direct store = new Direct(NativeBlock.allocate(4L * length));
+        store.ints.put(0, source, source.position(), source.remaining());
+        return store;
+    }
+
+    abstract int get(int index);
+
+    abstract void set(int index, int value);
+
+    abstract int length();
+
+    // Store of the same kind and the given length, starting with (at least) the first count values of this one
+    abstract IntStore copyOf(int length, int count);
+
+    // Bulk copy of [from, from + count) into out at its position
+    abstract void copyTo(int from, int count, IntBuffer out);
+
+    // The native memory behind the store, or null on the heap
+    NativeBlock block() {
+        return null;
+    }
+
+    // Off-heap store of the given length, starting with the first count values of this one
+    IntStore toDirect(int length, int count) {
+        Direct copy = new Direct(NativeBlock.allocate(4L * length));
+        IntBuffer out = copy.ints.duplicate();
+        copyTo(0, count, out);
+        return copy;
+    }
+
+    private static final class Heap extends IntStore {
+        private final int[] values;
+
+        Heap(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int get(int index) {
+            return values[index];
+        }
+
+        @Override
+        void set(int index, int value) {
+            values[index] = value;
+        }
+
+        @Override
+        int length() {
+            return values.length;
+        }
+
+        @Override
+        IntStore copyOf(int length, int count) {
+            return new Heap(Arrays.copyOf(values, length));
+        }
+
+        @Override
+        void copyTo(int from, int count, IntBuffer out) {
+            out.put(values, from, count);
+        }
+    }
+
+    private static final class Direct extends IntStore {
+        private final NativeBlock block;
+        private final IntBuffer ints;
+
+        Direct(NativeBlock block) {
+            this.block = block;
+            this.ints = block.buffer.asIntBuffer();
+        }
+
+        @Override
+        int get(int index) {
+            return ints.get(index);
+        }
+
+        @Override
+        void set(int index, int value) {
+            ints.put(index, value);
+        }
+
+        @Override
+        int length() {
+            return ints.capacity();
+        }
+
+        @Override
+        IntStore copyOf(int length, int count) {
+            return toDirect(length, count);
+        }
+
+        @Override
+        void copyTo(int from, int count, IntBuffer out) {
+            out.put(ints.slice(from, count));
+        }
+
+        @Override
+        NativeBlock block() {
+            return block;
+        }
+    }
+}
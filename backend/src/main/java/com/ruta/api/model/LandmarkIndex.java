@@ -0,0 +1,313 @@
+package com.ruta.api.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Landmark distances for ALT lower bounds. For every node {@code v} and landmark {@code i} the index
+ * keeps {@code d(L_i, v)} and {@code d(v, L_i)}, interleaved per node so one potential evaluation
+ * reads a single cache line or two. By the triangle inequality
+ * {@code d(v, t) >= max(d(L, t) - d(L, v), d(v, L) - d(t, L))}.
+ */
+public final class LandmarkIndex {
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final CompactGraph graph;
+    private final int[] landmarks;
+    private final int[] fromLandmark; // [v * k + i] = d(L_i, v)
+    private final int[] toLandmark;   // [v * k + i] = d(v, L_i)
+
+    private LandmarkIndex(CompactGraph graph, int[] landmarks, int[] fromLandmark, int[] toLandmark) {
+        this.graph = graph;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    /**
+     * Selects up to {@code count} landmarks and computes their distance arrays.
+     * Independent shortest-path trees run in parallel on the common fork-join pool.
+     */
+    public static LandmarkIndex build(CompactGraph graph, int count, LandmarkSelection selection, long seed) {
+        int n = graph.nodeCount();
+        int k = Math.min(count, n);
+        List<int[]> forward = new ArrayList<>(k);
+        List<int[]> backward = new ArrayList<>(k);
+        int[] chosen = new int[k];
+        Random random = new Random(seed);
+
+        if (selection == LandmarkSelection.AVOID) {
+            for (int i = 0; i < k; i++) {
+                chosen[i] = selectAvoid(graph, chosen, i, forward, backward, random);
+                int landmark = chosen[i];
+                int[][] pair = IntStream.range(0, 2).parallel()
+                        .mapToObj(direction -> distances(graph, landmark, direction == 1))
+                        .toArray(int[][]::new);
+                forward.add(pair[0]);
+                backward.add(pair[1]);
+            }
+        } else {
+            // Farthest: each new landmark maximises its distance to the ones already picked
+            int start = n == 0 ? 0 : random.nextInt(n);
+            for (int i = 0; i < k; i++) {
+                chosen[i] = i == 0 ? farthestFrom(distances(graph, start, false)) : farthestFrom(forward);
+                forward.add(distances(graph, chosen[i], false));
+            }
+            backward.addAll(IntStream.range(0, k).parallel()
+                    .mapToObj(i -> distances(graph, chosen[i], true))
+                    .toList());
+        }
+
+        int[] fromLandmark = new int[n * k];
+        int[] toLandmark = new int[n * k];
+        for (int i = 0; i < k; i++) {
+            int[] from = forward.get(i);
+            int[] to = backward.get(i);
+            for (int v = 0; v < n; v++) {
+                fromLandmark[v * k + i] = from[v];
+                toLandmark[v * k + i] = to[v];
+            }
+        }
+        return new LandmarkIndex(graph, chosen, fromLandmark, toLandmark);
+    }
+
+    public CompactGraph graph() {
+        return graph;
+    }
+
+    /**
+     * The same landmark distances bound to a newer version of the graph. Only valid when that version has the
+     * same locations and no connection got cheaper or was added: distances can then only have grown, so the
+     * old bounds stay admissible and the potentials stay consistent.
+     */
+    public LandmarkIndex reboundTo(CompactGraph newer) {
+        if (newer.nodeCount() != graph.nodeCount()) {
+            throw new IllegalArgumentException("Landmark distances do not cover the new locations");
+        }
+        return new LandmarkIndex(newer, landmarks, fromLandmark, toLandmark);
+    }
+
+    // Landmarks and both distance arrays, for GraphSnapshot
+    int[][] arrays() {
+        return new int[][]{landmarks, fromLandmark, toLandmark};
+    }
+
+    static LandmarkIndex restore(CompactGraph graph, int[] landmarks, int[] fromLandmark, int[] toLandmark) {
+        long expected = (long) graph.nodeCount() * landmarks.length;
+        if (fromLandmark.length != expected || toLandmark.length != expected) {
+            throw new IllegalArgumentException("Landmark distances do not match the graph");
+        }
+        return new LandmarkIndex(graph, landmarks, fromLandmark, toLandmark);
+    }
+
+    public int landmarkCount() {
+        return landmarks.length;
+    }
+
+    public int[] landmarks() {
+        return landmarks.clone();
+    }
+
+    public long estimatedBytes() {
+        return 32L + 4L * (landmarks.length + fromLandmark.length + toLandmark.length);
+    }
+
+    /**
+     * Lower bound on {@code d(v, target)}, or {@link #UNREACHABLE} when the landmark distances
+     * prove that {@code v} cannot reach {@code target}.
+     */
+    int lowerBound(int v, int target) {
+        int k = landmarks.length;
+        int vBase = v * k;
+        int tBase = target * k;
+        int bound = 0;
+        for (int i = 0; i < k; i++) {
+            int lv = fromLandmark[vBase + i];
+            int lt = fromLandmark[tBase + i];
+            if (lt != UNREACHABLE) {
+                if (lv != UNREACHABLE && lt - lv > bound) {
+                    bound = lt - lv;
+                }
+            } else if (lv != UNREACHABLE) {
+                return UNREACHABLE; // L reaches v but not target, so v cannot reach target
+            }
+            int vl = toLandmark[vBase + i];
+            int tl = toLandmark[tBase + i];
+            if (tl != UNREACHABLE) {
+                if (vl == UNREACHABLE) {
+                    return UNREACHABLE; // target reaches L but v does not, so v cannot reach target
+                }
+                if (vl - tl > bound) {
+                    bound = vl - tl;
+                }
+            }
+        }
+        return bound;
+    }
+
+    static int[] distances(CompactGraph graph, int source, boolean reverse) {
+        SearchScratch scratch = SearchScratch.acquire();
+        try {
+            return distances(graph, source, reverse, scratch.forward);
+        } finally {
+            scratch.release();
+        }
+    }
+
+    private static int[] distances(CompactGraph graph, int source, boolean reverse, SearchSpace space) {
+        int[] distance = new int[graph.nodeCount()];
+        Arrays.fill(distance, UNREACHABLE);
+        space.reset(graph.nodeCount());
+        space.start(source);
+        IndexedMinHeap heap = space.heap;
+        while (!heap.isEmpty()) {
+            int u = heap.pollMin();
+            int du = space.distance(u);
+            distance[u] = du;
+            int end = reverse ? graph.reverseEdgeEnd(u) : graph.edgeEnd(u);
+            for (int e = reverse ? graph.reverseEdgeStart(u) : graph.edgeStart(u); e < end; e++) {
+                int v = reverse ? graph.reverseSource(e) : graph.target(e);
+                int newDistance = du + (reverse ? graph.reverseWeight(e) : graph.weight(e));
+                space.relax(v, newDistance, u, newDistance);
+            }
+        }
+        return distance;
+    }
+
+    private static int farthestFrom(int[] distance) {
+        int best = 0;
+        for (int v = 1; v < distance.length; v++) {
+            if (distance[v] != UNREACHABLE && (distance[best] == UNREACHABLE || distance[v] > distance[best])) {
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    // Nodes no landmark reaches count as infinitely far, so they are covered first
+    private static int farthestFrom(List<int[]> forward) {
+        int best = -1;
+        long bestScore = -1;
+        for (int v = 0; v < forward.get(0).length; v++) {
+            long score = Long.MAX_VALUE;
+            for (int[] distance : forward) {
+                score = Math.min(score, distance[v] == UNREACHABLE ? Long.MAX_VALUE : distance[v]);
+            }
+            if (score > bestScore && !isLandmark(forward, v)) {
+                best = v;
+                bestScore = score;
+            }
+        }
+        return Math.max(best, 0);
+    }
+
+    private static boolean isLandmark(List<int[]> forward, int v) {
+        for (int[] distance : forward) {
+            if (distance[v] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Avoid selection (Goldberg and Werneck): grow a shortest-path tree from a random root, weight each
+     * node by how loose the current bounds are for it, and descend from the heaviest subtree that holds
+     * no landmark yet down to a leaf.
+     */
+    private static int selectAvoid(CompactGraph graph, int[] chosen, int picked,
+                                   List<int[]> forward, List<int[]> backward, Random random) {
+        int n = graph.nodeCount();
+        int root = random.nextInt(n);
+        int[] order = new int[n];
+        int[] parent = new int[n];
+        int[] rootDistance = new int[n];
+        int settled = shortestPathTree(graph, root, order, parent, rootDistance);
+
+        long[] size = new long[n];
+        boolean[] covered = new boolean[n];
+        for (int i = 0; i < picked; i++) {
+            covered[chosen[i]] = true;
+        }
+        int[] heaviestChild = new int[n];
+        Arrays.fill(heaviestChild, -1);
+        for (int i = settled - 1; i >= 0; i--) {
+            int v = order[i];
+            size[v] += rootDistance[v] - bound(forward, backward, root, v);
+            if (covered[v]) {
+                size[v] = 0;
+            }
+            int p = parent[v];
+            if (p >= 0) {
+                if (covered[v]) {
+                    covered[p] = true;
+                }
+                size[p] += size[v];
+                if (heaviestChild[p] < 0 || size[v] > size[heaviestChild[p]]) {
+                    heaviestChild[p] = v;
+                }
+            }
+        }
+        int best = -1;
+        for (int i = 0; i < settled; i++) {
+            int v = order[i];
+            if (!covered[v] && (best < 0 || size[v] > size[best])) {
+                best = v;
+            }
+        }
+        if (best < 0) {
+            return forward.isEmpty() ? root : farthestFrom(forward);
+        }
+        while (heaviestChild[best] >= 0 && !covered[heaviestChild[best]]) {
+            best = heaviestChild[best];
+        }
+        return best;
+    }
+
+    private static int bound(List<int[]> forward, List<int[]> backward, int from, int to) {
+        int bound = 0;
+        for (int i = 0; i < forward.size(); i++) {
+            int lf = forward.get(i)[from];
+            int lt = forward.get(i)[to];
+            if (lf != UNREACHABLE && lt != UNREACHABLE) {
+                bound = Math.max(bound, lt - lf);
+            }
+            int fl = backward.get(i)[from];
+            int tl = backward.get(i)[to];
+            if (fl != UNREACHABLE && tl != UNREACHABLE) {
+                bound = Math.max(bound, fl - tl);
+            }
+        }
+        return bound;
+    }
+
+    private static int shortestPathTree(CompactGraph graph, int root, int[] order, int[] parent, int[] distance) {
+        SearchScratch scratch = SearchScratch.acquire();
+        try {
+            return shortestPathTree(graph, root, order, parent, distance, scratch.forward);
+        } finally {
+            scratch.release();
+        }
+    }
+
+    private static int shortestPathTree(CompactGraph graph, int root, int[] order, int[] parent, int[] distance,
+                                        SearchSpace space) {
+        space.reset(graph.nodeCount());
+        space.start(root);
+        int settled = 0;
+        while (!space.heap.isEmpty()) {
+            int u = space.heap.pollMin();
+            order[settled++] = u;
+            parent[u] = space.predecessor(u);
+            distance[u] = space.distance(u);
+            for (int e = graph.edgeStart(u), end = graph.edgeEnd(u); e < end; e++) {
+                int newDistance = distance[u] + graph.weight(e);
+                space.relax(graph.target(e), newDistance, u, newDistance);
+            }
+        }
+        return settled;
+    }
+}
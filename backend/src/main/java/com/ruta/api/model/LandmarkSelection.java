@@ -0,0 +1,21 @@
+package com.ruta.api.model;
+
+import java.util.Locale;
+
+public enum LandmarkSelection {
+    FARTHEST,
+    AVOID;
+
+    // Falls back to FARTHEST for unknown names
+    public static LandmarkSelection fromName(String name) {
+        if (name != null && name.trim().equalsIgnoreCase("avoid")) {
+            return AVOID;
+        }
+        return FARTHEST;
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,247 @@
+package com.ruta.api.model;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Maps location names to dense int ids (0..size-1) and back.
+ * Open addressing over an int table, so a lookup hashes the name once and never boxes.
+ *
+ * <p>{@link #toDirect()} gives a frozen form that keeps the table and the UTF-8 names in one
+ * {@link NativeBlock}, so a large dictionary costs the heap one object instead of a String per location.
+ */
+public final class LocationDictionary {
+    private static final int NO_ID = -1;
+
+    private String[] names;
+    private int[] table; // slot -> id + 1, 0 means empty
+    private int size;
+    private final DirectNames direct; // off-heap form; names and table are null when set
+
+    public LocationDictionary() {
+        this(16);
+    }
+
+    public LocationDictionary(int expectedSize) {
+        names = new String[Math.max(4, expectedSize)];
+        table = new int[tableCapacityFor(expectedSize)];
+        direct = null;
+    }
+
+    private LocationDictionary(String[] names, int[] table, int size) {
+        this.names = names;
+        this.table = table;
+        this.size = size;
+        this.direct = null;
+    }
+
+    private LocationDictionary(DirectNames direct, int size) {
+        this.size = size;
+        this.direct = direct;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String nameOf(int id) {
+        return direct == null ? names[id] : direct.nameOf(id);
+    }
+
+    // Returns -1 when the name is unknown
+    public int idOf(String name) {
+        if (name == null) {
+            return NO_ID;
+        }
+        if (direct != null) {
+            return direct.idOf(name);
+        }
+        int mask = table.length - 1;
+        for (int slot = mix(name.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return NO_ID;
+            }
+            if (names[entry - 1].equals(name)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    public boolean contains(String name) {
+        return idOf(name) != NO_ID;
+    }
+
+    // Returns the id of the name, assigning the next free id if it is new
+    public int intern(String name) {
+        requireHeap();
+        int mask = table.length - 1;
+        int slot = mix(name.hashCode()) & mask;
+        for (int entry; (entry = table[slot]) != 0; slot = (slot + 1) & mask) {
+            if (names[entry - 1].equals(name)) {
+                return entry - 1;
+            }
+        }
+        int id = size++;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, names.length * 2);
+        }
+        names[id] = name;
+        table[slot] = id + 1;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return id;
+    }
+
+    public void clear() {
+        requireHeap();
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(table, 0);
+        size = 0;
+    }
+
+    // Immutable-by-convention copy that is safe to share with a frozen graph; always a heap dictionary
+    public LocationDictionary copy() {
+        if (direct != null) {
+            LocationDictionary copy = new LocationDictionary(size);
+            for (int id = 0; id < size; id++) {
+                copy.intern(direct.nameOf(id));
+            }
+            return copy;
+        }
+        return new LocationDictionary(Arrays.copyOf(names, Math.max(4, size)), table.clone(), size);
+    }
+
+    /**
+     * Frozen off-heap copy with the same ids. Lookups encode the name to UTF-8 and compare bytes, and
+     * {@link #nameOf} decodes a new String each time. Further interning is not supported.
+     */
+    LocationDictionary toDirect() {
+        if (direct != null) {
+            return this;
+        }
+        byte[][] encoded = new byte[size][];
+        long nameBytes = 0;
+        for (int id = 0; id < size; id++) {
+            encoded[id] = names[id].getBytes(StandardCharsets.UTF_8);
+            nameBytes += encoded[id].length;
+        }
+        int namesAt = 4 * (table.length + size + 1);
+        NativeBlock block = NativeBlock.allocate(namesAt + nameBytes);
+        IntBuffer ints = block.buffer.asIntBuffer();
+        ints.put(0, table);
+        int start = 0;
+        for (int id = 0; id < size; id++) {
+            ints.put(table.length + id, start);
+            block.buffer.put(namesAt + start, encoded[id]);
+            start += encoded[id].length;
+        }
+        ints.put(table.length + size, start);
+        return new LocationDictionary(new DirectNames(block, table.length, size), size);
+    }
+
+    // The native memory of the off-heap form, or null on the heap
+    NativeBlock block() {
+        return direct == null ? null : direct.block;
+    }
+
+    public long estimatedBytes() {
+        if (direct != null) {
+            return 32L + direct.block.bytes();
+        }
+        long bytes = 16L + 4L * table.length + 8L * names.length;
+        for (int i = 0; i < size; i++) {
+            // String header + value array header + Latin-1 payload
+            bytes += 40 + names[i].length();
+        }
+        return bytes;
+    }
+
+    private void requireHeap() {
+        if (direct != null) {
+            throw new IllegalStateException("Off-heap location dictionaries are frozen");
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] rehashed = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(names[id].hashCode()) & mask;
+            while (rehashed[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            rehashed[slot] = id + 1;
+        }
+        table = rehashed;
+    }
+
+    private static int tableCapacityFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    // Probe table, name start offsets and UTF-8 names back to back in one native block
+    private static final class DirectNames {
+        final NativeBlock block;
+        private final ByteBuffer bytes;
+        private final IntBuffer ints;
+        private final int tableLength;
+        private final int namesAt;
+
+        DirectNames(NativeBlock block, int tableLength, int size) {
+            this.block = block;
+            this.bytes = block.buffer;
+            this.ints = block.buffer.asIntBuffer();
+            this.tableLength = tableLength;
+            this.namesAt = 4 * (tableLength + size + 1);
+        }
+
+        String nameOf(int id) {
+            int start = ints.get(tableLength + id);
+            byte[] name = new byte[ints.get(tableLength + id + 1) - start];
+            bytes.get(namesAt + start, name);
+            return new String(name, StandardCharsets.UTF_8);
+        }
+
+        int idOf(String name) {
+            int mask = tableLength - 1;
+            byte[] encoded = null;
+            for (int slot = mix(name.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+                int entry = ints.get(slot);
+                if (entry == 0) {
+                    return NO_ID;
+                }
+                if (encoded == null) {
+                    encoded = name.getBytes(StandardCharsets.UTF_8);
+                }
+                if (matches(entry - 1, encoded)) {
+                    return entry - 1;
+                }
+            }
+        }
+
+        private boolean matches(int id, byte[] name) {
+            int start = ints.get(tableLength + id);
+            if (ints.get(tableLength + id + 1) - start != name.length) {
+                return false;
+            }
+            for (int i = 0; i < name.length; i++) {
+                if (bytes.get(namesAt + start + i) != name[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
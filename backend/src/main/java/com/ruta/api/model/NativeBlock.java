@@ -0,0 +1,77 @@
+package com.ruta.api.model;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Direct buffer shared by the off-heap graph versions that hold it. Its native memory is freed as soon as the
+ * last holder lets go, instead of whenever the collector finds the buffer object unreachable. Blocks start
+ * with no holders; one that is never retained is left to the collector like any direct buffer.
+ */
+final class NativeBlock {
+    // Explicit release of a direct buffer; null where the runtime does not offer it
+    private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+    private static final AtomicLong ALLOCATED = new AtomicLong();
+
+    final ByteBuffer buffer;
+    private final AtomicInteger holders = new AtomicInteger();
+
+    private NativeBlock(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    static NativeBlock allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Native block too large: " + bytes + " bytes");
+        }
+        NativeBlock block = new NativeBlock(ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder()));
+        ALLOCATED.addAndGet(bytes);
+        return block;
+    }
+
+    // Native bytes held by blocks that have not been freed yet
+    static long allocatedBytes() {
+        return ALLOCATED.get();
+    }
+
+    long bytes() {
+        return buffer.capacity();
+    }
+
+    void retain() {
+        holders.incrementAndGet();
+    }
+
+    // Frees the memory once no holder is left; the buffer must not be read after that
+    void release() {
+        if (holders.decrementAndGet() == 0) {
+            ALLOCATED.addAndGet(-buffer.capacity());
+            if (INVOKE_CLEANER != null) {
+                try {
+                    INVOKE_CLEANER.invokeExact(buffer);
+                } catch (Throwable e) {
+                    // The collector frees it with the buffer object instead
+                }
+            }
+        }
+    }
+
+    private static MethodHandle invokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field instance = unsafeClass.getDeclaredField("theUnsafe");
+            instance.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(instance.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.ruta.api.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides which results computed on a graph can be changed by a {@link GraphUpdate} of it.
+ * A route is affected by a connection that got slower or was removed only if it uses that connection.
+ * A connection that got faster or was added can only help a query if some path through it beats the cached
+ * time; landmark lower bounds of the old graph rule most of those out without searching. The first such
+ * connection on a new path is reached through old connections only, and the last one leaves through old
+ * connections only, so the old bounds hold for those parts of the path.
+ */
+public final class RouteImpact {
+    private static final long INFINITE = Long.MAX_VALUE / 4;
+
+    private final CompactGraph before;
+    private final CompactGraph after;
+    private final LandmarkIndex bounds;
+    private final Set<Long> raised = new HashSet<>();
+    private final List<GraphUpdate.EdgeChange> lowered = new ArrayList<>();
+
+    public RouteImpact(CompactGraph before, GraphUpdate update) {
+        this.before = before;
+        this.after = update.getGraph();
+        this.bounds = before.landmarks();
+        for (GraphUpdate.EdgeChange change : update.getChanges()) {
+            if (change.isDecrease()) {
+                lowered.add(change);
+            } else {
+                raised.add(pair(change.getSource(), change.getTarget()));
+            }
+        }
+    }
+
+    /**
+     * True when the result cached for {@code from -> to} on the old graph may differ on the new one.
+     * {@code cached} is null when the old graph had no route.
+     */
+    public boolean mayChange(String from, String to, RouteResult cached) {
+        int source = before.idOf(from);
+        int target = before.idOf(to);
+        if (source < 0 || target < 0) {
+            // Unknown locations had no route; that only changes once the delta adds both
+            return after.idOf(from) >= 0 && after.idOf(to) >= 0;
+        }
+        if (cached != null && usesRaised(cached.getRoute())) {
+            return true;
+        }
+        if (lowered.isEmpty()) {
+            return false;
+        }
+        if (bounds == null) {
+            return true;
+        }
+        long best = cached == null ? INFINITE : cached.getTotalTime();
+        if (lowered.size() == 1) {
+            GraphUpdate.EdgeChange change = lowered.get(0);
+            return bound(source, change.getSource()) + change.getNewTime() + bound(change.getTarget(), target) < best;
+        }
+        long viaFirst = INFINITE;
+        long viaLast = INFINITE;
+        for (GraphUpdate.EdgeChange change : lowered) {
+            viaFirst = Math.min(viaFirst, bound(source, change.getSource()) + change.getNewTime());
+            viaLast = Math.min(viaLast, change.getNewTime() + bound(change.getTarget(), target));
+        }
+        return viaFirst < best && viaLast < best;
+    }
+
+    private boolean usesRaised(List<String> route) {
+        if (raised.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i + 1 < route.size(); i++) {
+            if (raised.contains(pair(before.idOf(route.get(i)), before.idOf(route.get(i + 1))))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Lower bound on the old distance; locations the delta added have no landmark data, so 0 stands in
+    private long bound(int from, int to) {
+        if (from == to || from >= before.nodeCount() || to >= before.nodeCount()) {
+            return 0;
+        }
+        int bound = bounds.lowerBound(from, to);
+        return bound == LandmarkIndex.UNREACHABLE ? INFINITE : bound;
+    }
+
+    private static long pair(int source, int target) {
+        return ((long) source << 32) | (target & 0xFFFFFFFFL);
+    }
+}
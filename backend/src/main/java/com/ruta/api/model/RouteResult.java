@@ -0,0 +1,51 @@
+package com.ruta.api.model;
+
+import java.util.List;
+
+/**
+ * A shortest route together with the total time the search already computed.
+ */
+public final class RouteResult {
+    private final List<String> route;
+    private final int totalTime;
+    private final int settledNodes;
+    private final SearchStats stats;
+
+    public RouteResult(List<String> route, int totalTime) {
+        this(route, totalTime, 0);
+    }
+
+    public RouteResult(List<String> route, int totalTime, int settledNodes) {
+        this(route, totalTime, settledNodes, null);
+    }
+
+    private RouteResult(List<String> route, int totalTime, int settledNodes, SearchStats stats) {
+        this.route = route;
+        this.totalTime = totalTime;
+        this.settledNodes = settledNodes;
+        this.stats = stats;
+    }
+
+    // Same route carrying the statistics of the search that produced it
+    public RouteResult withStats(SearchStats stats) {
+        return new RouteResult(route, totalTime, settledNodes, stats);
+    }
+
+    public List<String> getRoute() {
+        return route;
+    }
+
+    public int getTotalTime() {
+        return totalTime;
+    }
+
+    // Nodes the search removed from its queue(s), for comparing query strategies
+    public int getSettledNodes() {
+        return settledNodes;
+    }
+
+    // Only set on results of a query that asked for them
+    public SearchStats getStats() {
+        return stats;
+    }
+}
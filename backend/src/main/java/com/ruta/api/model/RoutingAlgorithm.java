@@ -0,0 +1,24 @@
+package com.ruta.api.model;
+
+import java.util.Locale;
+
+public enum RoutingAlgorithm {
+    // Contraction Hierarchies once built, bidirectional Dijkstra until then
+    AUTO,
+    DIJKSTRA,
+    BIDIRECTIONAL,
+    ALT,
+    CH;
+
+    // Case-insensitive lookup for request parameters; null when the name is unknown
+    public static RoutingAlgorithm fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.ruta.api.model;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pair of search spaces, lent to one search at a time, plus the work of the last search on a thread.
+ * Platform threads keep a scratch of their own, so steady-state routing allocates nothing but the result.
+ * Virtual threads are started per request and would grow a fresh pair for every query; they borrow a
+ * pooled pair instead and keep only the work figures to themselves.
+ */
+final class SearchScratch {
+    private static final ThreadLocal<SearchScratch> PER_THREAD =
+            ThreadLocal.withInitial(() -> new SearchScratch(!Thread.currentThread().isVirtual(), false));
+    // Searches never block, so no more run on virtual threads at once than there are carriers
+    private static final AtomicReferenceArray<SearchScratch> POOL =
+            new AtomicReferenceArray<>(2 * Runtime.getRuntime().availableProcessors());
+
+    // null on a virtual thread's own scratch, which only records work
+    final SearchSpace forward;
+    final SearchSpace backward;
+    private final boolean pooled;
+
+    // Work of the last search on this thread, written once as it finishes
+    private int settledNodes;
+    private int relaxedEdges;
+    private int heapOperations;
+    private long elapsedNanos;
+
+    private SearchScratch(boolean withSpaces, boolean pooled) {
+        this.forward = withSpaces ? new SearchSpace(16) : null;
+        this.backward = withSpaces ? new SearchSpace(16) : null;
+        this.pooled = pooled;
+    }
+
+    // The calling thread's own scratch, where the work of its last search is read
+    static SearchScratch current() {
+        return PER_THREAD.get();
+    }
+
+    // Spaces for one search on the calling thread; hand them back with release()
+    static SearchScratch acquire() {
+        SearchScratch own = PER_THREAD.get();
+        if (own.forward != null) {
+            return own;
+        }
+        for (int i = 0; i < POOL.length(); i++) {
+            SearchScratch idle = POOL.getAndSet(i, null);
+            if (idle != null) {
+                return idle;
+            }
+        }
+        return new SearchScratch(true, true);
+    }
+
+    // Copies the work over to the thread's own scratch and returns pooled spaces; dropped when the pool is full
+    void release() {
+        if (!pooled) {
+            return;
+        }
+        SearchScratch own = PER_THREAD.get();
+        own.recordWork(settledNodes, relaxedEdges, heapOperations);
+        for (int i = 0; i < POOL.length(); i++) {
+            if (POOL.compareAndSet(i, null, this)) {
+                return;
+            }
+        }
+    }
+
+    void recordWork(int settled, int relaxed, int heapOps) {
+        settledNodes = settled;
+        relaxedEdges = relaxed;
+        heapOperations = heapOps;
+    }
+
+    // Set by CompactGraph.findRoute around the search it dispatches to
+    void recordElapsed(long nanos) {
+        elapsedNanos = nanos;
+    }
+
+    int settledNodes() {
+        return settledNodes;
+    }
+
+    int relaxedEdges() {
+        return relaxedEdges;
+    }
+
+    int heapOperations() {
+        return heapOperations;
+    }
+
+    long elapsedNanos() {
+        return elapsedNanos;
+    }
+}
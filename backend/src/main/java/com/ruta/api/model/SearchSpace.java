@@ -0,0 +1,87 @@
+package com.ruta.api.model;
+
+/**
+ * Reusable scratch for one search direction: tentative distances, predecessors and the heap.
+ * Entries are epoch-stamped, so starting a new search is O(1) instead of a fill over every node.
+ */
+final class SearchSpace {
+    static final int UNREACHED = Integer.MAX_VALUE;
+
+    private int[] distance;
+    private int[] predecessor;
+    private int[] stamp;
+    private int epoch;
+    final IndexedMinHeap heap;
+
+    SearchSpace(int capacity) {
+        distance = new int[capacity];
+        predecessor = new int[capacity];
+        stamp = new int[capacity];
+        heap = new IndexedMinHeap(capacity);
+    }
+
+    void reset(int nodeCount) {
+        if (nodeCount > stamp.length) {
+            int capacity = Math.max(nodeCount, stamp.length + (stamp.length >> 1));
+            distance = new int[capacity];
+            predecessor = new int[capacity];
+            stamp = new int[capacity];
+            heap.ensureCapacity(capacity);
+            epoch = 0;
+        }
+        if (++epoch == Integer.MAX_VALUE) {
+            java.util.Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        heap.clear();
+    }
+
+    boolean reached(int node) {
+        return stamp[node] == epoch;
+    }
+
+    int distance(int node) {
+        return stamp[node] == epoch ? distance[node] : UNREACHED;
+    }
+
+    int predecessor(int node) {
+        return predecessor[node];
+    }
+
+    boolean settled(int node) {
+        return stamp[node] == epoch && !heap.contains(node);
+    }
+
+    // True when relax(node, newDistance, ...) would record the new distance
+    boolean improves(int node, int newDistance) {
+        return stamp[node] != epoch || (newDistance < distance[node] && heap.contains(node));
+    }
+
+    void start(int node) {
+        stamp[node] = epoch;
+        distance[node] = 0;
+        predecessor[node] = -1;
+        heap.insert(node, 0);
+    }
+
+    /**
+     * Records {@code node} reached at {@code newDistance} via {@code via} if that improves on what we have.
+     * Returns false when the node is already settled or the new distance is not shorter.
+     */
+    boolean relax(int node, int newDistance, int via, int key) {
+        if (stamp[node] != epoch) {
+            stamp[node] = epoch;
+            distance[node] = newDistance;
+            predecessor[node] = via;
+            heap.insert(node, key);
+            return true;
+        }
+        if (newDistance < distance[node] && heap.contains(node)) {
+            distance[node] = newDistance;
+            predecessor[node] = via;
+            heap.decreaseKey(node, key);
+            return true;
+        }
+        return false;
+    }
+}
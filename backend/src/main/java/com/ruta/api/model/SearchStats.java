@@ -0,0 +1,41 @@
+package com.ruta.api.model;
+
+/**
+ * What one route search cost, taken with {@link SearchWork#snapshot()} for debugging a slow query.
+ */
+public final class SearchStats {
+    private final int settledNodes;
+    private final int relaxedEdges;
+    private final int heapOperations;
+    private final long elapsedNanos;
+
+    public SearchStats(int settledNodes, int relaxedEdges, int heapOperations, long elapsedNanos) {
+        this.settledNodes = settledNodes;
+        this.relaxedEdges = relaxedEdges;
+        this.heapOperations = heapOperations;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getSettledNodes() {
+        return settledNodes;
+    }
+
+    public int getRelaxedEdges() {
+        return relaxedEdges;
+    }
+
+    public int getHeapOperations() {
+        return heapOperations;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    // Compact single-line form, e.g. for a response header
+    @Override
+    public String toString() {
+        return "settled=" + settledNodes + ";relaxed=" + relaxedEdges + ";heapOps=" + heapOperations
+                + ";elapsedNanos=" + elapsedNanos;
+    }
+}
@@ -0,0 +1,38 @@
+package com.ruta.api.model;
+
+/**
+ * Work done by the most recent route search on the calling thread, read right after the query without
+ * allocating. All counts are 0 when the last query had an unknown location and no search ran.
+ */
+public final class SearchWork {
+
+    private SearchWork() {
+    }
+
+    // Nodes the search removed from its queue(s)
+    public static int settledNodes() {
+        return SearchScratch.current().settledNodes();
+    }
+
+    // Edges scanned from settled nodes, whether or not they improved a distance
+    public static int relaxedEdges() {
+        return SearchScratch.current().relaxedEdges();
+    }
+
+    // Inserts, decrease-keys and removals on the search queue(s)
+    public static int heapOperations() {
+        return SearchScratch.current().heapOperations();
+    }
+
+    // Wall time of the last CompactGraph.findRoute, from resolving the locations to building the result
+    public static long elapsedNanos() {
+        return SearchScratch.current().elapsedNanos();
+    }
+
+    // The figures above as a value that outlives the next search
+    public static SearchStats snapshot() {
+        SearchScratch scratch = SearchScratch.current();
+        return new SearchStats(scratch.settledNodes(), scratch.relaxedEdges(), scratch.heapOperations(),
+                scratch.elapsedNanos());
+    }
+}
@@ -1,55 +1,872 @@
 package com.ruta.api.service;
 
+import com.ruta.api.cache.CacheStats;
+import com.ruta.api.cache.RouteCache;
+import com.ruta.api.cache.RouteKey;
+import com.ruta.api.cache.SingleFlight;
+import com.ruta.api.model.CompactGraph;
 import com.ruta.api.model.Connection;
+import com.ruta.api.model.ContractionHierarchy;
+import com.ruta.api.model.DijkstraSearch;
+import com.ruta.api.model.DistanceMatrix;
 import com.ruta.api.model.Graph;
+import com.ruta.api.model.GraphDelta;
+import com.ruta.api.model.GraphSnapshot;
+import com.ruta.api.model.GraphUpdate;
+import com.ruta.api.model.RouteImpact;
+import com.ruta.api.model.RouteResult;
+import com.ruta.api.model.RoutingAlgorithm;
+import com.ruta.api.model.SearchStats;
+import com.ruta.api.model.SearchWork;
+import com.ruta.api.model.LandmarkIndex;
+import com.ruta.api.model.LandmarkSelection;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 @Service
 public class CompanyGraphService {
-    // Map from companyId to its graph
-    private final Map<String, Graph> graphsByCompany = new ConcurrentHashMap<>();
+    private static final Logger logger = Logger.getLogger(CompanyGraphService.class.getName());
+    private static final long LANDMARK_SEED = 42L;
+    // Cached stand-in for "no route", so repeated misses are not recomputed either
+    private static final RouteResult NO_ROUTE = new RouteResult(List.of(), 0);
 
+    // Published snapshot per company. Snapshots are never mutated: uploads build a new graph off to the
+    // side and replace the entry whole, so queries read without locks and always see one consistent graph.
+    private final Map<String, CompactGraph> graphsByCompany = new ConcurrentHashMap<>();
+
+    // Preprocessing runs here, off the request threads; the work itself fans out over the common pool
+    private final ExecutorService preprocessingExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("graph-preprocessing").daemon().factory());
+
+    // Spills idle graphs when the resident ones outgrow the memory budget
+    private final ExecutorService spillExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("graph-spill").daemon().factory());
+
+    // CPU-bound fan-out of batch queries. It stays on platform threads with spring.threads.virtual.enabled:
+    // virtual threads are not preempted, so long index builds or batches would hold the carriers that every
+    // request runs on. A virtual request thread waiting for its fan-out unmounts instead of blocking one.
+    private Executor fanOutExecutor = ForkJoinPool.commonPool();
+
+    @Value("${routing.landmarks.count:8}")
+    private int landmarkCount = 8;
+
+    @Value("${routing.landmarks.selection:farthest}")
+    private String landmarkSelection = "farthest";
+
+    @Value("${routing.hierarchy.enabled:true}")
+    private boolean hierarchyEnabled = true;
+
+    @Value("${routing.cache.max-bytes:33554432}")
+    private long cacheMaxBytes = 32L * 1024 * 1024;
+
+    @Value("${routing.coalescing.enabled:true}")
+    private boolean coalescingEnabled = true;
+
+    // Directory for binary graph snapshots and the write-ahead log; empty keeps graphs in memory only
+    @Value("${graph.storage.dir:}")
+    private String storageDir = "";
+
+    // How long the thread leading a group commit waits for more changes before it syncs the log
+    @Value("${graph.wal.commit-delay-micros:200}")
+    private long walCommitDelayMicros = 200;
+
+    // Log size at which the log is folded into snapshots
+    @Value("${graph.wal.compact-bytes:67108864}")
+    private long walCompactBytes = 64L * 1024 * 1024;
+
+    // Estimated bytes the resident graphs may take before idle ones are spilled to disk; 0 disables spilling
+    @Value("${graph.memory.max-bytes:0}")
+    private long memoryBudgetBytes = 0;
+
+    // Publishes graphs with their adjacency and dictionary in native memory instead of on the heap
+    @Value("${graph.memory.off-heap:false}")
+    private boolean offHeapGraphs = false;
+
+    // Where spilled graphs go; empty uses "spill" under the storage directory, or the temp directory
+    @Value("${graph.memory.spill-dir:}")
+    private String spillDir = "";
+
+    // Replaced by the application's registry-backed bean when running under Spring
+    @Autowired(required = false)
+    private GraphMetrics metrics = GraphMetrics.detached();
+
+    private RouteCache routeCache = new RouteCache(cacheMaxBytes);
+    private GraphResidency residency = new GraphResidency(graphsByCompany, this::writeLock, 0, null, false);
+    private final AtomicBoolean spillScheduled = new AtomicBoolean();
+    private GraphSnapshotStore snapshotStore;
+    private WriteAheadLog writeAheadLog;
+
+    // LSN of the last logged change in each company's current graph, updated together with the graph
+    private final Map<String, Long> logPositions = new ConcurrentHashMap<>();
+    // Every change to a company's map entry, spills included, happens under its stripe, so changes reach the log
+    // in the order they were applied. Logging and spill-file I/O wait on the disk, which must not happen inside
+    // the map's compute: that holds a monitor and would pin a virtual thread to its carrier.
+    private final ReentrantLock[] writeLocks = Stream.generate(ReentrantLock::new).limit(64)
+            .toArray(ReentrantLock[]::new);
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    // Companies with logged changes not yet in a snapshot; only touched on the preprocessing thread
+    private final Set<String> uncompacted = new HashSet<>();
+
+    // Identical default queries that arrive while one is being computed share its result
+    private final SingleFlight<RouteKey, RouteResult> inFlightRoutes = new SingleFlight<>();
+
+    @PostConstruct
+    public void init() {
+        routeCache = cacheMaxBytes > 0 ? new RouteCache(cacheMaxBytes) : null;
+        Path spillDirectory = spillDirectory();
+        residency = new GraphResidency(graphsByCompany, this::writeLock, memoryBudgetBytes, spillDirectory,
+                offHeapGraphs);
+        try {
+            residency.clearSpillDirectory();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot use graph spill directory " + spillDirectory, e);
+        }
+        if (storageDir != null && !storageDir.isBlank()) {
+            restore(Path.of(storageDir));
+        }
+    }
+
+    /**
+     * Loads the latest snapshot of every company, replays the log records written after it and opens the
+     * log for new changes. Indexes missing from a snapshot, or lost to replayed changes, are rebuilt as usual.
+     */
+    private void restore(Path directory) {
+        long start = System.nanoTime();
+        try {
+            snapshotStore = new GraphSnapshotStore(directory);
+            long lastKnownLsn = 0;
+            for (Map.Entry<String, GraphSnapshot> entry : snapshotStore.loadAll(offHeapGraphs).entrySet()) {
+                graphsByCompany.put(entry.getKey(), entry.getValue().graph());
+                metrics.trackCompany(entry.getKey(), graphsByCompany);
+                logPositions.put(entry.getKey(), entry.getValue().logPosition());
+                lastKnownLsn = Math.max(lastKnownLsn, entry.getValue().logPosition());
+            }
+            writeAheadLog = WriteAheadLog.open(directory.resolve("wal"), lastKnownLsn,
+                    walCommitDelayMicros * 1000, uncompacted, this::replay);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot use graph storage directory " + directory, e);
+        }
+        graphsByCompany.forEach(this::schedulePreprocessing);
+        logger.info("Restored " + graphsByCompany.size() + " company graphs in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        enforceMemoryBudget();
+    }
+
+    private Path spillDirectory() {
+        if (spillDir != null && !spillDir.isBlank()) {
+            return Path.of(spillDir);
+        }
+        if (storageDir != null && !storageDir.isBlank()) {
+            return Path.of(storageDir, "spill");
+        }
+        return Path.of(System.getProperty("java.io.tmpdir"), "graph-spill-" + ProcessHandle.current().pid());
+    }
+
+    private void replay(long lsn, String companyId, ByteBuffer payload) {
+        if (lsn <= logPositions.getOrDefault(companyId, 0L)) {
+            return; // already part of the company's snapshot
+        }
+        CompactGraph current = graphsByCompany.get(companyId);
+        CompactGraph graph = GraphMutation.decode(payload).applyTo(current);
+        if (graph == null) {
+            graphsByCompany.remove(companyId);
+        } else {
+            graphsByCompany.put(companyId, stored(graph));
+        }
+        if (current != null && current != graph) {
+            current.retire();
+        }
+        logPositions.put(companyId, lsn);
+    }
+
+    // The graph in the form it is published in: off-heap when configured so
+    private CompactGraph stored(CompactGraph graph) {
+        return offHeapGraphs ? graph.toOffHeap() : graph;
+    }
+
+    /**
+     * Current snapshot of the company's graph, or null when nothing has been published. An off-heap graph is
+     * released once replaced, so reads that may overlap updates belong between acquire() and release().
+     */
+    public CompactGraph getGraph(String companyId) {
+        return residentGraph(companyId);
+    }
+
+    // Mutable copy of the current snapshot; edits to it are only seen by queries once published
     public Graph getOrCreateGraph(String companyId) {
-        return graphsByCompany.computeIfAbsent(companyId, k -> new Graph());
+        CompactGraph snapshot = acquireGraph(companyId);
+        if (snapshot == null) {
+            return new Graph();
+        }
+        try {
+            return Graph.copyOf(snapshot);
+        } finally {
+            snapshot.release();
+        }
     }
 
-    public void clearGraph(String companyId) {
-        Graph graph = graphsByCompany.get(companyId);
+    // The current graph with a read registered on it, to be released by the caller; null when there is none
+    private CompactGraph acquireGraph(String companyId) {
+        while (true) {
+            CompactGraph graph = residentGraph(companyId);
+            if (graph == null || graph.acquire()) {
+                return graph;
+            }
+            // Replaced and released since the lookup; the map already holds its successor
+        }
+    }
+
+    /**
+     * The company's current graph, read back first when it was spilled to disk. Counts as a query for the
+     * eviction order. A reloaded graph gets its indexes rebuilt in the background.
+     */
+    private CompactGraph residentGraph(String companyId) {
+        CompactGraph graph = graphsByCompany.get(companyId);
+        boolean reloaded = false;
+        if (graph == null && residency.isSpilled(companyId)) {
+            // Concurrent queries for the graph wait on the lock, not inside a compute, while it is read back
+            ReentrantLock writeLock = writeLock(companyId);
+            writeLock.lock();
+            try {
+                graph = graphsByCompany.get(companyId);
+                if (graph == null) {
+                    graph = residency.reload(companyId);
+                    if (graph != null) {
+                        graphsByCompany.put(companyId, graph);
+                        reloaded = true;
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
         if (graph != null) {
-            graph.clear();
+            residency.touch(companyId);
+        }
+        if (reloaded) {
+            schedulePreprocessing(companyId, graph);
+            enforceMemoryBudget();
         }
+        return graph;
+    }
+
+    // Under the company's write lock: the mapped graph, or the spilled one brought back
+    private CompactGraph orSpilled(String companyId) {
+        CompactGraph current = graphsByCompany.get(companyId);
+        return current != null ? current : residency.reload(companyId);
     }
 
+    public void clearGraph(String companyId) {
+        byte[] record = encode(GraphMutation.clear());
+        CompactGraph previous;
+        boolean removed;
+        long lsn = 0;
+        ReentrantLock writeLock = writeLock(companyId);
+        writeLock.lock();
+        try {
+            boolean spilled = residency.discard(companyId);
+            previous = graphsByCompany.remove(companyId);
+            removed = previous != null || spilled;
+            if (removed) {
+                lsn = log(companyId, record);
+            }
+            residency.forget(companyId);
+            // Under the lock, so a concurrent upload cannot register the gauges again in between
+            metrics.untrackCompany(companyId);
+        } finally {
+            writeLock.unlock();
+        }
+        retire(previous);
+        if (removed) {
+            purgeCache(companyId, -1);
+            awaitLogged(lsn);
+        }
+    }
+
+    /**
+     * Publishes a copy of the current snapshot with one more connection. Every call copies the whole
+     * graph, so bulk loads should build a {@link Graph} and hand it to {@link #publishGraph} once.
+     */
     public void addConnection(String companyId, Connection connection) {
-        getOrCreateGraph(companyId).addConnection(connection);
+        byte[] record = encode(GraphMutation.add(connection));
+        CompactGraph previous;
+        long lsn;
+        ReentrantLock writeLock = writeLock(companyId);
+        writeLock.lock();
+        try {
+            previous = orSpilled(companyId);
+            Graph graph = previous == null ? new Graph() : Graph.copyOf(previous);
+            graph.addConnection(connection);
+            graphsByCompany.put(companyId, stored(graph.compact()));
+            lsn = log(companyId, record);
+            metrics.trackCompany(companyId, graphsByCompany);
+        } finally {
+            writeLock.unlock();
+        }
+        retire(previous);
+        residency.touch(companyId);
+        enforceMemoryBudget();
+        awaitLogged(lsn);
+    }
+
+    /**
+     * Freezes {@code graph} and swaps it in as the company's snapshot in one step. Queries already
+     * running finish on the previous snapshot; the staging graph may be discarded afterwards.
+     * With storage configured, returns once the upload is in the write-ahead log.
+     */
+    public void publishGraph(String companyId, Graph graph) {
+        long start = System.nanoTime();
+        GraphBuildEvent event = GraphBuildEvent.start();
+        CompactGraph compact = stored(graph.compact());
+        metrics.recordBuild(GraphMetrics.BuildStage.COMPACT, System.nanoTime() - start);
+        event.finish(companyId, GraphMetrics.BuildStage.COMPACT, compact);
+        byte[] record = encode(GraphMutation.upload(compact));
+        CompactGraph previous;
+        long lsn;
+        ReentrantLock writeLock = writeLock(companyId);
+        writeLock.lock();
+        try {
+            residency.discard(companyId);
+            previous = graphsByCompany.put(companyId, compact);
+            lsn = log(companyId, record);
+            metrics.trackCompany(companyId, graphsByCompany);
+        } finally {
+            writeLock.unlock();
+        }
+        retire(previous);
+        // A fresh upload is about to be queried, so it should not be the first graph to go
+        residency.touch(companyId);
+        preprocess(companyId, compact);
+        enforceMemoryBudget();
+        awaitLogged(lsn);
+    }
+
+    // Schedules landmark and hierarchy preprocessing for the company's current snapshot
+    public void commitUpload(String companyId) {
+        CompactGraph compact = graphsByCompany.get(companyId);
+        if (compact != null) {
+            preprocess(companyId, compact);
+        }
+    }
+
+    /**
+     * Applies a batch of connection edits as a new graph version, touching only the edited nodes. Cached
+     * routes the edits cannot have changed move over to the new version. Landmarks stay valid and are kept
+     * when no connection got faster or was added; the hierarchy is always rebuilt in the background.
+     */
+    public GraphUpdate applyDelta(String companyId, GraphDelta delta) {
+        byte[] record = encode(GraphMutation.delta(delta));
+        CompactGraph before;
+        GraphUpdate update;
+        CompactGraph after;
+        boolean keepLandmarks;
+        long lsn;
+        ReentrantLock writeLock = writeLock(companyId);
+        writeLock.lock();
+        try {
+            CompactGraph existing = orSpilled(companyId);
+            before = existing != null ? existing : stored(new Graph().compact());
+            update = before.apply(delta);
+            after = update.getGraph();
+            // Attached before the next writer can take this version as its base and look for landmarks
+            LandmarkIndex landmarks = before.landmarks();
+            keepLandmarks = landmarks != null && !update.isLocationsAdded() && update.isIncreaseOnly();
+            if (keepLandmarks) {
+                after.attachLandmarks(landmarks.reboundTo(after));
+            }
+            graphsByCompany.put(companyId, after);
+            lsn = log(companyId, record);
+            metrics.trackCompany(companyId, graphsByCompany);
+            // Held until this call is done with it; a later delta or a spill may retire it once the lock is released
+            after.acquire();
+        } finally {
+            writeLock.unlock();
+        }
+        try {
+            migrateCache(companyId, before, update);
+            before.retire();
+            schedulePreprocessing(companyId, after);
+        } finally {
+            after.release();
+        }
+        residency.touch(companyId);
+        enforceMemoryBudget();
+        awaitLogged(lsn);
+        logger.info("Applied " + delta.size() + " connection edits for companyId: " + companyId + " ("
+                + update.getChanges().size() + " changed, landmarks " + (keepLandmarks ? "kept" : "rebuilt") + ")");
+        return update;
+    }
+
+    // Carries entries of the previous version that the update cannot affect over to the new version
+    private void migrateCache(String companyId, CompactGraph before, GraphUpdate update) {
+        RouteCache cache = routeCache;
+        if (cache == null) {
+            return;
+        }
+        long version = update.getGraph().version();
+        RouteImpact impact = new RouteImpact(before, update);
+        cache.rekey(key -> key.getCompanyId().equals(companyId) && key.getGraphVersion() != version,
+                (key, cached) -> key.getGraphVersion() == before.version()
+                        && !impact.mayChange(key.getFrom(), key.getTo(), cached == NO_ROUTE ? null : cached)
+                        ? new RouteKey(companyId, version, key.getFrom(), key.getTo())
+                        : null);
+    }
+
+    // Lets go of a version that is no longer published; an off-heap one is freed after its last reader
+    private static void retire(CompactGraph graph) {
+        if (graph != null) {
+            graph.retire();
+        }
+    }
+
+    private void preprocess(String companyId, CompactGraph compact) {
+        // Entries of older versions can no longer be hit; free their space right away
+        purgeCache(companyId, compact.version());
+        schedulePreprocessing(companyId, compact);
+    }
+
+    // Builds the indexes the graph does not carry yet
+    private void schedulePreprocessing(String companyId, CompactGraph compact) {
+        if (compact.nodeCount() == 0) {
+            return;
+        }
+        if (landmarkCount > 0 && compact.landmarks() == null) {
+            preprocessingExecutor.execute(() -> buildLandmarks(companyId, compact));
+        }
+        if (hierarchyEnabled && compact.hierarchy() == null) {
+            preprocessingExecutor.execute(() -> buildHierarchy(companyId, compact));
+        }
+    }
+
+    private byte[] encode(GraphMutation mutation) {
+        return writeAheadLog == null ? null : mutation.encode();
+    }
+
+    // The stripe guarding a company's changes; companies that hash alike share one
+    private ReentrantLock writeLock(String companyId) {
+        return writeLocks[(companyId.hashCode() & 0x7fffffff) % writeLocks.length];
+    }
+
+    // Under the company's write lock, right after the change it records was applied
+    private long log(String companyId, byte[] record) {
+        WriteAheadLog log = writeAheadLog;
+        if (log == null) {
+            return 0;
+        }
+        long lsn = log.append(companyId, record);
+        logPositions.put(companyId, lsn);
+        return lsn;
+    }
+
+    // Waits for the group commit that makes the change durable and schedules compaction once the log is large
+    private void awaitLogged(long lsn) {
+        WriteAheadLog log = writeAheadLog;
+        if (log == null || lsn == 0) {
+            return;
+        }
+        try {
+            log.awaitDurable(lsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not log graph change", e);
+        }
+        if (log.size() >= walCompactBytes && compactionScheduled.compareAndSet(false, true)) {
+            preprocessingExecutor.execute(this::compactLog);
+        }
+    }
+
+    /**
+     * Folds the log into snapshots: closes the current segment, writes a snapshot of every company with
+     * records in the closed segments and then deletes them. Runs on the preprocessing thread, so it comes
+     * after the index builds queued before it and the snapshots carry those indexes.
+     */
+    private void compactLog() {
+        compactionScheduled.set(false);
+        long start = System.nanoTime();
+        try {
+            uncompacted.addAll(writeAheadLog.rotate());
+            int written = 0;
+            for (Iterator<String> companies = uncompacted.iterator(); companies.hasNext(); ) {
+                String companyId = companies.next();
+                CompactGraph graph;
+                long position;
+                // Read graph and position together, so the snapshot claims exactly the changes it holds.
+                // A spilled graph is read from its spill file and stays spilled.
+                ReentrantLock writeLock = writeLock(companyId);
+                writeLock.lock();
+                try {
+                    CompactGraph current = graphsByCompany.get(companyId);
+                    // Still published while the lock is held, so the acquire cannot fail
+                    graph = current != null && current.acquire() ? current : residency.peek(companyId);
+                    position = logPositions.getOrDefault(companyId, 0L);
+                } finally {
+                    writeLock.unlock();
+                }
+                if (graph == null) {
+                    snapshotStore.delete(companyId);
+                } else {
+                    try {
+                        snapshotStore.save(companyId, graph, position);
+                    } finally {
+                        graph.release();
+                    }
+                    written++;
+                }
+                companies.remove();
+            }
+            writeAheadLog.deleteClosedSegments();
+            logger.info("Compacted write-ahead log into " + written + " snapshots in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (IOException | UncheckedIOException e) {
+            // The closed segments stay until a later compaction covers every company in them
+            logger.warning("Write-ahead log compaction failed: " + e.getMessage());
+        }
+    }
+
+    // Spills idle graphs on the spill thread once the resident ones exceed the budget; concurrent calls coalesce
+    private void enforceMemoryBudget() {
+        if (memoryBudgetBytes > 0 && spillScheduled.compareAndSet(false, true)) {
+            spillExecutor.execute(() -> {
+                spillScheduled.set(false);
+                residency.enforceBudget(companyId -> purgeCache(companyId, -1));
+            });
+        }
+    }
+
+    public GraphMemoryStats getMemoryStats() {
+        return residency.stats();
+    }
+
+    private void purgeCache(String companyId, long currentVersion) {
+        RouteCache cache = routeCache;
+        if (cache != null) {
+            cache.removeIf(key -> key.getCompanyId().equals(companyId) && key.getGraphVersion() != currentVersion);
+        }
+    }
+
+    private void buildLandmarks(String companyId, CompactGraph compact) {
+        if (graphsByCompany.get(companyId) != compact || !compact.acquire()) {
+            return; // superseded before its turn, e.g. by a later delta
+        }
+        long start = System.nanoTime();
+        GraphBuildEvent event = GraphBuildEvent.start();
+        LandmarkSelection selection = LandmarkSelection.fromName(landmarkSelection);
+        LandmarkIndex index;
+        try {
+            index = LandmarkIndex.build(compact, landmarkCount, selection, LANDMARK_SEED);
+        } finally {
+            compact.release();
+        }
+        compact.attachLandmarks(index);
+        metrics.recordBuild(GraphMetrics.BuildStage.LANDMARKS, System.nanoTime() - start);
+        event.finish(companyId, GraphMetrics.BuildStage.LANDMARKS, compact);
+        enforceMemoryBudget();
+        logger.info("Selected " + index.landmarkCount() + " " + selection + " landmarks for companyId: " + companyId
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    // Queries keep using Dijkstra until the finished hierarchy is published on the graph
+    private void buildHierarchy(String companyId, CompactGraph compact) {
+        if (graphsByCompany.get(companyId) != compact || !compact.acquire()) {
+            return;
+        }
+        long start = System.nanoTime();
+        GraphBuildEvent event = GraphBuildEvent.start();
+        ContractionHierarchy hierarchy;
+        try {
+            hierarchy = ContractionHierarchy.build(compact);
+        } finally {
+            compact.release();
+        }
+        compact.attachHierarchy(hierarchy);
+        metrics.recordBuild(GraphMetrics.BuildStage.HIERARCHY, System.nanoTime() - start);
+        event.finish(companyId, GraphMetrics.BuildStage.HIERARCHY, compact);
+        enforceMemoryBudget();
+        logger.info("Built contraction hierarchy with " + hierarchy.shortcutCount() + " shortcuts for companyId: "
+                + companyId + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        preprocessingExecutor.shutdownNow();
+        spillExecutor.shutdownNow();
+        try {
+            // A spill in progress finishes its file, so nothing writes to the spill directory afterwards
+            spillExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            WriteAheadLog log = writeAheadLog;
+            if (log != null) {
+                preprocessingExecutor.awaitTermination(10, TimeUnit.SECONDS);
+                log.close();
+            }
+        } catch (IOException e) {
+            logger.warning("Could not close write-ahead log: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     public List<String> findShortestRoute(String companyId, String from, String to) {
-        Graph graph = graphsByCompany.get(companyId);
-        if (graph == null) {
-            return null;
+        RouteResult result = findRoute(companyId, from, to);
+        return result == null ? null : result.getRoute();
+    }
+
+    public RouteResult findRoute(String companyId, String from, String to) {
+        return findRoute(companyId, from, to, RoutingAlgorithm.AUTO);
+    }
+
+    public RouteResult findRoute(String companyId, String from, String to, RoutingAlgorithm algorithm) {
+        return query(companyId, from, to, algorithm, false);
+    }
+
+    /**
+     * Same as {@link #findRoute(String, String, String, RoutingAlgorithm)}, but always runs the search, past
+     * the route cache and coalescing, and returns its {@link SearchStats} with the result. Never null: when
+     * there is no route the result has an empty route, so the cost of the failed search is still reported.
+     */
+    public RouteResult findRouteWithStats(String companyId, String from, String to, RoutingAlgorithm algorithm) {
+        return query(companyId, from, to, algorithm, true);
+    }
+
+    private RouteResult query(String companyId, String from, String to, RoutingAlgorithm algorithm,
+                              boolean withStats) {
+        long start = System.nanoTime();
+        RouteQueryEvent event = RouteQueryEvent.startIfEnabled();
+        RouteResult result = null;
+        CompactGraph compact = acquireGraph(companyId);
+        if (compact != null) {
+            try {
+                result = withStats
+                        ? searchWithStats(compact, from, to, algorithm, event)
+                        : findRoute(companyId, compact, from, to, algorithm, event);
+            } finally {
+                compact.release();
+            }
         }
-        return graph.findShortestRoute(from, to);
+        boolean found = result != null && !result.getRoute().isEmpty();
+        metrics.recordQuery(algorithm, System.nanoTime() - start, found);
+        if (event != null) {
+            event.finish(companyId, from, to, algorithm, found);
+        }
+        if (withStats && result == null) {
+            result = NO_ROUTE.withStats(new SearchStats(0, 0, 0, 0));
+        }
+        return result;
+    }
+
+    private RouteResult searchWithStats(CompactGraph compact, String from, String to, RoutingAlgorithm algorithm,
+                                        RouteQueryEvent event) {
+        RouteResult result = compact.findRoute(from, to, algorithm);
+        SearchStats stats = SearchWork.snapshot();
+        recordSearch(event);
+        return (result == null ? NO_ROUTE : result).withStats(stats);
+    }
+
+    // Reports the search that just ran on this thread to the metrics and, when recording, the query's event
+    private void recordSearch(RouteQueryEvent event) {
+        int settled = SearchWork.settledNodes();
+        int relaxed = SearchWork.relaxedEdges();
+        metrics.recordSearch(settled, relaxed);
+        if (event != null) {
+            event.searched(settled, relaxed, SearchWork.heapOperations());
+        }
+    }
+
+    private RouteResult findRoute(String companyId, CompactGraph compact, String from, String to,
+                                  RoutingAlgorithm algorithm, RouteQueryEvent event) {
+        RouteCache cache = routeCache;
+        // Only default queries are cached or coalesced, so an explicit algorithm always exercises its engine
+        if (algorithm != RoutingAlgorithm.AUTO || (cache == null && !coalescingEnabled)) {
+            RouteResult result = compact.findRoute(from, to, algorithm);
+            recordSearch(event);
+            return result;
+        }
+        RouteKey key = new RouteKey(companyId, compact.version(), from, to);
+        if (cache != null) {
+            RouteResult cached = cache.get(key);
+            if (cached != null) {
+                return cached == NO_ROUTE ? null : cached;
+            }
+        }
+        RouteResult result = coalescingEnabled
+                ? inFlightRoutes.execute(key, () -> computeRoute(compact, key, cache, event))
+                : computeRoute(compact, key, cache, event);
+        return result == NO_ROUTE ? null : result;
+    }
+
+    private RouteResult computeRoute(CompactGraph compact, RouteKey key, RouteCache cache, RouteQueryEvent event) {
+        RouteResult result = compact.findRoute(key.getFrom(), key.getTo(), RoutingAlgorithm.AUTO);
+        recordSearch(event);
+        if (result == null) {
+            result = NO_ROUTE;
+        }
+        if (cache != null) {
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    public long getCoalescedRouteCount() {
+        return inFlightRoutes.coalescedCount();
+    }
+
+    /**
+     * Routes every (origins[i], destinations[i]) pair against one graph snapshot. Pairs are grouped by
+     * origin so each shortest-path tree is grown once, and the groups run in parallel. A group that
+     * fails only marks its own pairs as failed.
+     */
+    public List<RouteOutcome> findRoutes(String companyId, List<String> origins, List<String> destinations) {
+        RouteOutcome[] outcomes = new RouteOutcome[origins.size()];
+        CompactGraph compact = acquireGraph(companyId);
+        if (compact == null) {
+            for (int i = 0; i < outcomes.length; i++) {
+                outcomes[i] = RouteOutcome.failed(noRouteMessage(origins.get(i), destinations.get(i)));
+            }
+            return List.of(outcomes);
+        }
+        try {
+            routeGroups(compact, origins, destinations, outcomes);
+        } finally {
+            compact.release();
+        }
+        return List.of(outcomes);
+    }
+
+    private void routeGroups(CompactGraph compact, List<String> origins, List<String> destinations,
+                             RouteOutcome[] outcomes) {
+        Map<String, List<Integer>> pairsByOrigin = new LinkedHashMap<>();
+        for (int i = 0; i < outcomes.length; i++) {
+            pairsByOrigin.computeIfAbsent(origins.get(i), k -> new ArrayList<>()).add(i);
+        }
+        List<CompletableFuture<Void>> groups = new ArrayList<>(pairsByOrigin.size());
+        for (Map.Entry<String, List<Integer>> group : pairsByOrigin.entrySet()) {
+            groups.add(CompletableFuture.runAsync(
+                    () -> routeGroup(compact, group.getKey(), group.getValue(), destinations, outcomes), fanOutExecutor)
+                    .exceptionally(e -> {
+                        logger.warning("Batch group from " + group.getKey() + " failed: " + e.getMessage());
+                        for (int i : group.getValue()) {
+                            outcomes[i] = RouteOutcome.failed("Error finding route: " + e.getMessage());
+                        }
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(groups.toArray(new CompletableFuture[0])).join();
+    }
+
+    private void routeGroup(CompactGraph compact, String origin, List<Integer> pairs,
+                            List<String> destinations, RouteOutcome[] outcomes) {
+        int source = compact.idOf(origin);
+        int[] targets = new int[pairs.size()];
+        for (int j = 0; j < targets.length; j++) {
+            targets[j] = compact.idOf(destinations.get(pairs.get(j)));
+        }
+        RouteResult[] routes = new RouteResult[targets.length];
+        if (source >= 0) {
+            int[] known = Arrays.stream(targets).filter(t -> t >= 0).toArray();
+            RouteResult[] found = DijkstraSearch.shortestRoutesFrom(compact, source, known);
+            for (int j = 0, k = 0; j < targets.length; j++) {
+                if (targets[j] >= 0) {
+                    routes[j] = found[k++];
+                }
+            }
+        }
+        for (int j = 0; j < targets.length; j++) {
+            int pair = pairs.get(j);
+            outcomes[pair] = routes[j] != null
+                    ? RouteOutcome.found(routes[j])
+                    : RouteOutcome.failed(noRouteMessage(origin, destinations.get(pair)));
+        }
+    }
+
+    /**
+     * Travel-time matrix between every origin and destination on one graph snapshot.
+     * Unknown locations and pairs with no path hold {@link DistanceMatrix#UNREACHABLE}.
+     */
+    public DistanceMatrix computeMatrix(String companyId, List<String> origins, List<String> destinations) {
+        CompactGraph compact = acquireGraph(companyId);
+        if (compact == null) {
+            compact = new Graph().compact();
+        }
+        try {
+            return computeMatrix(compact, origins, destinations);
+        } finally {
+            compact.release();
+        }
+    }
+
+    private static DistanceMatrix computeMatrix(CompactGraph compact, List<String> origins, List<String> destinations) {
+        int[] sources = new int[origins.size()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = compact.idOf(origins.get(i));
+        }
+        int[] targets = new int[destinations.size()];
+        for (int j = 0; j < targets.length; j++) {
+            targets[j] = compact.idOf(destinations.get(j));
+        }
+        return DistanceMatrix.compute(compact, sources, targets);
+    }
+
+    private static String noRouteMessage(String from, String to) {
+        return "No route found between " + from + " and " + to;
+    }
+
+    public CacheStats getRouteCacheStats() {
+        RouteCache cache = routeCache;
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
     }
 
     public int calculateRouteTime(String companyId, List<String> route) {
-        Graph graph = graphsByCompany.get(companyId);
-        if (graph == null || route == null || route.size() < 2) {
+        if (route == null || route.size() < 2) {
             return 0;
         }
-        
+        CompactGraph compact = acquireGraph(companyId);
+        if (compact == null) {
+            return 0;
+        }
+        try {
+            return calculateRouteTime(compact, route);
+        } finally {
+            compact.release();
+        }
+    }
+
+    private static int calculateRouteTime(CompactGraph compact, List<String> route) {
         int totalTime = 0;
-        for (int i = 0; i < route.size() - 1; i++) {
-            String current = route.get(i);
-            String next = route.get(i + 1);
-            Connection connection = graph.getConnection(current, next);
-            if (connection != null) {
-                totalTime += connection.getTime();
+        int current = compact.idOf(route.get(0));
+        for (int i = 1; i < route.size(); i++) {
+            int next = compact.idOf(route.get(i));
+            if (current >= 0 && next >= 0) {
+                int time = compact.weightBetween(current, next);
+                if (time >= 0) {
+                    totalTime += time;
+                }
             }
+            current = next;
         }
         return totalTime;
     }
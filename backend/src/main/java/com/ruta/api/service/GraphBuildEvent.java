@@ -0,0 +1,51 @@
+package com.ruta.api.service;
+
+import com.ruta.api.model.CompactGraph;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.Locale;
+
+/**
+ * Flight recorder event for freezing a graph or building one of its indexes.
+ */
+@Name("com.ruta.GraphBuild")
+@Label("Graph Build")
+@Category({"Ruta", "Graph"})
+@Description("Freezing an uploaded graph, or building its landmarks or contraction hierarchy")
+@StackTrace(false)
+final class GraphBuildEvent extends Event {
+
+    @Label("Company")
+    String companyId;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Locations")
+    int locations;
+
+    @Label("Connections")
+    int connections;
+
+    static GraphBuildEvent start() {
+        GraphBuildEvent event = new GraphBuildEvent();
+        event.begin();
+        return event;
+    }
+
+    void finish(String companyId, GraphMetrics.BuildStage stage, CompactGraph graph) {
+        end();
+        if (shouldCommit()) {
+            this.companyId = companyId;
+            this.stage = stage.name().toLowerCase(Locale.ROOT);
+            this.locations = graph.nodeCount();
+            this.connections = graph.edgeCount();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.ruta.api.service;
+
+import java.util.List;
+
+public class GraphMemoryStats {
+    private final long budgetBytes;
+    private final long residentBytes;
+    private final long offHeapBytes;
+    private final int residentGraphs;
+    private final int spilledGraphs;
+    private final long evictions;
+    private final long reloads;
+    private final long averageReloadMicros;
+    private final long maxReloadMicros;
+    private final long lastReloadMicros;
+    private final List<TenantMemory> tenants;
+
+    public GraphMemoryStats(long budgetBytes, long residentBytes, long offHeapBytes, int residentGraphs,
+                            int spilledGraphs, long evictions, long reloads, long averageReloadMicros,
+                            long maxReloadMicros, long lastReloadMicros, List<TenantMemory> tenants) {
+        this.budgetBytes = budgetBytes;
+        this.residentBytes = residentBytes;
+        this.offHeapBytes = offHeapBytes;
+        this.residentGraphs = residentGraphs;
+        this.spilledGraphs = spilledGraphs;
+        this.evictions = evictions;
+        this.reloads = reloads;
+        this.averageReloadMicros = averageReloadMicros;
+        this.maxReloadMicros = maxReloadMicros;
+        this.lastReloadMicros = lastReloadMicros;
+        this.tenants = tenants;
+    }
+
+    // 0 when graphs are never spilled
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    // Part of residentBytes in native memory rather than on the heap
+    public long getOffHeapBytes() {
+        return offHeapBytes;
+    }
+
+    public int getResidentGraphs() {
+        return residentGraphs;
+    }
+
+    public int getSpilledGraphs() {
+        return spilledGraphs;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getReloads() {
+        return reloads;
+    }
+
+    public long getAverageReloadMicros() {
+        return averageReloadMicros;
+    }
+
+    public long getMaxReloadMicros() {
+        return maxReloadMicros;
+    }
+
+    public long getLastReloadMicros() {
+        return lastReloadMicros;
+    }
+
+    public List<TenantMemory> getTenants() {
+        return tenants;
+    }
+
+    public static class TenantMemory {
+        private final String companyId;
+        private final long estimatedBytes;
+        private final long offHeapBytes;
+        private final boolean resident;
+        private final Long lastQueriedMillisAgo;
+
+        public TenantMemory(String companyId, long estimatedBytes, long offHeapBytes, boolean resident,
+                            Long lastQueriedMillisAgo) {
+            this.companyId = companyId;
+            this.estimatedBytes = estimatedBytes;
+            this.offHeapBytes = offHeapBytes;
+            this.resident = resident;
+            this.lastQueriedMillisAgo = lastQueriedMillisAgo;
+        }
+
+        public String getCompanyId() {
+            return companyId;
+        }
+
+        public long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+
+        public long getOffHeapBytes() {
+            return offHeapBytes;
+        }
+
+        public boolean isResident() {
+            return resident;
+        }
+
+        // null when the graph has not been queried since it was loaded
+        public Long getLastQueriedMillisAgo() {
+            return lastQueriedMillisAgo;
+        }
+    }
+}
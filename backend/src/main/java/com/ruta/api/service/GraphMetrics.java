@@ -0,0 +1,168 @@
+package com.ruta.api.service;
+
+import com.ruta.api.model.CompactGraph;
+import com.ruta.api.model.RoutingAlgorithm;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer meters for ingest, graph builds and routing, exposed by Actuator at /actuator/prometheus.
+ * Every meter a query records to is registered up front and looked up by enum, so recording a query
+ * allocates nothing; only the per-company gauges are registered later, when a company's graph is first stored,
+ * and removed again when it is cleared.
+ */
+@Component
+public class GraphMetrics {
+
+    public enum BuildStage {
+        COMPACT, LANDMARKS, HIERARCHY
+    }
+
+    public enum Rejection {
+        EMPTY, INVALID, TOO_LARGE, ERROR
+    }
+
+    private static final String LOCATIONS = "graph.locations";
+    private static final String CONNECTIONS = "graph.connections";
+    private static final String ESTIMATED_BYTES = "graph.estimated.bytes";
+
+    private final MeterRegistry registry;
+    private final Timer parseTimer;
+    private final Counter rowsIngested;
+    private final Map<Rejection, Counter> rejectedUploads = new EnumMap<>(Rejection.class);
+    private final Map<BuildStage, Timer> buildTimers = new EnumMap<>(BuildStage.class);
+    private final Map<RoutingAlgorithm, Timer> queryTimers = new EnumMap<>(RoutingAlgorithm.class);
+    private final Counter unreachableRoutes;
+    private final DistributionSummary settledNodes;
+    private final DistributionSummary relaxedEdges;
+    private final Set<String> trackedCompanies = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public GraphMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        parseTimer = Timer.builder("ingest.parse")
+                .description("Time to parse an uploaded CSV into a staging graph")
+                .publishPercentileHistogram()
+                .register(registry);
+        rowsIngested = Counter.builder("ingest.rows")
+                .description("Connections read from accepted uploads")
+                .register(registry);
+        for (Rejection reason : Rejection.values()) {
+            rejectedUploads.put(reason, Counter.builder("ingest.rejected")
+                    .description("Uploads turned down, by reason")
+                    .tag("reason", reason.name().toLowerCase(Locale.ROOT))
+                    .register(registry));
+        }
+        for (BuildStage stage : BuildStage.values()) {
+            buildTimers.put(stage, Timer.builder("graph.build")
+                    .description("Time to freeze a graph and build its indexes, by stage")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        for (RoutingAlgorithm algorithm : RoutingAlgorithm.values()) {
+            queryTimers.put(algorithm, Timer.builder("routing.query")
+                    .description("Single route query latency, cache hits included, by requested algorithm")
+                    .tag("algorithm", algorithm.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        unreachableRoutes = Counter.builder("routing.unreachable")
+                .description("Route queries answered with no route")
+                .register(registry);
+        settledNodes = DistributionSummary.builder("routing.settled.nodes")
+                .description("Nodes settled per route search; cache hits run no search")
+                .register(registry);
+        relaxedEdges = DistributionSummary.builder("routing.relaxed.edges")
+                .description("Edges relaxed per route search; cache hits run no search")
+                .register(registry);
+    }
+
+    // Meters nobody scrapes, for services created outside Spring
+    public static GraphMetrics detached() {
+        return new GraphMetrics(new SimpleMeterRegistry());
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    public void recordParse(long nanos, long rows) {
+        parseTimer.record(nanos, TimeUnit.NANOSECONDS);
+        rowsIngested.increment(rows);
+    }
+
+    public void recordRejectedUpload(Rejection reason) {
+        rejectedUploads.get(reason).increment();
+    }
+
+    void recordBuild(BuildStage stage, long nanos) {
+        buildTimers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordQuery(RoutingAlgorithm algorithm, long nanos, boolean found) {
+        queryTimers.get(algorithm).record(nanos, TimeUnit.NANOSECONDS);
+        if (!found) {
+            unreachableRoutes.increment();
+        }
+    }
+
+    void recordSearch(int settled, int relaxed) {
+        settledNodes.record(settled);
+        relaxedEdges.record(relaxed);
+    }
+
+    /**
+     * Registers the size gauges of a company once. They read the company's current graph on every scrape
+     * and report NaN while it has none in memory, e.g. while it is spilled.
+     */
+    void trackCompany(String companyId, Map<String, CompactGraph> graphsByCompany) {
+        if (!trackedCompanies.add(companyId)) {
+            return;
+        }
+        gauge(LOCATIONS, "Locations in the company's graph", companyId, graphsByCompany,
+                CompactGraph::nodeCount);
+        gauge(CONNECTIONS, "Connections in the company's graph", companyId, graphsByCompany,
+                CompactGraph::edgeCount);
+        gauge(ESTIMATED_BYTES, "Estimated memory of the company's graph and its indexes", companyId,
+                graphsByCompany, CompactGraph::estimatedBytes);
+    }
+
+    // Drops the size gauges of a cleared company, so tenants that come and go do not pile up in the registry
+    void untrackCompany(String companyId) {
+        if (!trackedCompanies.remove(companyId)) {
+            return;
+        }
+        for (String name : new String[]{LOCATIONS, CONNECTIONS, ESTIMATED_BYTES}) {
+            Gauge gauge = registry.find(name).tag("company", companyId).gauge();
+            if (gauge != null) {
+                registry.remove(gauge);
+            }
+        }
+    }
+
+    private void gauge(String name, String description, String companyId, Map<String, CompactGraph> graphsByCompany,
+                       ToDoubleFunction<CompactGraph> size) {
+        Gauge.builder(name, graphsByCompany, graphs -> {
+                    CompactGraph graph = graphs.get(companyId);
+                    return graph == null ? Double.NaN : size.applyAsDouble(graph);
+                })
+                .description(description)
+                .tag("company", companyId)
+                .register(registry);
+    }
+}
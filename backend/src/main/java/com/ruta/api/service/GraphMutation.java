@@ -0,0 +1,183 @@
+package com.ruta.api.service;
+
+import com.ruta.api.model.CompactGraph;
+import com.ruta.api.model.Connection;
+import com.ruta.api.model.Graph;
+import com.ruta.api.model.GraphDelta;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A change to one company's graph as recorded in the {@link WriteAheadLog}: a whole upload, a single added
+ * connection, a delta or a clear. The payload starts with a type byte; uploads store the location names
+ * followed by each location's edges, so replaying one keeps ids and per-node edge order.
+ */
+final class GraphMutation {
+    private static final byte UPLOAD = 1;
+    private static final byte ADD = 2;
+    private static final byte DELTA = 3;
+    private static final byte CLEAR = 4;
+
+    private static final byte DELTA_UPSERT = 0;
+    private static final byte DELTA_DELETE = 1;
+
+    private final byte type;
+    private final CompactGraph graph;
+    private final Connection connection;
+    private final GraphDelta delta;
+
+    private GraphMutation(byte type, CompactGraph graph, Connection connection, GraphDelta delta) {
+        this.type = type;
+        this.graph = graph;
+        this.connection = connection;
+        this.delta = delta;
+    }
+
+    static GraphMutation upload(CompactGraph graph) {
+        return new GraphMutation(UPLOAD, graph, null, null);
+    }
+
+    static GraphMutation add(Connection connection) {
+        return new GraphMutation(ADD, null, connection, null);
+    }
+
+    static GraphMutation delta(GraphDelta delta) {
+        return new GraphMutation(DELTA, null, null, delta);
+    }
+
+    static GraphMutation clear() {
+        return new GraphMutation(CLEAR, null, null, null);
+    }
+
+    // The company's graph after this change, or null when it no longer has one
+    CompactGraph applyTo(CompactGraph current) {
+        switch (type) {
+            case UPLOAD:
+                return graph;
+            case ADD: {
+                Graph copy = current == null ? new Graph() : Graph.copyOf(current);
+                copy.addConnection(connection);
+                return copy.compact();
+            }
+            case DELTA:
+                return (current == null ? new Graph().compact() : current).apply(delta).getGraph();
+            default:
+                return null;
+        }
+    }
+
+    byte[] encode() {
+        switch (type) {
+            case UPLOAD:
+                return encodeUpload();
+            case ADD: {
+                byte[] source = utf8(connection.getSource());
+                byte[] target = utf8(connection.getTarget());
+                return buffer(1 + 12 + source.length + target.length).put(ADD)
+                        .putInt(source.length).put(source).putInt(target.length).put(target)
+                        .putInt(connection.getTime()).array();
+            }
+            case DELTA:
+                return encodeDelta();
+            default:
+                return new byte[]{CLEAR};
+        }
+    }
+
+    private byte[] encodeUpload() {
+        int n = graph.nodeCount();
+        byte[][] names = new byte[n][];
+        long bytes = 1 + 4 + 4L * n + 8L * graph.edgeCount();
+        for (int u = 0; u < n; u++) {
+            names[u] = utf8(graph.nameOf(u));
+            bytes += 4 + names[u].length;
+        }
+        ByteBuffer out = buffer(Math.toIntExact(bytes)).put(UPLOAD).putInt(n);
+        for (byte[] name : names) {
+            out.putInt(name.length).put(name);
+        }
+        for (int u = 0; u < n; u++) {
+            out.putInt(graph.edgeEnd(u) - graph.edgeStart(u));
+            for (int e = graph.edgeStart(u), end = graph.edgeEnd(u); e < end; e++) {
+                out.putInt(graph.target(e)).putInt(graph.weight(e));
+            }
+        }
+        return out.array();
+    }
+
+    private byte[] encodeDelta() {
+        byte[][] froms = new byte[delta.size()][];
+        byte[][] tos = new byte[delta.size()][];
+        int bytes = 1 + 4;
+        for (int i = 0; i < delta.size(); i++) {
+            froms[i] = utf8(delta.from(i));
+            tos[i] = utf8(delta.to(i));
+            bytes += 1 + 12 + froms[i].length + tos[i].length;
+        }
+        ByteBuffer out = buffer(bytes).put(DELTA).putInt(delta.size());
+        for (int i = 0; i < delta.size(); i++) {
+            boolean delete = delta.isDelete(i);
+            out.put(delete ? DELTA_DELETE : DELTA_UPSERT)
+                    .putInt(froms[i].length).put(froms[i]).putInt(tos[i].length).put(tos[i])
+                    .putInt(delete ? 0 : delta.time(i));
+        }
+        return out.array();
+    }
+
+    static GraphMutation decode(ByteBuffer in) {
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        byte type = in.get();
+        switch (type) {
+            case UPLOAD: {
+                Graph graph = new Graph();
+                int n = in.getInt();
+                for (int u = 0; u < n; u++) {
+                    graph.addLocation(string(in));
+                }
+                for (int u = 0; u < n; u++) {
+                    for (int count = in.getInt(); count > 0; count--) {
+                        graph.addEdge(u, in.getInt(), in.getInt());
+                    }
+                }
+                return upload(graph.compact());
+            }
+            case ADD:
+                return add(new Connection(string(in), string(in), in.getInt()));
+            case DELTA: {
+                GraphDelta delta = new GraphDelta();
+                for (int count = in.getInt(); count > 0; count--) {
+                    boolean delete = in.get() == DELTA_DELETE;
+                    String from = string(in);
+                    String to = string(in);
+                    int time = in.getInt();
+                    if (delete) {
+                        delta.delete(from, to);
+                    } else {
+                        delta.upsert(from, to, time);
+                    }
+                }
+                return delta(delta);
+            }
+            case CLEAR:
+                return clear();
+            default:
+                throw new IllegalArgumentException("Unknown graph mutation type " + type);
+        }
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer buffer(int bytes) {
+        return ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,273 @@
+package com.ruta.api.service;
+
+import com.ruta.api.model.CompactGraph;
+import com.ruta.api.model.GraphSnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the resident graphs of {@link CompanyGraphService} within a heap budget. When their estimated size
+ * exceeds it, the least recently queried graphs are written to the spill directory in {@link GraphSnapshot}
+ * form and dropped from the map; the next query reloads them. A budget of 0 never spills.
+ * <p>
+ * Spilling and reloading swap map entries under the company's write lock, so they are ordered with the
+ * service's own updates of the same company. Spill files are written and read outside any map compute.
+ */
+final class GraphResidency {
+    private static final Logger logger = Logger.getLogger(GraphResidency.class.getName());
+
+    private final Map<String, CompactGraph> graphs;
+    private final Function<String, ReentrantLock> writeLocks;
+    private final long budgetBytes;
+    private final Path spillDirectory;
+    private final boolean offHeap; // reload spilled graphs straight into native memory
+
+    private final Map<String, SpilledGraph> spilled = new ConcurrentHashMap<>();
+    // Query time per company; the counters are reused, so touching a known company does not allocate
+    private final Map<String, AtomicLong> lastQueried = new ConcurrentHashMap<>();
+
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong reloadNanos = new AtomicLong();
+    private final AtomicLong maxReloadNanos = new AtomicLong();
+    private final AtomicLong lastReloadNanos = new AtomicLong();
+
+    GraphResidency(Map<String, CompactGraph> graphs, Function<String, ReentrantLock> writeLocks, long budgetBytes,
+                   Path spillDirectory, boolean offHeap) {
+        this.graphs = graphs;
+        this.writeLocks = writeLocks;
+        this.budgetBytes = budgetBytes;
+        this.spillDirectory = spillDirectory;
+        this.offHeap = offHeap;
+    }
+
+    long budgetBytes() {
+        return budgetBytes;
+    }
+
+    // Spill files only cache resident state, so anything left by an earlier run is stale
+    void clearSpillDirectory() throws IOException {
+        if (!Files.isDirectory(spillDirectory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDirectory, "*.graph*")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    void touch(String companyId) {
+        AtomicLong time = lastQueried.get(companyId);
+        if (time == null) {
+            time = lastQueried.computeIfAbsent(companyId, id -> new AtomicLong());
+        }
+        time.set(System.nanoTime());
+    }
+
+    boolean isSpilled(String companyId) {
+        return spilled.containsKey(companyId);
+    }
+
+    /**
+     * Reads a spilled graph back and forgets its spill file; null when the company is not spilled.
+     * Meant to run under the company's write lock, so nothing else changes its map entry meanwhile.
+     */
+    CompactGraph reload(String companyId) {
+        SpilledGraph entry = spilled.get(companyId);
+        if (entry == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        CompactGraph graph;
+        try {
+            graph = GraphSnapshot.read(entry.file, offHeap).graph();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not reload spilled graph for companyId: " + companyId, e);
+        }
+        spilled.remove(companyId);
+        deleteQuietly(entry.file);
+        long elapsed = System.nanoTime() - start;
+        reloads.incrementAndGet();
+        reloadNanos.addAndGet(elapsed);
+        lastReloadNanos.set(elapsed);
+        maxReloadNanos.accumulateAndGet(elapsed, Math::max);
+        logger.info("Reloaded spilled graph for companyId: " + companyId + " (" + graph.nodeCount()
+                + " locations) in " + elapsed / 1_000 + " µs");
+        return graph;
+    }
+
+    // Spilled graph read without making it resident again, or null when the company is not spilled
+    CompactGraph peek(String companyId) {
+        SpilledGraph entry = spilled.get(companyId);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return GraphSnapshot.read(entry.file).graph();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read spilled graph for companyId: " + companyId, e);
+        }
+    }
+
+    // Drops the company's spilled copy, e.g. because it was replaced; true when it had one
+    boolean discard(String companyId) {
+        SpilledGraph entry = spilled.remove(companyId);
+        if (entry == null) {
+            return false;
+        }
+        deleteQuietly(entry.file);
+        return true;
+    }
+
+    // Drops everything known about the company once its graph is gone
+    void forget(String companyId) {
+        discard(companyId);
+        lastQueried.remove(companyId);
+    }
+
+    /**
+     * Spills least recently queried graphs until the resident ones fit the budget. The most recently
+     * queried graph always stays, so a single graph larger than the budget does not thrash.
+     *
+     * @param onSpilled called with each company whose graph left the heap
+     */
+    void enforceBudget(Consumer<String> onSpilled) {
+        if (budgetBytes <= 0) {
+            return;
+        }
+        List<Resident> residents = new ArrayList<>();
+        long total = 0;
+        for (Map.Entry<String, CompactGraph> entry : graphs.entrySet()) {
+            AtomicLong queried = lastQueried.get(entry.getKey());
+            Resident resident = new Resident(entry.getKey(), entry.getValue(), queried == null ? 0 : queried.get());
+            residents.add(resident);
+            total += resident.bytes;
+        }
+        if (total <= budgetBytes || residents.size() < 2) {
+            return;
+        }
+        residents.sort(Comparator.comparingLong((Resident resident) -> resident.queried));
+        for (int i = 0; i < residents.size() - 1 && total > budgetBytes; i++) {
+            Resident victim = residents.get(i);
+            if (spill(victim)) {
+                total -= victim.bytes;
+                onSpilled.accept(victim.companyId);
+            }
+        }
+    }
+
+    private boolean spill(Resident victim) {
+        Path file = spillDirectory.resolve(Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(victim.companyId.getBytes(StandardCharsets.UTF_8)) + ".graph");
+        if (!victim.graph.acquire()) {
+            return false; // replaced and released meanwhile
+        }
+        try {
+            Files.createDirectories(spillDirectory);
+            GraphSnapshot.write(victim.graph, 0, file);
+        } catch (IOException e) {
+            logger.warning("Could not spill graph for companyId: " + victim.companyId + ": " + e.getMessage());
+            return false;
+        } finally {
+            victim.graph.release();
+        }
+        boolean swapped;
+        ReentrantLock writeLock = writeLocks.apply(victim.companyId);
+        writeLock.lock();
+        try {
+            // Marked spilled before it leaves the map, so a lookup in between finds one or the other
+            spilled.put(victim.companyId, new SpilledGraph(file, victim.bytes));
+            swapped = graphs.remove(victim.companyId, victim.graph);
+            if (!swapped) {
+                spilled.remove(victim.companyId); // changed while the file was written; that version stays resident
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (!swapped) {
+            deleteQuietly(file);
+            return false;
+        }
+        victim.graph.retire();
+        evictions.incrementAndGet();
+        logger.info("Spilled graph for companyId: " + victim.companyId + " (" + victim.bytes + " bytes) to " + file);
+        return true;
+    }
+
+    GraphMemoryStats stats() {
+        List<GraphMemoryStats.TenantMemory> tenants = new ArrayList<>();
+        long residentBytes = 0;
+        long offHeapBytes = 0;
+        for (Map.Entry<String, CompactGraph> entry : graphs.entrySet()) {
+            long bytes = entry.getValue().estimatedBytes();
+            long nativeBytes = entry.getValue().offHeapBytes();
+            residentBytes += bytes;
+            offHeapBytes += nativeBytes;
+            tenants.add(new GraphMemoryStats.TenantMemory(entry.getKey(), bytes, nativeBytes, true,
+                    lastQueriedMillisAgo(entry.getKey())));
+        }
+        for (Map.Entry<String, SpilledGraph> entry : spilled.entrySet()) {
+            tenants.add(new GraphMemoryStats.TenantMemory(entry.getKey(), entry.getValue().bytes, 0, false,
+                    lastQueriedMillisAgo(entry.getKey())));
+        }
+        tenants.sort(Comparator.comparing(GraphMemoryStats.TenantMemory::getCompanyId));
+        long count = reloads.get();
+        return new GraphMemoryStats(budgetBytes, residentBytes, offHeapBytes, graphs.size(), spilled.size(), evictions.get(), count,
+                count == 0 ? 0 : reloadNanos.get() / count / 1_000, maxReloadNanos.get() / 1_000,
+                lastReloadNanos.get() / 1_000, tenants);
+    }
+
+    private Long lastQueriedMillisAgo(String companyId) {
+        AtomicLong queried = lastQueried.get(companyId);
+        return queried == null ? null : (System.nanoTime() - queried.get()) / 1_000_000;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warning("Could not delete spill file " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static final class SpilledGraph {
+        final Path file;
+        final long bytes; // estimated heap size when it was resident
+
+        SpilledGraph(Path file, long bytes) {
+            this.file = file;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class Resident {
+        final String companyId;
+        final CompactGraph graph;
+        final long queried;
+        final long bytes;
+
+        Resident(String companyId, CompactGraph graph, long queried) {
+            this.companyId = companyId;
+            this.graph = graph;
+            this.queried = queried;
+            this.bytes = graph.estimatedBytes();
+        }
+    }
+}
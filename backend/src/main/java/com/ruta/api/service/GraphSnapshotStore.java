@@ -0,0 +1,82 @@
+package com.ruta.api.service;
+
+import com.ruta.api.model.CompactGraph;
+import com.ruta.api.model.GraphSnapshot;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * One {@link GraphSnapshot} file per company in a directory. File names are the URL-safe Base64 of the
+ * company id, so any id maps to a valid name and back.
+ */
+final class GraphSnapshotStore {
+    private static final Logger logger = Logger.getLogger(GraphSnapshotStore.class.getName());
+    private static final String SUFFIX = ".graph";
+
+    private final Path directory;
+
+    GraphSnapshotStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    void save(String companyId, CompactGraph graph, long logPosition) throws IOException {
+        GraphSnapshot.write(graph, logPosition, fileOf(companyId));
+    }
+
+    void delete(String companyId) throws IOException {
+        Files.deleteIfExists(fileOf(companyId));
+    }
+
+    /**
+     * Loads every readable snapshot, off-heap if asked to. Leftovers of interrupted writes are removed;
+     * snapshots that fail validation are logged and skipped, so the company starts empty instead of with a
+     * damaged graph.
+     */
+    Map<String, GraphSnapshot> loadAll(boolean offHeap) throws IOException {
+        Map<String, GraphSnapshot> snapshots = new LinkedHashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SUFFIX + ".tmp")) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                if (!name.endsWith(SUFFIX)) {
+                    continue;
+                }
+                String companyId;
+                try {
+                    companyId = new String(Base64.getUrlDecoder().decode(
+                            name.substring(0, name.length() - SUFFIX.length())), StandardCharsets.UTF_8);
+                } catch (IllegalArgumentException e) {
+                    continue; // not one of ours
+                }
+                long start = System.nanoTime();
+                try {
+                    GraphSnapshot snapshot = GraphSnapshot.read(file, offHeap);
+                    CompactGraph graph = snapshot.graph();
+                    snapshots.put(companyId, snapshot);
+                    logger.info("Loaded graph snapshot for companyId: " + companyId + " (" + graph.nodeCount()
+                            + " locations, " + graph.edgeCount() + " connections) in "
+                            + (System.nanoTime() - start) / 1_000_000 + " ms");
+                } catch (IOException e) {
+                    logger.warning("Ignoring unreadable graph snapshot " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        return snapshots;
+    }
+
+    private Path fileOf(String companyId) {
+        return directory.resolve(Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(companyId.getBytes(StandardCharsets.UTF_8)) + SUFFIX);
+    }
+}
@@ -0,0 +1,36 @@
+package com.ruta.api.service;
+
+import com.ruta.api.model.RouteResult;
+
+/**
+ * Result of one pair in a batch: either a route or the reason it could not be computed.
+ */
+public final class RouteOutcome {
+    private final RouteResult result;
+    private final String error;
+
+    private RouteOutcome(RouteResult result, String error) {
+        this.result = result;
+        this.error = error;
+    }
+
+    public static RouteOutcome found(RouteResult result) {
+        return new RouteOutcome(result, null);
+    }
+
+    public static RouteOutcome failed(String error) {
+        return new RouteOutcome(null, error);
+    }
+
+    public RouteResult getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isFound() {
+        return result != null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.ruta.api.service;
+
+import com.ruta.api.model.RoutingAlgorithm;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for one single-route query. Only created while a recording has the event enabled,
+ * so the query path allocates nothing for it otherwise.
+ */
+@Name("com.ruta.RouteQuery")
+@Label("Route Query")
+@Category({"Ruta", "Routing"})
+@Description("A single-route query, cache hits included; the search fields are only set when a search ran")
+@StackTrace(false)
+final class RouteQueryEvent extends Event {
+    static final EventType TYPE = EventType.getEventType(RouteQueryEvent.class);
+
+    @Label("Company")
+    String companyId;
+
+    @Label("From")
+    String from;
+
+    @Label("To")
+    String to;
+
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Found")
+    boolean found;
+
+    @Label("Searched")
+    @Description("False when the route came from the cache or from a concurrent identical query")
+    boolean searched;
+
+    @Label("Settled Nodes")
+    int settledNodes;
+
+    @Label("Relaxed Edges")
+    int relaxedEdges;
+
+    @Label("Heap Operations")
+    int heapOperations;
+
+    // Started event, or null when no recording wants it
+    static RouteQueryEvent startIfEnabled() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        RouteQueryEvent event = new RouteQueryEvent();
+        event.begin();
+        return event;
+    }
+
+    void searched(int settled, int relaxed, int heapOps) {
+        searched = true;
+        settledNodes = settled;
+        relaxedEdges = relaxed;
+        heapOperations = heapOps;
+    }
+
+    void finish(String companyId, String from, String to, RoutingAlgorithm algorithm, boolean found) {
+        end();
+        if (shouldCommit()) {
+            this.companyId = companyId;
+            this.from = from;
+            this.to = to;
+            this.algorithm = algorithm.name();
+            this.found = found;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.ruta.api.service;
+
+import com.ruta.api.util.ParseProgress;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of one asynchronous upload, updated by the ingestion thread and read by status requests.
+ * The company keeps its previous graph until the job reaches {@link Phase#SUCCEEDED}.
+ */
+public class UploadJob implements ParseProgress {
+
+    public enum Phase {
+        // Waiting for an ingestion thread
+        QUEUED,
+        PARSING,
+        // Parsed; the graph is being compacted, logged and swapped in
+        PUBLISHING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    private final String jobId;
+    private final String companyId;
+    private final long bytesTotal;
+    private final long submittedAt = System.currentTimeMillis();
+    // Spooled upload, deleted once the job is done with it
+    private final Path spool;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong rowsParsed = new AtomicLong();
+    private volatile Phase phase = Phase.QUEUED;
+    private volatile Integer connections;
+    private volatile String error;
+    private volatile Integer errorLine;
+    private volatile Long finishedAt;
+
+    UploadJob(String jobId, String companyId, Path spool, long bytesTotal) {
+        this.jobId = jobId;
+        this.companyId = companyId;
+        this.spool = spool;
+        this.bytesTotal = bytesTotal;
+    }
+
+    @Override
+    public void advanced(int bytes, int lines) {
+        bytesRead.addAndGet(bytes);
+        rowsParsed.addAndGet(lines);
+    }
+
+    void phase(Phase phase) {
+        this.phase = phase;
+    }
+
+    void succeeded(int connections) {
+        this.connections = connections;
+        finish(Phase.SUCCEEDED);
+    }
+
+    // lineNumber is null when the failure is not tied to a line, e.g. an I/O error
+    void failed(String error, Integer lineNumber) {
+        this.error = error;
+        this.errorLine = lineNumber;
+        finish(Phase.FAILED);
+    }
+
+    private void finish(Phase phase) {
+        finishedAt = System.currentTimeMillis();
+        this.phase = phase;
+    }
+
+    boolean isFinished() {
+        return phase == Phase.SUCCEEDED || phase == Phase.FAILED;
+    }
+
+    Path spool() {
+        return spool;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getCompanyId() {
+        return companyId;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public long getBytesTotal() {
+        return bytesTotal;
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    // Lines read so far, blank and header lines included
+    public long getRowsParsed() {
+        return rowsParsed.get();
+    }
+
+    // Connections in the published graph; null until the job succeeded
+    public Integer getConnections() {
+        return connections;
+    }
+
+    // First problem found, e.g. "Invalid time"; null unless the job failed
+    public String getError() {
+        return error;
+    }
+
+    public Integer getErrorLine() {
+        return errorLine;
+    }
+
+    public long getElapsedMillis() {
+        Long end = finishedAt;
+        return (end != null ? end : System.currentTimeMillis()) - submittedAt;
+    }
+}
@@ -0,0 +1,225 @@
+package com.ruta.api.service;
+
+import com.ruta.api.model.Graph;
+import com.ruta.api.util.CompressedUploads;
+import com.ruta.api.util.ConnectionCsvParser;
+import com.ruta.api.util.CsvFormatException;
+import com.ruta.api.util.CsvParseEvent;
+import com.ruta.api.util.InvalidCompressedDataException;
+import com.ruta.api.util.UploadTooLargeException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Uploads parsed and published in the background. The upload is spooled to disk on the request thread and
+ * queued for a small pool of low-priority ingestion threads, so a large file neither holds its connection open
+ * nor takes more than those threads' share of the CPU from queries. A full queue rejects new jobs.
+ * Gzip and deflate uploads are spooled as sent and only inflated while they are parsed.
+ */
+@Service
+public class UploadJobService {
+
+    private static final Logger logger = Logger.getLogger(UploadJobService.class.getName());
+
+    @Autowired
+    private CompanyGraphService companyGraphService;
+
+    @Autowired(required = false)
+    private GraphMetrics metrics = GraphMetrics.detached();
+
+    // Jobs parsed at the same time
+    @Value("${upload.async.threads:1}")
+    private int threads = 1;
+
+    // Jobs waiting for a thread before new ones are rejected
+    @Value("${upload.async.queue-capacity:4}")
+    private int queueCapacity = 4;
+
+    // Finished jobs whose status stays available, oldest dropped first
+    @Value("${upload.async.retained-jobs:100}")
+    private int retainedJobs = 100;
+
+    @Value("${upload.compressed.max-inflated-bytes:536870912}")
+    private long maxInflatedBytes = 512L * 1024 * 1024;
+
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+    private final Queue<String> finished = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger finishedCount = new AtomicInteger();
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = Math.max(1, threads);
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                Thread.ofPlatform().name("upload-ingest-", 0).daemon().priority(Thread.MIN_PRIORITY).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        for (UploadJob job : jobs.values()) {
+            if (job.getPhase() == UploadJob.Phase.QUEUED) {
+                deleteSpool(job);
+            }
+        }
+    }
+
+    /**
+     * Spools the content and queues it for ingestion into the company's graph.
+     *
+     * @throws RejectedExecutionException when the queue is full; nothing is kept in that case
+     */
+    public UploadJob submit(String companyId, InputStream content) throws IOException {
+        Path spool = Files.createTempFile("upload-job-", ".csv");
+        UploadJob job;
+        try {
+            Files.copy(content, spool, StandardCopyOption.REPLACE_EXISTING);
+            job = new UploadJob(UUID.randomUUID().toString(), companyId, spool, Files.size(spool));
+        } catch (IOException e) {
+            Files.deleteIfExists(spool);
+            throw e;
+        }
+        jobs.put(job.getJobId(), job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getJobId());
+            deleteSpool(job);
+            throw e;
+        }
+        logger.info("Queued upload job " + job.getJobId() + " (" + job.getBytesTotal() + " bytes) for companyId: "
+                + companyId);
+        return job;
+    }
+
+    // The job, or null when it is unknown or its status is no longer retained
+    public UploadJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    private void run(UploadJob job) {
+        String companyId = job.getCompanyId();
+        job.phase(UploadJob.Phase.PARSING);
+        long parseStart = System.nanoTime();
+        CsvParseEvent parseEvent = CsvParseEvent.start(companyId, job.getBytesTotal(), false);
+        try {
+            Graph graph;
+            int lines;
+            // Progress counts spooled bytes, which for a compressed upload are fewer than the parser sees
+            try (InputStream in = CompressedUploads.decode(new SpoolProgress(Files.newInputStream(job.spool()), job),
+                    null, maxInflatedBytes)) {
+                ConnectionCsvParser parser = new ConnectionCsvParser((bytes, parsedLines) -> job.advanced(0, parsedLines));
+                graph = parser.parse(in);
+                lines = parser.lineCount();
+            }
+            if (lines == 0) {
+                metrics.recordRejectedUpload(GraphMetrics.Rejection.EMPTY);
+                job.failed("File is empty", null);
+                return;
+            }
+            metrics.recordParse(System.nanoTime() - parseStart, graph.edgeCount());
+            parseEvent.accepted(lines, graph.edgeCount());
+            job.phase(UploadJob.Phase.PUBLISHING);
+            companyGraphService.publishGraph(companyId, graph);
+            job.succeeded(graph.edgeCount());
+            logger.info("Upload job " + job.getJobId() + " published " + graph.edgeCount()
+                    + " connections for companyId: " + companyId);
+        } catch (CsvFormatException e) {
+            logger.warning("Upload job " + job.getJobId() + ": " + e.getMessage());
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.INVALID);
+            parseEvent.rejected();
+            job.failed(e.getProblem(), e.getLineNumber());
+        } catch (InvalidCompressedDataException e) {
+            logger.warning("Upload job " + job.getJobId() + ": " + e.getCause().getMessage());
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.INVALID);
+            parseEvent.rejected();
+            job.failed(e.getMessage(), null);
+        } catch (UploadTooLargeException e) {
+            logger.warning("Upload job " + job.getJobId() + ": " + e.getMessage());
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.TOO_LARGE);
+            job.failed(e.getMessage(), null);
+        } catch (IOException e) {
+            logger.severe("Upload job " + job.getJobId() + " could not read its file: " + e.getMessage());
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.ERROR);
+            job.failed("Error reading file", null);
+        } catch (RuntimeException e) {
+            logger.severe("Upload job " + job.getJobId() + " could not publish its graph: " + e.getMessage());
+            metrics.recordRejectedUpload(GraphMetrics.Rejection.ERROR);
+            job.failed("Error publishing graph", null);
+        } finally {
+            deleteSpool(job);
+            retain(job);
+        }
+    }
+
+    private void retain(UploadJob job) {
+        finished.add(job.getJobId());
+        finishedCount.incrementAndGet();
+        while (finishedCount.get() > retainedJobs) {
+            String oldest = finished.poll();
+            if (oldest == null) {
+                break;
+            }
+            finishedCount.decrementAndGet();
+            jobs.remove(oldest);
+        }
+    }
+
+    // Reports the spooled bytes read to the job
+    private static final class SpoolProgress extends FilterInputStream {
+        private final UploadJob job;
+
+        SpoolProgress(InputStream in, UploadJob job) {
+            super(in);
+            this.job = job;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                job.advanced(1, 0);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                job.advanced(read, 0);
+            }
+            return read;
+        }
+    }
+
+    private static void deleteSpool(UploadJob job) {
+        try {
+            Files.deleteIfExists(job.spool());
+        } catch (IOException e) {
+            logger.warning("Could not delete upload spool " + job.spool() + ": " + e.getMessage());
+        }
+    }
+}
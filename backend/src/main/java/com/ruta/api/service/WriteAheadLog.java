@@ -0,0 +1,350 @@
+package com.ruta.api.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of graph mutations, split into segment files {@code wal-<n>.log}.
+ * <p>
+ * Every record gets the next log sequence number (LSN) and is framed as {@code int} body length,
+ * {@code long} LSN, {@code int} CRC32C of the body and {@code int} CRC32C of those three fields, all
+ * little-endian, followed by the body: the company id and the caller's payload. A write cut short by a crash
+ * fails one of the checksums; replay skips the rest of that segment and {@link #open} truncates it there.
+ * Later segments were written after the crash and are replayed as usual.
+ * <p>
+ * {@link #append} only copies the record into memory. {@link #awaitDurable} uses group commit: the first
+ * waiting thread becomes the leader, waits {@code commitDelayNanos} for others to append, then writes and
+ * fsyncs everything pending in one go while the other waiters block until their LSN is covered.
+ */
+final class WriteAheadLog implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(WriteAheadLog.class.getName());
+    private static final int FRAME_BYTES = 20;
+
+    @FunctionalInterface
+    interface Replayer {
+        void replay(long lsn, String companyId, ByteBuffer payload) throws IOException;
+    }
+
+    private final Path directory;
+    private final long commitDelayNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private final CRC32C crc = new CRC32C(); // guarded by lock
+
+    // All guarded by lock
+    private FileChannel channel;
+    private long segment;
+    private long segmentBytes;
+    private ByteBuffer pending = newBuffer(1 << 16);
+    private ByteBuffer spare = newBuffer(1 << 16);
+    private long lastLsn;
+    private long durableLsn;
+    private boolean flushing;
+    private IOException failure;
+    private Set<String> segmentCompanies = new HashSet<>();
+    private final List<Path> closedSegments = new ArrayList<>();
+    private long closedBytes;
+
+    private WriteAheadLog(Path directory, long commitDelayNanos) {
+        this.directory = directory;
+        this.commitDelayNanos = commitDelayNanos;
+    }
+
+    /**
+     * Replays every intact record of the existing segments in LSN order, cutting a damaged tail off its
+     * segment, and opens a fresh segment for new records. The old segments stay on disk as closed segments until {@link #deleteClosedSegments}.
+     * New LSNs continue after both the replayed ones and {@code lastKnownLsn}.
+     *
+     * @return the log and, through {@code companies}, every company that has records in the old segments
+     */
+    static WriteAheadLog open(Path directory, long lastKnownLsn, long commitDelayNanos,
+                              Set<String> companies, Replayer replayer) throws IOException {
+        Files.createDirectories(directory);
+        WriteAheadLog log = new WriteAheadLog(directory, commitDelayNanos);
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "wal-*.log")) {
+            files.forEach(segments::add);
+        }
+        segments.sort(null); // zero-padded numbers sort in creation order
+
+        long lastSegment = 0;
+        for (Path file : segments) {
+            lastSegment = Math.max(lastSegment, segmentNumber(file));
+            long intactBytes = log.replaySegment(file, companies, replayer);
+            if (intactBytes < Files.size(file)) {
+                // Only this segment's tail is lost; records of later runs must still replay after it
+                try (FileChannel damaged = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    damaged.truncate(intactBytes);
+                    damaged.force(true);
+                }
+            }
+            log.closedSegments.add(file);
+            log.closedBytes += Files.size(file);
+        }
+        log.lastLsn = Math.max(log.lastLsn, lastKnownLsn);
+        log.durableLsn = log.lastLsn;
+        log.openSegment(lastSegment + 1);
+        return log;
+    }
+
+    // Replays the segment's records after lastLsn; returns the length of its intact prefix
+    private long replaySegment(Path file, Set<String> companies, Replayer replayer) throws IOException {
+        ByteBuffer in;
+        try (FileChannel segmentChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            in = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        while (in.hasRemaining()) {
+            int position = in.position();
+            if (in.remaining() < FRAME_BYTES || !intactRecordAt(in, position)) {
+                logger.warning("Write-ahead log " + file + " ends in a damaged record at byte " + position
+                        + "; the segment is cut off there");
+                return position;
+            }
+            int length = in.getInt(position);
+            long lsn = in.getLong(position + 4);
+            ByteBuffer body = in.slice(position + FRAME_BYTES, length).order(ByteOrder.LITTLE_ENDIAN);
+            byte[] company = new byte[body.getInt()];
+            body.get(company);
+            String companyId = new String(company, StandardCharsets.UTF_8);
+            companies.add(companyId);
+            replayer.replay(lsn, companyId, body.slice().order(ByteOrder.LITTLE_ENDIAN));
+            lastLsn = lsn;
+            in.position(position + FRAME_BYTES + length);
+        }
+        return in.position();
+    }
+
+    private boolean intactRecordAt(ByteBuffer in, int position) {
+        int length = in.getInt(position);
+        crc.reset();
+        crc.update(in.slice(position, 16));
+        if ((int) crc.getValue() != in.getInt(position + 16) || length < 4
+                || length > in.limit() - position - FRAME_BYTES || in.getLong(position + 4) <= lastLsn) {
+            return false;
+        }
+        crc.reset();
+        crc.update(in.slice(position + FRAME_BYTES, length));
+        return (int) crc.getValue() == in.getInt(position + 12);
+    }
+
+    /**
+     * Buffers a record and returns its LSN. The record is durable once {@link #awaitDurable} returns for it;
+     * callers that need records of one company in order must append them in that order.
+     */
+    long append(String companyId, byte[] payload) {
+        byte[] company = companyId.getBytes(StandardCharsets.UTF_8);
+        int length = 4 + company.length + payload.length;
+        // The body checksum does not depend on the LSN, so large records are summed outside the lock
+        CRC32C bodyCrc = new CRC32C();
+        bodyCrc.update(newBuffer(4).putInt(0, company.length));
+        bodyCrc.update(company);
+        bodyCrc.update(payload);
+        lock.lock();
+        try {
+            long lsn = ++lastLsn;
+            ensurePending(FRAME_BYTES + length);
+            int start = pending.position();
+            pending.putInt(length).putLong(lsn).putInt((int) bodyCrc.getValue());
+            crc.reset();
+            crc.update(pending.slice(start, 16));
+            pending.putInt((int) crc.getValue());
+            pending.putInt(company.length).put(company).put(payload);
+            segmentCompanies.add(companyId);
+            return lsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Blocks until the record with this LSN and every one before it is on disk
+    void awaitDurable(long lsn) throws IOException {
+        lock.lock();
+        try {
+            while (durableLsn < lsn) {
+                if (failure != null) {
+                    throw new IOException("Write-ahead log is unavailable", failure);
+                }
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                    continue;
+                }
+                flushing = true;
+                if (commitDelayNanos > 0) {
+                    lock.unlock();
+                    LockSupport.parkNanos(commitDelayNanos);
+                    lock.lock();
+                }
+                ByteBuffer batch = pending;
+                pending = spare;
+                spare = batch;
+                long batchLsn = lastLsn;
+                FileChannel target = channel;
+                lock.unlock();
+                IOException error = null;
+                try {
+                    write(target, batch.flip());
+                    target.force(false);
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    lock.lock();
+                }
+                int written = batch.limit();
+                // Do not keep a buffer grown for one large upload around for good
+                spare = batch.capacity() > 1 << 20 ? newBuffer(1 << 16) : batch.clear();
+                flushing = false;
+                flushed.signalAll();
+                if (error != null) {
+                    failure = error;
+                    throw error;
+                }
+                segmentBytes += written;
+                durableLsn = batchLsn;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long lastLsn() {
+        lock.lock();
+        try {
+            return lastLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Bytes in every segment still on disk, including records not yet flushed
+    long size() {
+        lock.lock();
+        try {
+            return closedBytes + segmentBytes + pending.position();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes and closes the current segment and starts a new one. Returns the companies with records in
+     * the segment just closed; records appended afterwards go to the new segment.
+     */
+    Set<String> rotate() throws IOException {
+        lock.lock();
+        try {
+            while (flushing) {
+                flushed.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                throw new IOException("Write-ahead log is unavailable", failure);
+            }
+            int written = pending.position();
+            write(channel, pending.flip());
+            pending.clear();
+            channel.force(false);
+            channel.close();
+            durableLsn = lastLsn;
+            flushed.signalAll();
+            closedSegments.add(segmentPath(segment));
+            closedBytes += segmentBytes + written;
+            Set<String> companies = segmentCompanies;
+            segmentCompanies = new HashSet<>();
+            openSegment(segment + 1);
+            return companies;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Removes the closed segments once everything in them has been folded into snapshots
+    void deleteClosedSegments() throws IOException {
+        lock.lock();
+        try {
+            for (Path file : closedSegments) {
+                Files.deleteIfExists(file);
+            }
+            closedSegments.clear();
+            closedBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            while (flushing) {
+                flushed.awaitUninterruptibly();
+            }
+            if (channel.isOpen()) {
+                if (failure == null) {
+                    write(channel, pending.flip());
+                    pending.clear();
+                    channel.force(false);
+                    durableLsn = lastLsn;
+                }
+                channel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void openSegment(long number) throws IOException {
+        segment = number;
+        segmentBytes = 0;
+        channel = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("wal-%020d.log", number));
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(4, name.length() - 4));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void ensurePending(int bytes) {
+        if (pending.remaining() < bytes) {
+            int capacity = pending.capacity();
+            while (capacity - pending.position() < bytes) {
+                capacity *= 2;
+            }
+            pending = newBuffer(capacity).put(pending.flip());
+        }
+    }
+
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void write(FileChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.ruta.api.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+
+/**
+ * Maps raw UTF-8 byte slices to location ids without decoding them. Keys are copied into one byte arena,
+ * so a name that was seen before costs a hash and a compare; only the first sighting builds a String.
+ */
+final class ByteSliceDictionary {
+    private final ToIntFunction<String> register;
+    private byte[] arena = new byte[1 << 12];
+    private int arenaSize;
+    private int[] keyOffsets = new int[64];
+    private int[] keyLengths = new int[64];
+    private int[] keyHashes = new int[64];
+    private int[] ids = new int[64];
+    private int[] table = new int[128]; // slot -> entry + 1, 0 means empty
+    private int size;
+
+    // register turns a newly seen name into its id, e.g. by adding it to the graph being built
+    ByteSliceDictionary(ToIntFunction<String> register) {
+        this.register = register;
+    }
+
+    int intern(byte[] bytes, int from, int to) {
+        int hash = hash(bytes, from, to);
+        int length = to - from;
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        for (int entry; (entry = table[slot]) != 0; slot = (slot + 1) & mask) {
+            int candidate = entry - 1;
+            if (keyHashes[candidate] == hash && keyLengths[candidate] == length
+                    && Arrays.equals(arena, keyOffsets[candidate], keyOffsets[candidate] + length, bytes, from, to)) {
+                return ids[candidate];
+            }
+        }
+        int id = register.applyAsInt(new String(bytes, from, length, StandardCharsets.UTF_8));
+        add(slot, bytes, from, length, hash, id);
+        return id;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void add(int slot, byte[] bytes, int from, int length, int hash, int id) {
+        if (arenaSize + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+        }
+        System.arraycopy(bytes, from, arena, arenaSize, length);
+        if (size == ids.length) {
+            int capacity = size * 2;
+            keyOffsets = Arrays.copyOf(keyOffsets, capacity);
+            keyLengths = Arrays.copyOf(keyLengths, capacity);
+            keyHashes = Arrays.copyOf(keyHashes, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        keyOffsets[size] = arenaSize;
+        keyLengths[size] = length;
+        keyHashes[size] = hash;
+        ids[size] = id;
+        arenaSize += length;
+        table[slot] = ++size;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] rehashed = new int[capacity];
+        int mask = capacity - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = keyHashes[entry] & mask;
+            while (rehashed[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            rehashed[slot] = entry + 1;
+        }
+        table = rehashed;
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,136 @@
+package com.ruta.api.util;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Undoes gzip and deflate compression of an upload while it is read, so the parser sees plain CSV without the
+ * inflated file ever being stored. The compression comes from the Content-Encoding when there is one and is
+ * otherwise recognized by its first bytes: gzip always starts with 1f 8b, and zlib as every common encoder writes
+ * it with 78. Anything else is read as it is.
+ */
+public final class CompressedUploads {
+    private static final int INFLATE_BUFFER_BYTES = 64 * 1024;
+
+    private CompressedUploads() {
+    }
+
+    // Whether decode understands this Content-Encoding; null means none was sent
+    public static boolean isSupported(String contentEncoding) {
+        String coding = normalize(contentEncoding);
+        return coding.isEmpty() || coding.equals("identity") || coding.equals("gzip") || coding.equals("x-gzip")
+                || coding.equals("deflate");
+    }
+
+    /**
+     * The upload as plain CSV. Reading fails with {@link InvalidCompressedDataException} when the compressed data
+     * is corrupt or truncated, and with {@link UploadTooLargeException} once it inflates past
+     * {@code maxInflatedBytes}. Closing the result closes {@code in}.
+     *
+     * @param contentEncoding the request's Content-Encoding, or null to go by the first bytes alone
+     */
+    public static InputStream decode(InputStream in, String contentEncoding, long maxInflatedBytes) throws IOException {
+        String coding = normalize(contentEncoding);
+        if (!isSupported(coding)) {
+            throw new IllegalArgumentException("Unsupported content encoding: " + contentEncoding);
+        }
+        InputStream peekable = in.markSupported() ? in : new BufferedInputStream(in);
+        peekable.mark(2);
+        int first = peekable.read();
+        int second = peekable.read();
+        peekable.reset();
+        boolean gzip = isGzip(first, second);
+        boolean zlib = isZlib(first, second);
+        try {
+            if (gzip || coding.equals("gzip") || coding.equals("x-gzip")) {
+                return new Inflating(new GZIPInputStream(peekable, INFLATE_BUFFER_BYTES), null, maxInflatedBytes);
+            }
+            if (zlib || coding.equals("deflate")) {
+                // A deflate Content-Encoding should carry a zlib header, but some clients send the bare stream
+                Inflater inflater = new Inflater(!zlib);
+                return new Inflating(new InflaterInputStream(peekable, inflater, INFLATE_BUFFER_BYTES), inflater,
+                        maxInflatedBytes);
+            }
+        } catch (ZipException | EOFException e) {
+            // A gzip header that does not parse
+            throw new InvalidCompressedDataException(e);
+        }
+        return peekable;
+    }
+
+    // Whether the stream starts the way gzip or zlib data does; consumes its first two bytes
+    public static boolean startsCompressed(InputStream in) throws IOException {
+        int first = in.read();
+        int second = in.read();
+        return isGzip(first, second) || isZlib(first, second);
+    }
+
+    private static boolean isGzip(int first, int second) {
+        return first == 0x1f && second == 0x8b;
+    }
+
+    // 32 KiB window, no preset dictionary and a valid header check; plain text only collides on "x^"
+    private static boolean isZlib(int first, int second) {
+        return first == 0x78 && second >= 0 && ((first << 8) | second) % 31 == 0 && (second & 0x20) == 0;
+    }
+
+    private static String normalize(String contentEncoding) {
+        return contentEncoding == null ? "" : contentEncoding.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Counts inflated bytes against the limit and reports broken compressed data as such
+    private static final class Inflating extends FilterInputStream {
+        // Ended on close; null when the stream ends its own
+        private final Inflater inflater;
+        private final long maxBytes;
+        private long total;
+
+        Inflating(InputStream in, Inflater inflater, long maxBytes) {
+            super(in);
+            this.inflater = inflater;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read;
+            try {
+                read = in.read(b, off, len);
+            } catch (ZipException | EOFException e) {
+                throw new InvalidCompressedDataException(e);
+            }
+            if (read > 0) {
+                total += read;
+                if (total > maxBytes) {
+                    throw new UploadTooLargeException(maxBytes);
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (inflater != null) {
+                    inflater.end();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.ruta.api.util;
+
+import com.ruta.api.model.Graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for {@code source;target;time} uploads that works on raw UTF-8 bytes.
+ * Lines are scanned in a reusable buffer, times are parsed in place and names are resolved through a
+ * {@link ByteSliceDictionary}, so a line with known locations allocates nothing.
+ *
+ * <p>The rules match the former line-by-line String parsing: the first non-blank line is skipped as a header
+ * when it has three fields and a non-numeric time, trailing empty fields are ignored the way
+ * {@code String.split(";")} drops them, fields are trimmed like {@code String.trim()}, and times follow
+ * {@code Integer.parseInt}.
+ */
+public final class ConnectionCsvParser {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Graph graph = new Graph();
+    private final ByteSliceDictionary locations = new ByteSliceDictionary(graph::addLocation);
+    private final ParseProgress progress;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int lineNumber;
+    private boolean headerChecked;
+    private int time;
+
+    public ConnectionCsvParser() {
+        this(ParseProgress.NONE);
+    }
+
+    public ConnectionCsvParser(ParseProgress progress) {
+        this.progress = progress;
+    }
+
+    // Parsers for later chunks of a file start past the header line
+    ConnectionCsvParser(boolean detectHeader) {
+        this(ParseProgress.NONE);
+        this.headerChecked = !detectHeader;
+    }
+
+    /**
+     * Reads the whole stream into a new graph. Throws {@link CsvFormatException} at the first invalid line;
+     * nothing is published in that case, the caller simply drops the parser.
+     */
+    public Graph parse(InputStream in) throws IOException, CsvFormatException {
+        return parse((InputSource) in::read);
+    }
+
+    // Same as parse(InputStream) over the remaining bytes of a buffer, e.g. one mapped chunk of a file
+    Graph parse(ByteBuffer bytes) throws CsvFormatException {
+        try {
+            return parse((target, offset, length) -> {
+                if (!bytes.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(length, bytes.remaining());
+                bytes.get(target, offset, count);
+                return count;
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // buffers do not throw
+        }
+    }
+
+    private interface InputSource {
+        int read(byte[] target, int offset, int length) throws IOException;
+    }
+
+    private Graph parse(InputSource in) throws IOException, CsvFormatException {
+        int lineStart = 0;
+        int scan = 0;
+        int limit = 0;
+        boolean afterCr = false;
+        while (true) {
+            if (limit == buffer.length) {
+                if (lineStart > 0) {
+                    // Slide the unfinished line to the front so the buffer can be refilled behind it
+                    System.arraycopy(buffer, lineStart, buffer, 0, limit - lineStart);
+                    scan -= lineStart;
+                    limit -= lineStart;
+                    lineStart = 0;
+                } else {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                break;
+            }
+            limit += read;
+            int linesBefore = lineNumber;
+            for (; scan < limit; scan++) {
+                byte b = buffer[scan];
+                if (b == '\n' || b == '\r') {
+                    if (b == '\n' && afterCr) {
+                        // Second half of a \r\n terminator
+                        afterCr = false;
+                        lineStart = scan + 1;
+                        continue;
+                    }
+                    afterCr = b == '\r';
+                    parseLine(lineStart, scan);
+                    lineStart = scan + 1;
+                } else {
+                    afterCr = false;
+                }
+            }
+            progress.advanced(read, lineNumber - linesBefore);
+        }
+        if (lineStart < limit) {
+            parseLine(lineStart, limit);
+            progress.advanced(0, 1);
+        }
+        return graph;
+    }
+
+    // Lines read so far, blank and header lines included
+    public int lineCount() {
+        return lineNumber;
+    }
+
+    private void parseLine(int from, int to) throws CsvFormatException {
+        lineNumber++;
+        if (trimStart(from, to) == to) {
+            return;
+        }
+        int first = indexOfSemicolon(from, to);
+        int second = first < 0 ? -1 : indexOfSemicolon(first + 1, to);
+        int third = second < 0 ? -1 : indexOfSemicolon(second + 1, to);
+        int timeEnd = third < 0 ? to : third;
+        boolean threeFields = second >= 0 && timeEnd > second + 1 && onlySemicolons(timeEnd, to);
+
+        int timeFrom = threeFields ? trimStart(second + 1, timeEnd) : 0;
+        int timeTo = threeFields ? trimEnd(timeFrom, timeEnd) : 0;
+        if (!headerChecked) {
+            headerChecked = true;
+            if (threeFields && !parseTime(timeFrom, timeTo)) {
+                return;
+            }
+        }
+        if (!threeFields) {
+            throw new CsvFormatException("Invalid format", lineNumber);
+        }
+        if (!parseTime(timeFrom, timeTo)) {
+            throw new CsvFormatException("Invalid time", lineNumber);
+        }
+        int sourceFrom = trimStart(from, first);
+        int sourceTo = trimEnd(sourceFrom, first);
+        int targetFrom = trimStart(first + 1, second);
+        int targetTo = trimEnd(targetFrom, second);
+        if (sourceFrom == sourceTo || targetFrom == targetTo || time < 0) {
+            throw new CsvFormatException("Invalid data", lineNumber);
+        }
+        int source = locations.intern(buffer, sourceFrom, sourceTo);
+        int target = locations.intern(buffer, targetFrom, targetTo);
+        graph.addEdge(source, target, time);
+    }
+
+    private int indexOfSemicolon(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == ';') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // split(";") drops trailing empty fields, so extra separators at the end of a line are harmless
+    private boolean onlySemicolons(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] != ';') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // String.trim() strips every char up to U+0020; in UTF-8 those are exactly the bytes 0x00-0x20
+    private int trimStart(int from, int to) {
+        while (from < to && (buffer[from] & 0xFF) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private int trimEnd(int from, int to) {
+        while (to > from && (buffer[to - 1] & 0xFF) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    // Sets time and returns true exactly when Integer.parseInt would accept the slice
+    private boolean parseTime(int from, int to) {
+        if (from == to) {
+            return false;
+        }
+        int i = from;
+        boolean negative = buffer[i] == '-';
+        if (negative || buffer[i] == '+') {
+            if (++i == to) {
+                return false;
+            }
+        }
+        // Accumulate negatively so Integer.MIN_VALUE fits, as Integer.parseInt does
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int multiplyMin = limit / 10;
+        int result = 0;
+        for (; i < to; i++) {
+            int b = buffer[i];
+            if (b < 0) {
+                // Integer.parseInt also takes non-ASCII Unicode digits
+                return parseTimeSlow(from, to);
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || result < multiplyMin) {
+                return false;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return false;
+            }
+            result -= digit;
+        }
+        time = negative ? result : -result;
+        return true;
+    }
+
+    private boolean parseTimeSlow(int from, int to) {
+        try {
+            time = Integer.parseInt(new String(buffer, from, to - from, StandardCharsets.UTF_8));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
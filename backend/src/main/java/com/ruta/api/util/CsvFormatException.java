@@ -0,0 +1,29 @@
+package com.ruta.api.util;
+
+/**
+ * A connection upload line that cannot be loaded. The message is the one returned to the client,
+ * e.g. "Invalid time at line 12".
+ */
+public class CsvFormatException extends Exception {
+    private final String problem;
+    private final int lineNumber;
+
+    public CsvFormatException(String problem, int lineNumber) {
+        super(problem + " at line " + lineNumber);
+        this.problem = problem;
+        this.lineNumber = lineNumber;
+    }
+
+    // The same problem reported at another line, e.g. a chunk-local line shifted to its place in the file
+    public CsvFormatException atLine(int lineNumber) {
+        return new CsvFormatException(problem, lineNumber);
+    }
+
+    public String getProblem() {
+        return problem;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+}
@@ -0,0 +1,67 @@
+package com.ruta.api.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for parsing one uploaded CSV into a staging graph.
+ */
+@Name("com.ruta.CsvParse")
+@Label("CSV Parse")
+@Category({"Ruta", "Ingest"})
+@Description("Parsing an uploaded connections CSV, sequentially or in parallel chunks")
+@StackTrace(false)
+public final class CsvParseEvent extends Event {
+
+    @Label("Company")
+    String companyId;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Lines")
+    int lines;
+
+    @Label("Connections")
+    int connections;
+
+    @Label("Parallel")
+    boolean parallel;
+
+    @Label("Accepted")
+    @Description("False when the upload was rejected as invalid")
+    boolean accepted;
+
+    public static CsvParseEvent start(String companyId, long bytes, boolean parallel) {
+        CsvParseEvent event = new CsvParseEvent();
+        event.companyId = companyId;
+        event.bytes = bytes;
+        event.parallel = parallel;
+        event.begin();
+        return event;
+    }
+
+    public void accepted(int lines, int connections) {
+        finish(lines, connections, true);
+    }
+
+    public void rejected() {
+        finish(0, 0, false);
+    }
+
+    private void finish(int lines, int connections, boolean accepted) {
+        end();
+        if (shouldCommit()) {
+            this.lines = lines;
+            this.connections = connections;
+            this.accepted = accepted;
+            commit();
+        }
+    }
+}
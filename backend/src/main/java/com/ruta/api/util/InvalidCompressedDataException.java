@@ -0,0 +1,11 @@
+package com.ruta.api.util;
+
+import java.io.IOException;
+
+// A compressed upload that is corrupt or cut short, as opposed to a failure reading it
+public class InvalidCompressedDataException extends IOException {
+
+    public InvalidCompressedDataException(Throwable cause) {
+        super("Invalid compressed data", cause);
+    }
+}
@@ -0,0 +1,174 @@
+package com.ruta.api.util;
+
+import com.ruta.api.model.Graph;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel ingestion of a connection file on disk. The file is memory-mapped, cut into chunks at line
+ * boundaries and every chunk is parsed by its own {@link ConnectionCsvParser} on the common fork-join pool.
+ * The per-chunk graphs are then merged in file order, so location ids and error reporting come out exactly
+ * as a sequential parse would produce them.
+ */
+public final class MappedCsvIngestor {
+    private static final int MIN_CHUNK_BYTES = 1 << 20;
+    // Chunks are mapped one by one, and a single mapping is limited to 2 GB
+    private static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE - 8;
+    private static final int PROBE_BYTES = 1 << 12;
+
+    private final Path file;
+    private final int parallelism;
+    private final long minChunkBytes;
+    private int lineCount;
+
+    public MappedCsvIngestor(Path file, int parallelism) {
+        this(file, parallelism, MIN_CHUNK_BYTES);
+    }
+
+    MappedCsvIngestor(Path file, int parallelism, long minChunkBytes) {
+        this.file = file;
+        this.parallelism = Math.max(1, parallelism);
+        this.minChunkBytes = Math.max(1, minChunkBytes);
+    }
+
+    /**
+     * Parses the whole file into a new graph. On failure the exception carries the line number within the
+     * whole file of the first invalid line.
+     */
+    public Graph parse() throws IOException, CsvFormatException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel);
+            ChunkResult[] chunks = new ChunkResult[bounds.length - 1];
+            try {
+                IntStream.range(0, chunks.length).parallel()
+                        .forEach(i -> chunks[i] = parseChunk(channel, bounds[i], bounds[i + 1], i == 0));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            Graph graph = chunks.length == 1 && chunks[0].error == null ? chunks[0].graph : new Graph();
+            int linesBefore = 0;
+            for (ChunkResult chunk : chunks) {
+                if (chunk.error != null) {
+                    throw chunk.error.atLine(linesBefore + chunk.error.getLineNumber());
+                }
+                if (chunk.graph != graph) {
+                    graph.addAll(chunk.graph);
+                }
+                linesBefore += chunk.lines;
+            }
+            lineCount = linesBefore;
+            return graph;
+        }
+    }
+
+    // Lines in the file, blank and header lines included; set once parse() succeeded
+    public int lineCount() {
+        return lineCount;
+    }
+
+    private static ChunkResult parseChunk(FileChannel channel, long start, long end, boolean first) {
+        ConnectionCsvParser parser = new ConnectionCsvParser(first);
+        try {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            Graph graph = parser.parse(bytes);
+            return new ChunkResult(graph, parser.lineCount(), null);
+        } catch (CsvFormatException e) {
+            return new ChunkResult(null, parser.lineCount(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Chunk boundaries, each one just past a line terminator. The first chunk always extends past the first
+     * non-blank line, so the header check only ever happens in chunk 0.
+     */
+    private long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long chunkBytes = Math.min(MAX_CHUNK_BYTES, Math.max(minChunkBytes, size / (parallelism * 4L) + 1));
+        long firstChunkMin = firstContentLineEnd(channel, size);
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        for (long start = 0; start < size; ) {
+            long nominal = start + chunkBytes;
+            long end = nominal >= size ? size : nextLineStart(channel, nominal - 1, size);
+            if (start == 0) {
+                end = Math.max(end, firstChunkMin);
+            }
+            if (end - start > MAX_CHUNK_BYTES) {
+                // A single line larger than a mapping cannot be split
+                throw new IOException("Line too long near byte " + start);
+            }
+            bounds.add(end);
+            start = end;
+        }
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // End of the first line with anything but whitespace, i.e. the line the header check looks at
+    private static long firstContentLineEnd(FileChannel channel, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_BYTES);
+        long position = 0;
+        boolean content = false;
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            for (int i = 0; i < read; i++) {
+                int b = probe.get(i) & 0xFF;
+                if (b == '\n' || b == '\r') {
+                    if (content) {
+                        return nextLineStart(channel, position + i, size);
+                    }
+                } else if (b > ' ') {
+                    content = true;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    // Position just past the first line terminator at or after from, treating \r\n as one terminator
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_BYTES);
+        long position = from;
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            for (int i = 0; i < read; i++) {
+                byte b = probe.get(i);
+                if (b == '\n') {
+                    return position + i + 1;
+                }
+                if (b == '\r') {
+                    long after = position + i + 1;
+                    if (after < size && peek(channel, after) == '\n') {
+                        after++;
+                    }
+                    return after;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static byte peek(FileChannel channel, long position) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        channel.read(one, position);
+        return one.get(0);
+    }
+
+    private record ChunkResult(Graph graph, int lines, CsvFormatException error) {
+    }
+}
@@ -0,0 +1,13 @@
+package com.ruta.api.util;
+
+/**
+ * Receives the progress of a {@link ConnectionCsvParser} once per buffer of input, as increments since the
+ * previous call. Called on the parsing thread.
+ */
+@FunctionalInterface
+public interface ParseProgress {
+    ParseProgress NONE = (bytes, lines) -> {
+    };
+
+    void advanced(int bytes, int lines);
+}
@@ -0,0 +1,153 @@
+package com.ruta.api.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads another stream ahead on a virtual thread of its own, so receiving an upload overlaps with parsing it:
+ * while the parser works on one chunk, the next ones are already being read off the network. At most
+ * {@code buffers} chunks of 64 KiB are held at once, however long the stream is.
+ *
+ * <p>Closing stops the read-ahead and waits for a read in progress to return, so the source is never touched
+ * after {@link #close()}. The source itself is left open for its owner.
+ */
+public final class ReadAheadInputStream extends InputStream {
+    private static final int CHUNK_BYTES = 64 * 1024;
+    private static final Chunk END = new Chunk(new byte[0], 0);
+
+    private final InputStream source;
+    private final long maxBytes;
+    // Buffers for the reader to fill, and filled ones for the consumer; together they hold every buffer
+    private final BlockingQueue<byte[]> free;
+    private final BlockingQueue<Chunk> filled;
+    private final Thread reader;
+    private volatile boolean closed;
+    // Written by the reader before it queues END
+    private IOException failure;
+    private Chunk current;
+    private int position;
+
+    private record Chunk(byte[] bytes, int length) {
+    }
+
+    /**
+     * @param maxBytes the stream fails with {@link UploadTooLargeException} once it has more bytes than this
+     */
+    public ReadAheadInputStream(InputStream source, int buffers, long maxBytes) {
+        this.source = source;
+        this.maxBytes = maxBytes;
+        int count = Math.max(1, buffers);
+        this.free = new ArrayBlockingQueue<>(count);
+        // One more slot than buffers, so the end marker always fits
+        this.filled = new ArrayBlockingQueue<>(count + 1);
+        for (int i = 0; i < count; i++) {
+            free.add(new byte[CHUNK_BYTES]);
+        }
+        this.reader = Thread.ofVirtual().name("upload-read-ahead").start(this::readAhead);
+    }
+
+    private void readAhead() {
+        long total = 0;
+        try {
+            while (true) {
+                byte[] buffer = nextFree();
+                if (buffer == null) {
+                    break;
+                }
+                int length = source.read(buffer, 0, buffer.length);
+                if (length < 0) {
+                    break;
+                }
+                total += length;
+                if (total > maxBytes) {
+                    throw new UploadTooLargeException(maxBytes);
+                }
+                filled.add(new Chunk(buffer, length));
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            failure = new IOException("Read-ahead interrupted", e);
+        } catch (RuntimeException e) {
+            // Ending quietly here would pass a truncated upload off as a complete one
+            failure = new IOException("Read-ahead failed", e);
+        } finally {
+            filled.add(END);
+        }
+    }
+
+    // A buffer to fill, or null once the stream is closed
+    private byte[] nextFree() throws InterruptedException {
+        while (!closed) {
+            byte[] buffer = free.poll(50, TimeUnit.MILLISECONDS);
+            if (buffer != null) {
+                return closed ? null : buffer;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (current == null || position == current.length) {
+            if (current == END) {
+                return -1;
+            }
+            if (current != null) {
+                free.add(current.bytes);
+            }
+            current = next();
+            position = 0;
+            if (current == END && failure != null) {
+                throw failure;
+            }
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current.bytes, position, target, offset, count);
+        position += count;
+        return count;
+    }
+
+    private Chunk next() throws IOException {
+        try {
+            return filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for upload data", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        current = END;
+        // The reader notices within one poll of the free buffers, or as soon as a read in progress returns
+        boolean interrupted = false;
+        while (true) {
+            try {
+                reader.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
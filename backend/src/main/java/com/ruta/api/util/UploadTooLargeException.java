@@ -0,0 +1,17 @@
+package com.ruta.api.util;
+
+import java.io.IOException;
+
+// A streamed upload that went past its size limit; whatever was read of it is dropped
+public class UploadTooLargeException extends IOException {
+    private final long maxBytes;
+
+    public UploadTooLargeException(long maxBytes) {
+        super("Upload exceeds " + maxBytes + " bytes");
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,77 @@
+package com.ruta.api.cache;
+
+import com.ruta.api.model.RouteResult;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+class RouteCacheTest {
+
+    @Test
+    void testCountsHitsAndMisses() {
+        RouteCache cache = new RouteCache(1 << 20);
+        RouteKey key = new RouteKey("default", 1, "A", "B");
+
+        assertNull(cache.get(key));
+        cache.put(key, new RouteResult(List.of("A", "B"), 10));
+        RouteResult hit = cache.get(key);
+
+        assertEquals(10, hit.getTotalTime());
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getEntryCount());
+        assertEquals(0.5, stats.getHitRate());
+    }
+
+    @Test
+    void testVersionIsPartOfTheKey() {
+        RouteCache cache = new RouteCache(1 << 20);
+        cache.put(new RouteKey("default", 1, "A", "B"), new RouteResult(List.of("A", "B"), 10));
+
+        assertNull(cache.get(new RouteKey("default", 2, "A", "B")));
+        assertNull(cache.get(new RouteKey("other", 1, "A", "B")));
+    }
+
+    @Test
+    void testStaysWithinWeightBoundAndEvicts() {
+        long maximum = 20_000;
+        RouteCache cache = new RouteCache(maximum);
+        for (int i = 0; i < 1_000; i++) {
+            cache.put(new RouteKey("default", 1, "A" + i, "B"), new RouteResult(List.of("A" + i, "B"), i));
+        }
+
+        CacheStats stats = cache.stats();
+        assertTrue(stats.getWeightedSize() <= maximum);
+        assertTrue(stats.getEvictions() > 0);
+        assertEquals(1_000, stats.getEntryCount() + stats.getEvictions());
+    }
+
+    @Test
+    void testFrequentEntriesSurviveScans() {
+        RouteCache cache = new RouteCache(20_000);
+        RouteKey popular = new RouteKey("default", 1, "HOT", "SPOT");
+        cache.put(popular, new RouteResult(List.of("HOT", "SPOT"), 1));
+        for (int i = 0; i < 5_000; i++) {
+            cache.get(popular);
+            cache.put(new RouteKey("default", 1, "S" + i, "T"), new RouteResult(List.of("S" + i, "T"), i));
+        }
+
+        assertNotNull(cache.get(popular));
+    }
+
+    @Test
+    void testRemoveIfDropsMatchingEntries() {
+        RouteCache cache = new RouteCache(1 << 20);
+        cache.put(new RouteKey("default", 1, "A", "B"), new RouteResult(List.of("A", "B"), 10));
+        cache.put(new RouteKey("default", 2, "A", "B"), new RouteResult(List.of("A", "B"), 12));
+
+        cache.removeIf(key -> key.getGraphVersion() == 1);
+
+        assertNull(cache.get(new RouteKey("default", 1, "A", "B")));
+        assertEquals(12, cache.get(new RouteKey("default", 2, "A", "B")).getTotalTime());
+        assertEquals(0, cache.stats().getWeightedSize() - RouteCache.weigh(
+                new RouteKey("default", 2, "A", "B"), new RouteResult(List.of("A", "B"), 12)));
+    }
+}
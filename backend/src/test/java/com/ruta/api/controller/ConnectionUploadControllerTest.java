@@ -1,6 +1,8 @@
 package com.ruta.api.controller;
 
 import com.ruta.api.service.CompanyGraphService;
+import com.ruta.api.service.UploadJob;
+import com.ruta.api.service.UploadJobService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -9,10 +11,19 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -22,6 +33,9 @@ class ConnectionUploadControllerTest {
     @Mock
     private CompanyGraphService companyGraphService;
 
+    @Mock
+    private UploadJobService uploadJobService;
+
     @InjectMocks
     private ConnectionUploadController controller;
 
@@ -30,7 +44,7 @@ class ConnectionUploadControllerTest {
     @BeforeEach
     void setUp() {
         // Reset any existing data
-        when(companyGraphService.getOrCreateGraph(COMPANY_ID)).thenReturn(new com.ruta.api.model.Graph());
+        lenient().when(companyGraphService.getGraph(COMPANY_ID)).thenReturn(new com.ruta.api.model.Graph().compact());
     }
 
     @Test
@@ -52,8 +66,7 @@ class ConnectionUploadControllerTest {
         assertEquals("Connections uploaded successfully", response.getBody());
         
         // Verify service calls
-        verify(companyGraphService, times(1)).clearGraph(COMPANY_ID);
-        verify(companyGraphService, times(3)).addConnection(eq(COMPANY_ID), any());
+        verify(companyGraphService, times(1)).publishGraph(eq(COMPANY_ID), argThat(graph -> graph.compact().edgeCount() == 3));
     }
 
     @Test
@@ -70,8 +83,7 @@ class ConnectionUploadControllerTest {
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         assertEquals("File is empty", response.getBody());
         
-        verify(companyGraphService, never()).clearGraph(any());
-        verify(companyGraphService, never()).addConnection(any(), any());
+        verify(companyGraphService, never()).publishGraph(any(), any());
     }
 
     @Test
@@ -88,6 +100,8 @@ class ConnectionUploadControllerTest {
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         assertEquals("Invalid format at line 2", response.getBody());
+        // A rejected upload leaves the previous graph in place
+        verify(companyGraphService, never()).publishGraph(any(), any());
     }
 
     @Test
@@ -104,6 +118,8 @@ class ConnectionUploadControllerTest {
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         assertEquals("Invalid time at line 2", response.getBody());
+        // A rejected upload leaves the previous graph in place
+        verify(companyGraphService, never()).publishGraph(any(), any());
     }
 
     @Test
@@ -120,6 +136,8 @@ class ConnectionUploadControllerTest {
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         assertEquals("Invalid data at line 2", response.getBody());
+        // A rejected upload leaves the previous graph in place
+        verify(companyGraphService, never()).publishGraph(any(), any());
     }
 
     @Test
@@ -136,6 +154,8 @@ class ConnectionUploadControllerTest {
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         assertEquals("Invalid data at line 2", response.getBody());
+        // A rejected upload leaves the previous graph in place
+        verify(companyGraphService, never()).publishGraph(any(), any());
     }
 
     @Test
@@ -154,8 +174,7 @@ class ConnectionUploadControllerTest {
         assertEquals("Connections uploaded successfully", response.getBody());
         
         // Verify that header was skipped and only 2 connections were processed
-        verify(companyGraphService, times(1)).clearGraph(COMPANY_ID);
-        verify(companyGraphService, times(2)).addConnection(eq(COMPANY_ID), any());
+        verify(companyGraphService, times(1)).publishGraph(eq(COMPANY_ID), argThat(graph -> graph.compact().edgeCount() == 2));
     }
 
     @Test
@@ -174,8 +193,7 @@ class ConnectionUploadControllerTest {
         assertEquals("Connections uploaded successfully", response.getBody());
         
         // Verify that empty lines were skipped and 3 connections were processed
-        verify(companyGraphService, times(1)).clearGraph(COMPANY_ID);
-        verify(companyGraphService, times(3)).addConnection(eq(COMPANY_ID), any());
+        verify(companyGraphService, times(1)).publishGraph(eq(COMPANY_ID), argThat(graph -> graph.compact().edgeCount() == 3));
     }
 
     @Test
@@ -185,12 +203,169 @@ class ConnectionUploadControllerTest {
         mockGraph.addConnection(new com.ruta.api.model.Connection("A", "B", 10));
         mockGraph.addConnection(new com.ruta.api.model.Connection("B", "C", 15));
         
-        when(companyGraphService.getOrCreateGraph(COMPANY_ID)).thenReturn(mockGraph);
+        when(companyGraphService.getGraph(COMPANY_ID)).thenReturn(mockGraph.compact());
+        MockHttpServletRequest other = new MockHttpServletRequest();
+        other.addHeader("X-Company-Id", "other");
 
-        ResponseEntity<String> response = controller.listConnections();
+        ResponseEntity<String> response = controller.listConnections(null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertTrue(response.getBody().contains("Connections for company default"));
         assertTrue(response.getBody().contains("Graph contains 3 locations"));
+        // A company without a graph has nothing to count
+        assertTrue(controller.listConnections(other).getBody().contains("Graph contains 0 locations"));
+        verify(companyGraphService, never()).getOrCreateGraph(any());
+    }
+
+    @Test
+    void testUploadUsesCompanyFromHeader() {
+        MockMultipartFile file = new MockMultipartFile("file", "acme.csv", "text/csv", "A;B;10\nB;C;15".getBytes());
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-Company-Id", "acme");
+        request.addParameter("companyId", "ignored");
+
+        ResponseEntity<String> response = controller.uploadConnectionsCSV(file, request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(companyGraphService).publishGraph(eq("acme"), argThat(graph -> graph.compact().edgeCount() == 2));
+    }
+
+    @Test
+    void testRejectsInvalidCompanyId() {
+        MockMultipartFile file = new MockMultipartFile("file", "acme.csv", "text/csv", "A;B;10".getBytes());
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addParameter("companyId", "../acme");
+
+        ResponseEntity<String> response = controller.uploadConnectionsCSV(file, request);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Invalid company id", response.getBody());
+        verify(companyGraphService, never()).publishGraph(any(), any());
+    }
+
+    @Test
+    void testAsyncUploadAnswersWithQueuedJob() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "acme.csv", "text/csv", "A;B;10".getBytes());
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-Company-Id", "acme");
+        UploadJob job = mock(UploadJob.class);
+        when(job.getJobId()).thenReturn("job-1");
+        when(uploadJobService.submit(eq("acme"), any())).thenReturn(job);
+
+        ResponseEntity<?> response = controller.uploadConnectionsCSVAsync(file, request);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertSame(job, response.getBody());
+        assertEquals("/api/connections/upload/jobs/job-1", response.getHeaders().getLocation().toString());
+        verify(companyGraphService, never()).publishGraph(any(), any());
+    }
+
+    @Test
+    void testAsyncUploadIsRejectedWhenQueueIsFull() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "acme.csv", "text/csv", "A;B;10".getBytes());
+        when(uploadJobService.submit(eq(COMPANY_ID), any())).thenThrow(new RejectedExecutionException());
+
+        ResponseEntity<?> response = controller.uploadConnectionsCSVAsync(file, null);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+    }
+
+    @Test
+    void testUploadJobIsOnlyVisibleToItsCompany() {
+        UploadJob job = mock(UploadJob.class);
+        when(job.getCompanyId()).thenReturn("acme");
+        when(uploadJobService.getJob("job-1")).thenReturn(job);
+        MockHttpServletRequest acme = new MockHttpServletRequest();
+        acme.addHeader("X-Company-Id", "acme");
+
+        assertSame(job, controller.getUploadJob("job-1", acme).getBody());
+        assertEquals(HttpStatus.NOT_FOUND, controller.getUploadJob("job-1", null).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, controller.getUploadJob("unknown", acme).getStatusCode());
+    }
+
+    @Test
+    void testIngestParsesTheRawBody() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-Company-Id", "acme");
+        request.setContent("loc_start;loc_end;time\nA;B;10\nB;C;15\n".getBytes());
+
+        ResponseEntity<String> response = controller.ingestConnections(request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(companyGraphService).publishGraph(eq("acme"), argThat(graph -> graph.compact().edgeCount() == 2));
+    }
+
+    @Test
+    void testIngestRejectsInvalidAndEmptyBodies() {
+        MockHttpServletRequest invalid = new MockHttpServletRequest();
+        invalid.setContent("A;B;10\nB;C;x\n".getBytes());
+        MockHttpServletRequest empty = new MockHttpServletRequest();
+        empty.setContent(new byte[0]);
+
+        ResponseEntity<String> response = controller.ingestConnections(invalid);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Invalid time at line 2", response.getBody());
+        assertEquals("File is empty", controller.ingestConnections(empty).getBody());
+        verify(companyGraphService, never()).publishGraph(any(), any());
+    }
+
+    @Test
+    void testIngestRejectsBodiesOverTheLimit() {
+        ReflectionTestUtils.setField(controller, "streamMaxBytes", 10L);
+        byte[] csv = "A;B;10\nB;C;15\n".getBytes();
+        MockHttpServletRequest declared = new MockHttpServletRequest();
+        declared.setContent(csv);
+        // Without a declared length the limit is only found while reading
+        MockHttpServletRequest chunked = new MockHttpServletRequest() {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        chunked.setContent(csv);
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, controller.ingestConnections(declared).getStatusCode());
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, controller.ingestConnections(chunked).getStatusCode());
+        verify(companyGraphService, never()).publishGraph(any(), any());
+    }
+
+    @Test
+    void testUploadInflatesGzipFiles() throws Exception {
+        byte[] gzip = gzip("loc_start;loc_end;time\nA;B;10\nB;C;15\n");
+        MockMultipartFile valid = new MockMultipartFile("file", "ok.csv.gz", "application/gzip", gzip);
+        MockMultipartFile invalid = new MockMultipartFile("file", "bad.csv.gz", "application/gzip",
+                gzip("loc_start;loc_end;time\nA;B;10\nB;C;x\n"));
+        MockMultipartFile truncated = new MockMultipartFile("file", "cut.csv.gz", "application/gzip",
+                Arrays.copyOf(gzip, gzip.length - 4));
+        MockMultipartFile empty = new MockMultipartFile("file", "empty.csv.gz", "application/gzip", gzip(""));
+
+        assertEquals(HttpStatus.OK, controller.uploadConnectionsCSV(valid, null).getStatusCode());
+        assertEquals("Invalid time at line 3", controller.uploadConnectionsCSV(invalid, null).getBody());
+        assertEquals("Invalid compressed data", controller.uploadConnectionsCSV(truncated, null).getBody());
+        assertEquals("File is empty", controller.uploadConnectionsCSV(empty, null).getBody());
+        verify(companyGraphService, times(1)).publishGraph(eq(COMPANY_ID), argThat(graph -> graph.compact().edgeCount() == 2));
+    }
+
+    @Test
+    void testIngestHonorsContentEncoding() throws Exception {
+        MockHttpServletRequest gzipped = new MockHttpServletRequest();
+        gzipped.addHeader("Content-Encoding", "gzip");
+        gzipped.setContent(gzip("A;B;10\nB;C;15\n"));
+        MockHttpServletRequest unsupported = new MockHttpServletRequest();
+        unsupported.addHeader("Content-Encoding", "br");
+        unsupported.setContent("A;B;10\n".getBytes());
+
+        assertEquals(HttpStatus.OK, controller.ingestConnections(gzipped).getStatusCode());
+        assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE, controller.ingestConnections(unsupported).getStatusCode());
+        verify(companyGraphService, times(1)).publishGraph(eq(COMPANY_ID), argThat(graph -> graph.compact().edgeCount() == 2));
+    }
+
+    private static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(content.getBytes());
+        }
+        return bytes.toByteArray();
     }
-} 
\ No newline at end of file
+}
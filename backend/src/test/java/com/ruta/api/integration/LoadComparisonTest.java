@@ -0,0 +1,284 @@
+package com.ruta.api.integration;
+
+import com.ruta.api.ApiApplication;
+import com.ruta.api.model.SyntheticGraphs;
+import com.ruta.api.model.SyntheticGraphs.Topology;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load comparison, not part of the regular build: run it with {@code mvn test -Pload}. Starts the application
+ * once with Tomcat's default platform-thread pool and once with {@code spring.threads.virtual.enabled=true},
+ * and drives both with the same closed-loop mix: clients querying random routes on one company's graph, and
+ * clients streaming CSV uploads slowly to other companies, the way uploads from poor connections hold a request
+ * thread while the multipart body trickles in. Reports throughput and latency percentiles of each kind.
+ *
+ * <p>Tunable with {@code -Dload.seconds}, {@code -Dload.warmup-seconds}, {@code -Dload.query-clients},
+ * {@code -Dload.upload-clients}, {@code -Dload.upload-edges}, {@code -Dload.upload-millis},
+ * {@code -Dload.graph-edges} and {@code -Dload.seed}. The report is printed and written to
+ * {@code target/load-report.csv}.
+ */
+@Tag("load")
+class LoadComparisonTest {
+    private static final String QUERY_COMPANY = "load-queries";
+    // Upload clients spread over this many companies, so uploads also replace graphs that are being indexed
+    private static final int UPLOAD_COMPANIES = 8;
+    private static final String BOUNDARY = "load-comparison-boundary";
+    private static final String COLUMNS = "mode,seconds,query_clients,upload_clients,queries,query_rps,"
+            + "query_p50_ms,query_p99_ms,query_max_ms,uploads,upload_rps,upload_p50_ms,upload_p99_ms,errors";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testCompareVirtualAndPlatformRequestThreads() throws Exception {
+        int seconds = Integer.getInteger("load.seconds", 20);
+        int warmupSeconds = Integer.getInteger("load.warmup-seconds", 5);
+        int queryClients = Integer.getInteger("load.query-clients", 32);
+        // More than Tomcat's 200 default request threads, so slow uploads alone can occupy the platform pool
+        int uploadClients = Integer.getInteger("load.upload-clients", 256);
+        int uploadEdges = Integer.getInteger("load.upload-edges", 5_000);
+        int uploadMillis = Integer.getInteger("load.upload-millis", 2_000);
+        int graphEdges = Integer.getInteger("load.graph-edges", 100_000);
+        long seed = Long.getLong("load.seed", 42L);
+
+        Path queryCsv = dir.resolve("queries.csv");
+        SyntheticGraphs.writeCsv(Topology.ROAD, graphEdges, seed, queryCsv);
+        Path uploadCsv = dir.resolve("upload.csv");
+        SyntheticGraphs.writeCsv(Topology.ROAD, uploadEdges, seed + 1, uploadCsv);
+        List<String> locations = new ArrayList<>(SyntheticGraphs.graph(Topology.ROAD, graphEdges, seed).getLocations());
+        locations.sort(null);
+        Workload workload = new Workload(Files.readAllBytes(queryCsv), Files.readAllBytes(uploadCsv), locations,
+                queryClients, uploadClients, uploadMillis, seed);
+
+        List<String> rows = new ArrayList<>();
+        rows.add(COLUMNS);
+        System.out.println(COLUMNS);
+        for (boolean virtualThreads : new boolean[]{false, true}) {
+            String row = measure(virtualThreads, workload, warmupSeconds, seconds);
+            rows.add(row);
+            System.out.println(row);
+        }
+        Files.createDirectories(Path.of("target"));
+        Files.write(Path.of("target", "load-report.csv"), rows);
+        assertEquals(3, rows.size());
+    }
+
+    private String measure(boolean virtualThreads, Workload workload, int warmupSeconds, int seconds) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ApiApplication.class)
+                .properties("server.port=0", "spring.threads.virtual.enabled=" + virtualThreads,
+                        // Per-request INFO lines would make the console the bottleneck of both runs
+                        "logging.level.com.ruta=WARN")
+                .run()) {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            Driver driver = new Driver(URI.create("http://localhost:" + port), workload);
+            driver.upload(QUERY_COMPANY, workload.queryCsv, 0);
+            driver.run(warmupSeconds);
+            Driver.Result result = driver.run(seconds);
+            return String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%.1f,%.1f,%.1f,%.1f,%d,%.1f,%.1f,%.1f,%d",
+                    virtualThreads ? "virtual" : "platform", seconds, workload.queryClients, workload.uploadClients,
+                    result.queries.length, result.queries.length / (double) seconds,
+                    percentile(result.queries, 50), percentile(result.queries, 99),
+                    percentile(result.queries, 100), result.uploads.length, result.uploads.length / (double) seconds,
+                    percentile(result.uploads, 50), percentile(result.uploads, 99), result.errors);
+        }
+    }
+
+    // Milliseconds at the given percentile of nanosecond latencies sorted ascending
+    private static double percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private record Workload(byte[] queryCsv, byte[] uploadCsv, List<String> locations, int queryClients,
+                            int uploadClients, int uploadMillis, long seed) {
+    }
+
+    /**
+     * Closed-loop clients: every client starts its next request as soon as the previous one is answered. They
+     * run on platform threads, so in the virtual-thread run the client does not compete with the server for
+     * the same carriers.
+     */
+    private static final class Driver {
+        private final URI base;
+        private final Workload workload;
+        private final HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        Driver(URI base, Workload workload) {
+            this.base = base;
+            this.workload = workload;
+        }
+
+        record Result(long[] queries, long[] uploads, long errors) {
+        }
+
+        Result run(int seconds) throws InterruptedException {
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            List<LatencyLog> queryLogs = new ArrayList<>();
+            List<LatencyLog> uploadLogs = new ArrayList<>();
+            AtomicLong errors = new AtomicLong();
+            try (ExecutorService clients = Executors.newThreadPerTaskExecutor(Thread.ofPlatform().daemon().factory())) {
+                for (int c = 0; c < workload.queryClients; c++) {
+                    LatencyLog log = new LatencyLog();
+                    queryLogs.add(log);
+                    SplittableRandom random = new SplittableRandom(workload.seed + c);
+                    clients.execute(() -> loop(deadline, log, errors, () -> query(random)));
+                }
+                for (int c = 0; c < workload.uploadClients; c++) {
+                    LatencyLog log = new LatencyLog();
+                    uploadLogs.add(log);
+                    String companyId = "load-upload-" + c % UPLOAD_COMPANIES;
+                    clients.execute(() -> loop(deadline, log, errors,
+                            () -> upload(companyId, workload.uploadCsv, workload.uploadMillis)));
+                }
+            }
+            return new Result(LatencyLog.merge(queryLogs), LatencyLog.merge(uploadLogs), errors.get());
+        }
+
+        private void loop(long deadline, LatencyLog log, AtomicLong errors, Call call) {
+            while (System.nanoTime() < deadline) {
+                long start = System.nanoTime();
+                try {
+                    if (call.run()) {
+                        log.add(System.nanoTime() - start);
+                    } else {
+                        errors.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    errors.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private boolean query(SplittableRandom random) throws IOException, InterruptedException {
+            List<String> locations = workload.locations;
+            String from = locations.get(random.nextInt(locations.size()));
+            String to = locations.get(random.nextInt(locations.size()));
+            HttpRequest request = HttpRequest.newBuilder(base.resolve("/api/routes/shortest?from="
+                            + URLEncoder.encode(from, StandardCharsets.UTF_8) + "&to="
+                            + URLEncoder.encode(to, StandardCharsets.UTF_8)))
+                    .header("X-Company-Id", QUERY_COMPANY)
+                    .timeout(Duration.ofSeconds(60))
+                    .GET().build();
+            int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            return status == 200 || status == 404;
+        }
+
+        // Multipart upload whose body is spread evenly over the given time
+        boolean upload(String companyId, byte[] csv, int millis) throws IOException, InterruptedException {
+            byte[] head = ("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\""
+                    + companyId + ".csv\"\r\nContent-Type: text/csv\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+            HttpRequest request = HttpRequest.newBuilder(base.resolve("/api/connections/upload"))
+                    .header("X-Company-Id", companyId)
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .timeout(Duration.ofSeconds(120))
+                    .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ThrottledInputStream(
+                            new SequenceInputStream(new SequenceInputStream(new ByteArrayInputStream(head),
+                                    new ByteArrayInputStream(csv)), new ByteArrayInputStream(tail)),
+                            head.length + csv.length + tail.length, millis)))
+                    .build();
+            return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        boolean run() throws IOException, InterruptedException;
+    }
+
+    // Latencies of one client, only touched by that client's thread until it is merged
+    private static final class LatencyLog {
+        private long[] nanos = new long[1024];
+        private int size;
+
+        void add(long latency) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = latency;
+        }
+
+        static long[] merge(List<LatencyLog> logs) {
+            long[] all = logs.stream().flatMapToLong(log -> Arrays.stream(log.nanos, 0, log.size)).toArray();
+            Arrays.sort(all);
+            return all;
+        }
+    }
+
+    // Hands out a stream in 16 KiB pieces at a steady rate, so that it takes about the given time
+    private static final class ThrottledInputStream extends InputStream {
+        private static final int PIECE_BYTES = 16 * 1024;
+
+        private final InputStream in;
+        private final long start = System.nanoTime();
+        private final double nanosPerByte;
+        private long read;
+
+        ThrottledInputStream(InputStream in, long length, int millis) {
+            this.in = in;
+            this.nanosPerByte = millis * 1_000_000.0 / Math.max(1, length);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long due = start + (long) (read * nanosPerByte);
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(Duration.ofNanos(wait));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Upload interrupted", e);
+                }
+            }
+            int n = in.read(buffer, offset, Math.min(length, PIECE_BYTES));
+            if (n > 0) {
+                read += n;
+            }
+            return n;
+        }
+    }
+}
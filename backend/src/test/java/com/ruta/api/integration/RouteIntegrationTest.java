@@ -4,6 +4,7 @@ import com.ruta.api.service.CompanyGraphService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
@@ -18,6 +19,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 @AutoConfigureWebMvc
+// Metrics export is off in tests unless asked for; the Prometheus endpoint is under test here
+@AutoConfigureObservability
 class RouteIntegrationTest {
 
     @Autowired
@@ -101,6 +104,53 @@ class RouteIntegrationTest {
                 .andExpect(content().string("No route found between A and B"));
     }
 
+    @Test
+    void testPrometheusEndpointExposesIngestAndRoutingMetrics() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+            "file",
+            "test.csv",
+            "text/csv",
+            "origen;destino;tiempo\nA;B;10\nB;C;15".getBytes()
+        );
+        mockMvc.perform(multipart("/api/connections/upload").file(file))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/routes/shortest").param("from", "A").param("to", "C"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("ingest_rows_total")))
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("routing_query_seconds_bucket")))
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("routing_settled_nodes_count")))
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("graph_locations{company=\"default\"")));
+    }
+
+    @Test
+    void testDebugQueryReturnsSearchStats() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+            "file",
+            "test.csv",
+            "text/csv",
+            "origen;destino;tiempo\nA;B;10\nB;C;15".getBytes()
+        );
+        mockMvc.perform(multipart("/api/connections/upload").file(file))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/routes/shortest").param("from", "A").param("to", "C").param("debug", "true"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Search-Stats", org.hamcrest.Matchers.startsWith("settled=")))
+                .andExpect(jsonPath("$.totalTime").value(25))
+                .andExpect(jsonPath("$.stats.settledNodes").isNumber())
+                .andExpect(jsonPath("$.stats.heapOperations").isNumber());
+        mockMvc.perform(get("/api/routes/shortest").param("from", "C").param("to", "A").param("debug", "true"))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().exists("X-Search-Stats"));
+        mockMvc.perform(get("/api/routes/shortest").param("from", "A").param("to", "C"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Search-Stats"))
+                .andExpect(jsonPath("$.stats").doesNotExist());
+    }
+
     @Test
     void testListConnections() throws Exception {
         // First upload some data
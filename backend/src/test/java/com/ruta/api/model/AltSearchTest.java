@@ -0,0 +1,134 @@
+package com.ruta.api.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+class AltSearchTest {
+
+    @Test
+    void testMatchesReferenceDistancesWithBothSelections() {
+        Random random = new Random(11);
+        for (LandmarkSelection selection : LandmarkSelection.values()) {
+            for (int round = 0; round < 10; round++) {
+                CompactGraph graph = DijkstraSearchTest.randomGraph(random, 60, 200).compact();
+                LandmarkIndex landmarks = LandmarkIndex.build(graph, 4, selection, round);
+                int[][] reference = DijkstraSearchTest.allPairs(graph);
+                for (int s = 0; s < graph.nodeCount(); s++) {
+                    for (int t = 0; t < graph.nodeCount(); t++) {
+                        RouteResult result = AltSearch.shortestRoute(landmarks, s, t);
+                        if (reference[s][t] == Integer.MAX_VALUE) {
+                            assertNull(result);
+                        } else {
+                            assertEquals(reference[s][t], result.getTotalTime(), selection + " " + s + "->" + t);
+                            assertTrue(landmarks.lowerBound(s, t) <= reference[s][t]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testUnreachableTargetIsPrunedByBounds() {
+        Graph graph = new Graph();
+        graph.addConnection(new Connection("A", "B", 10));
+        graph.addConnection(new Connection("B", "C", 10));
+        graph.addConnection(new Connection("D", "E", 10));
+        CompactGraph compact = graph.compact();
+        compact.attachLandmarks(LandmarkIndex.build(compact, 3, LandmarkSelection.FARTHEST, 1));
+
+        assertNull(compact.findRoute("A", "E", RoutingAlgorithm.ALT));
+        assertEquals(List.of("A", "B", "C"), compact.findRoute("A", "C", RoutingAlgorithm.ALT).getRoute());
+    }
+
+    @Test
+    void testFallsBackToDijkstraBeforePreprocessing() {
+        Graph graph = new Graph();
+        graph.addConnection(new Connection("A", "B", 10));
+        graph.addConnection(new Connection("B", "C", 15));
+
+        RouteResult result = graph.findRoute("A", "C", RoutingAlgorithm.ALT);
+
+        assertEquals(25, result.getTotalTime());
+    }
+
+    @Test
+    void testSettlesFewerNodesThanDijkstraOnGrid() {
+        CompactGraph graph = grid(80).compact();
+        graph.attachLandmarks(LandmarkIndex.build(graph, 8, LandmarkSelection.AVOID, 3));
+
+        RouteResult dijkstra = graph.findRoute("10-10", "60-70", RoutingAlgorithm.DIJKSTRA);
+        RouteResult alt = graph.findRoute("10-10", "60-70", RoutingAlgorithm.ALT);
+
+        assertEquals(dijkstra.getTotalTime(), alt.getTotalTime());
+        assertTrue(alt.getSettledNodes() * 2 < dijkstra.getSettledNodes(),
+                alt.getSettledNodes() + " vs " + dijkstra.getSettledNodes());
+    }
+
+    // Every strategy finds the reference distance on the sample network shipped with the repo
+    @Test
+    void testStrategiesAgreeOnLargeTestData() throws IOException {
+        Path csv = Path.of("..", "large-test-data.csv");
+        assumeTrue(Files.exists(csv), "large-test-data.csv not available");
+        Graph graph = new Graph();
+        for (String line : Files.readAllLines(csv)) {
+            String[] parts = line.split(";");
+            if (parts.length == 3 && parts[2].trim().matches("\\d+")) {
+                graph.addConnection(new Connection(parts[0].trim(), parts[1].trim(), Integer.parseInt(parts[2].trim())));
+            }
+        }
+        CompactGraph compact = graph.compact();
+        compact.attachLandmarks(LandmarkIndex.build(compact, 8, LandmarkSelection.FARTHEST, 42));
+        compact.attachHierarchy(ContractionHierarchy.build(compact));
+
+        Random random = new Random(5);
+        int queries = 2_000;
+        int[] sources = new int[queries];
+        int[] targets = new int[queries];
+        for (int i = 0; i < queries; i++) {
+            sources[i] = random.nextInt(compact.nodeCount());
+            targets[i] = random.nextInt(compact.nodeCount());
+        }
+        RouteResult[] reference = new RouteResult[queries];
+        for (int i = 0; i < queries; i++) {
+            reference[i] = DijkstraSearch.shortestRoute(compact, sources[i], targets[i]);
+        }
+        for (RoutingAlgorithm algorithm : List.of(RoutingAlgorithm.DIJKSTRA, RoutingAlgorithm.BIDIRECTIONAL, RoutingAlgorithm.ALT, RoutingAlgorithm.CH)) {
+            for (int i = 0; i < queries; i++) {
+                RouteResult result = compact.findRoute(compact.nameOf(sources[i]), compact.nameOf(targets[i]), algorithm);
+                assertEquals(reference[i] == null, result == null, algorithm + " " + i);
+                if (result != null) {
+                    assertEquals(reference[i].getTotalTime(), result.getTotalTime(), algorithm + " " + i);
+                }
+            }
+        }
+    }
+
+    static Graph grid(int side) {
+        Graph graph = new Graph();
+        Random random = new Random(side);
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                String here = r + "-" + c;
+                if (c + 1 < side) {
+                    int time = 1 + random.nextInt(9);
+                    graph.addConnection(new Connection(here, r + "-" + (c + 1), time));
+                    graph.addConnection(new Connection(r + "-" + (c + 1), here, time));
+                }
+                if (r + 1 < side) {
+                    int time = 1 + random.nextInt(9);
+                    graph.addConnection(new Connection(here, (r + 1) + "-" + c, time));
+                    graph.addConnection(new Connection((r + 1) + "-" + c, here, time));
+                }
+            }
+        }
+        return graph;
+    }
+}
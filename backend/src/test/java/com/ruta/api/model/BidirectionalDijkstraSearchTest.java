@@ -0,0 +1,85 @@
+package com.ruta.api.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+
+class BidirectionalDijkstraSearchTest {
+
+    @Test
+    void testFindsIndirectRoute() {
+        Graph graph = new Graph();
+        graph.addConnection(new Connection("A", "B", 10));
+        graph.addConnection(new Connection("B", "C", 15));
+        graph.addConnection(new Connection("C", "D", 20));
+        graph.addConnection(new Connection("A", "C", 50));
+        graph.addConnection(new Connection("B", "D", 60));
+        graph.addConnection(new Connection("A", "D", 100));
+
+        RouteResult result = graph.findRoute("A", "D", RoutingAlgorithm.BIDIRECTIONAL);
+
+        assertEquals(List.of("A", "B", "C", "D"), result.getRoute());
+        assertEquals(45, result.getTotalTime());
+    }
+
+    @Test
+    void testSameLocationAndNoPath() {
+        Graph graph = new Graph();
+        graph.addConnection(new Connection("A", "B", 10));
+        graph.addConnection(new Connection("C", "D", 15));
+
+        assertEquals(List.of("A"), graph.findRoute("A", "A", RoutingAlgorithm.BIDIRECTIONAL).getRoute());
+        assertNull(graph.findRoute("A", "D", RoutingAlgorithm.BIDIRECTIONAL));
+        assertNull(graph.findRoute("B", "A", RoutingAlgorithm.BIDIRECTIONAL));
+    }
+
+    @Test
+    void testMatchesReferenceDistancesOnRandomGraphs() {
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            CompactGraph graph = DijkstraSearchTest.randomGraph(random, 60, 240).compact();
+            int[][] reference = DijkstraSearchTest.allPairs(graph);
+            for (int s = 0; s < graph.nodeCount(); s++) {
+                for (int t = 0; t < graph.nodeCount(); t++) {
+                    RouteResult result = BidirectionalDijkstraSearch.shortestRoute(graph, s, t);
+                    if (reference[s][t] == Integer.MAX_VALUE) {
+                        assertNull(result);
+                    } else {
+                        assertEquals(reference[s][t], result.getTotalTime());
+                        assertEquals(reference[s][t], DijkstraSearchTest.routeTime(graph, result.getRoute()));
+                        assertEquals(graph.nameOf(s), result.getRoute().get(0));
+                        assertEquals(graph.nameOf(t), result.getRoute().get(result.getRoute().size() - 1));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSettlesFewerNodesThanUnidirectionalOnGrid() {
+        Graph graph = new Graph();
+        int side = 80;
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                String here = r + "-" + c;
+                if (c + 1 < side) {
+                    graph.addConnection(new Connection(here, r + "-" + (c + 1), 1));
+                    graph.addConnection(new Connection(r + "-" + (c + 1), here, 1));
+                }
+                if (r + 1 < side) {
+                    graph.addConnection(new Connection(here, (r + 1) + "-" + c, 1));
+                    graph.addConnection(new Connection((r + 1) + "-" + c, here, 1));
+                }
+            }
+        }
+
+        RouteResult unidirectional = graph.findRoute("30-30", "30-50", RoutingAlgorithm.DIJKSTRA);
+        RouteResult bidirectional = graph.findRoute("30-30", "30-50", RoutingAlgorithm.BIDIRECTIONAL);
+
+        assertEquals(unidirectional.getTotalTime(), bidirectional.getTotalTime());
+        assertTrue(bidirectional.getSettledNodes() < unidirectional.getSettledNodes() * 0.75,
+                bidirectional.getSettledNodes() + " vs " + unidirectional.getSettledNodes());
+    }
+}
@@ -0,0 +1,127 @@
+package com.ruta.api.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+
+class CompactGraphTest {
+
+    @Test
+    void testLocationDictionaryAssignsDenseIds() {
+        LocationDictionary dictionary = new LocationDictionary(2);
+        assertEquals(0, dictionary.intern("A"));
+        assertEquals(1, dictionary.intern("B"));
+        assertEquals(0, dictionary.intern("A"));
+        for (int i = 0; i < 100; i++) {
+            dictionary.intern("L" + i);
+        }
+
+        assertEquals(102, dictionary.size());
+        assertEquals(1, dictionary.idOf("B"));
+        assertEquals("L42", dictionary.nameOf(dictionary.idOf("L42")));
+        assertEquals(-1, dictionary.idOf("Missing"));
+    }
+
+    @Test
+    void testCsrLayoutGroupsEdgesBySource() {
+        Graph graph = new Graph();
+        graph.addConnection(new Connection("B", "C", 15));
+        graph.addConnection(new Connection("A", "B", 10));
+        graph.addConnection(new Connection("A", "C", 50));
+
+        CompactGraph compact = graph.compact();
+
+        assertEquals(3, compact.nodeCount());
+        assertEquals(3, compact.edgeCount());
+        int a = compact.idOf("A");
+        assertEquals(2, compact.edgeEnd(a) - compact.edgeStart(a));
+        assertEquals("B", compact.nameOf(compact.target(compact.edgeStart(a))));
+        assertEquals(50, compact.weightBetween(a, compact.idOf("C")));
+        assertEquals(-1, compact.weightBetween(compact.idOf("C"), a));
+    }
+
+    @Test
+    void testCompactFormIsRebuiltAfterMutation() {
+        Graph graph = new Graph();
+        graph.addConnection(new Connection("A", "B", 10));
+        CompactGraph first = graph.compact();
+        assertSame(first, graph.compact());
+
+        graph.addConnection(new Connection("B", "C", 15));
+        CompactGraph second = graph.compact();
+
+        assertNotSame(first, second);
+        assertEquals(2, first.nodeCount());
+        assertEquals(3, second.nodeCount());
+        assertEquals(List.of("A", "B", "C"), second.findShortestRoute("A", "C"));
+        assertNull(first.findShortestRoute("A", "C"));
+    }
+
+    @Test
+    void testOffHeapCopyAnswersLikeTheHeapGraph() {
+        Graph graph = DijkstraSearchTest.randomGraph(new Random(3), 200, 900);
+        graph.addConnection(new Connection("Ñuñoa", "N0", 7));
+        CompactGraph heap = graph.compact();
+        heap.attachHierarchy(ContractionHierarchy.build(heap));
+        CompactGraph offHeap = heap.toOffHeap();
+
+        assertTrue(offHeap.isOffHeap());
+        assertSame(offHeap, offHeap.toOffHeap());
+        assertNotNull(offHeap.hierarchy());
+        assertTrue(offHeap.offHeapBytes() > 0);
+        assertEquals(heap.idOf("Ñuñoa"), offHeap.idOf("Ñuñoa"));
+        assertEquals(-1, offHeap.idOf("Missing"));
+        for (int u = 0; u < heap.nodeCount(); u++) {
+            assertEquals(heap.nameOf(u), offHeap.nameOf(u));
+            assertEquals(heap.getConnectionsFrom(heap.nameOf(u)), offHeap.getConnectionsFrom(heap.nameOf(u)));
+        }
+        for (RoutingAlgorithm algorithm : List.of(RoutingAlgorithm.CH, RoutingAlgorithm.BIDIRECTIONAL)) {
+            assertEquals(heap.findRoute("Ñuñoa", "N150", algorithm).getRoute(),
+                    offHeap.findRoute("Ñuñoa", "N150", algorithm).getRoute());
+        }
+
+        // Deltas on an off-heap graph stay off-heap, through appends, new locations and rebuilds alike
+        Random random = new Random(11);
+        for (int round = 0; round < 30; round++) {
+            GraphDelta delta = new GraphDelta();
+            for (int i = 0; i < 20; i++) {
+                String from = "N" + random.nextInt(220);
+                String to = "N" + random.nextInt(220);
+                if (random.nextInt(4) == 0) {
+                    delta.delete(from, to);
+                } else {
+                    delta.upsert(from, to, 1 + random.nextInt(80));
+                }
+            }
+            CompactGraph next = offHeap.apply(delta).getGraph();
+            heap = heap.apply(delta).getGraph();
+            assertTrue(next.isOffHeap());
+            offHeap.retire();
+            offHeap = next;
+        }
+        assertArrayEquals(DijkstraSearchTest.allPairs(heap), DijkstraSearchTest.allPairs(offHeap));
+        offHeap.retire();
+    }
+
+    @Test
+    void testOffHeapMemoryIsFreedAfterTheLastReader() {
+        long before = NativeBlock.allocatedBytes();
+        CompactGraph graph = DijkstraSearchTest.randomGraph(new Random(4), 100, 400).compact().toOffHeap();
+        CompactGraph patched = graph.apply(new GraphDelta().upsert("N1", "N2", 3)).getGraph();
+        assertTrue(NativeBlock.allocatedBytes() > before);
+
+        assertTrue(graph.acquire());
+        graph.retire();
+        graph.retire();
+        // The reader and the derived version keep the shared blocks alive
+        assertNotNull(graph.findRoute("N1", "N2"));
+        graph.release();
+        assertFalse(graph.acquire());
+        assertEquals(3, patched.findRoute("N1", "N2").getTotalTime());
+
+        patched.retire();
+        assertEquals(before, NativeBlock.allocatedBytes());
+    }
+}
@@ -0,0 +1,68 @@
+package com.ruta.api.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+
+class ContractionHierarchyTest {
+
+    @Test
+    void testUnpacksShortcutsIntoOriginalRoute() {
+        Graph graph = new Graph();
+        graph.addConnection(new Connection("A", "B", 10));
+        graph.addConnection(new Connection("B", "C", 15));
+        graph.addConnection(new Connection("C", "D", 20));
+        graph.addConnection(new Connection("A", "C", 50));
+        graph.addConnection(new Connection("B", "D", 60));
+        graph.addConnection(new Connection("A", "D", 100));
+        CompactGraph compact = graph.compact();
+        compact.attachHierarchy(ContractionHierarchy.build(compact));
+
+        RouteResult result = compact.findRoute("A", "D", RoutingAlgorithm.CH);
+
+        assertEquals(List.of("A", "B", "C", "D"), result.getRoute());
+        assertEquals(45, result.getTotalTime());
+        assertEquals(List.of("C"), compact.findRoute("C", "C", RoutingAlgorithm.CH).getRoute());
+        assertNull(compact.findRoute("D", "A", RoutingAlgorithm.CH));
+    }
+
+    @Test
+    void testMatchesReferenceDistancesOnRandomGraphs() {
+        Random random = new Random(3);
+        for (int round = 0; round < 20; round++) {
+            CompactGraph graph = DijkstraSearchTest.randomGraph(random, 60, 240).compact();
+            ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+            int[][] reference = DijkstraSearchTest.allPairs(graph);
+            for (int s = 0; s < graph.nodeCount(); s++) {
+                for (int t = 0; t < graph.nodeCount(); t++) {
+                    RouteResult result = hierarchy.shortestRoute(s, t);
+                    if (reference[s][t] == Integer.MAX_VALUE) {
+                        assertNull(result);
+                    } else {
+                        List<String> route = result.getRoute();
+                        assertEquals(reference[s][t], result.getTotalTime());
+                        assertEquals(reference[s][t], DijkstraSearchTest.routeTime(graph, route));
+                        assertEquals(graph.nameOf(s), route.get(0));
+                        assertEquals(graph.nameOf(t), route.get(route.size() - 1));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testAutoSwitchesToHierarchyOnceAttached() {
+        CompactGraph graph = AltSearchTest.grid(60).compact();
+        RouteResult before = graph.findRoute("5-5", "50-55", RoutingAlgorithm.AUTO);
+
+        graph.attachHierarchy(ContractionHierarchy.build(graph));
+        RouteResult after = graph.findRoute("5-5", "50-55", RoutingAlgorithm.AUTO);
+
+        assertEquals(before.getTotalTime(), after.getTotalTime());
+        assertEquals(before.getTotalTime(), DijkstraSearchTest.routeTime(graph, after.getRoute()));
+        assertTrue(after.getSettledNodes() * 5 < before.getSettledNodes(),
+                after.getSettledNodes() + " vs " + before.getSettledNodes());
+    }
+}
@@ -0,0 +1,133 @@
+package com.ruta.api.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+class DijkstraSearchTest {
+
+    @Test
+    void testReturnsRouteWithTotalTime() {
+        Graph graph = new Graph();
+        graph.addConnection(new Connection("A", "B", 10));
+        graph.addConnection(new Connection("B", "C", 15));
+        graph.addConnection(new Connection("C", "D", 20));
+        graph.addConnection(new Connection("A", "D", 100));
+
+        RouteResult result = graph.findRoute("A", "D");
+
+        assertEquals(List.of("A", "B", "C", "D"), result.getRoute());
+        assertEquals(45, result.getTotalTime());
+    }
+
+    @Test
+    void testSameLocationCostsNothing() {
+        Graph graph = new Graph();
+        graph.addConnection(new Connection("A", "B", 10));
+
+        RouteResult result = graph.findRoute("A", "A");
+
+        assertEquals(List.of("A"), result.getRoute());
+        assertEquals(0, result.getTotalTime());
+    }
+
+    @Test
+    void testSearchWorkDescribesTheLastSearchOnTheThread() {
+        Graph graph = new Graph();
+        for (int i = 0; i < 9; i++) {
+            graph.addConnection(new Connection("N" + i, "N" + (i + 1), 1));
+        }
+
+        assertNotNull(graph.findRoute("N0", "N9", RoutingAlgorithm.DIJKSTRA));
+        SearchStats found = SearchWork.snapshot();
+        assertEquals(10, found.getSettledNodes());
+        assertEquals(9, found.getRelaxedEdges());
+        assertEquals(20, found.getHeapOperations()); // every node inserted once and polled once
+        assertTrue(found.getElapsedNanos() > 0);
+
+        assertNull(graph.findRoute("N9", "N0", RoutingAlgorithm.DIJKSTRA));
+        assertEquals(1, SearchWork.settledNodes());
+        assertEquals(0, SearchWork.relaxedEdges());
+        assertEquals(2, SearchWork.heapOperations());
+
+        assertNull(graph.findRoute("N0", "missing", RoutingAlgorithm.DIJKSTRA));
+        assertEquals(0, SearchWork.settledNodes());
+        assertEquals(0, SearchWork.elapsedNanos());
+    }
+
+    @Test
+    void testMatchesReferenceDistancesOnRandomGraphs() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            CompactGraph graph = randomGraph(random, 60, 240).compact();
+            int[][] reference = allPairs(graph);
+            for (int s = 0; s < graph.nodeCount(); s++) {
+                for (int t = 0; t < graph.nodeCount(); t++) {
+                    RouteResult result = DijkstraSearch.shortestRoute(graph, s, t);
+                    if (reference[s][t] == Integer.MAX_VALUE) {
+                        assertNull(result);
+                    } else {
+                        assertEquals(reference[s][t], result.getTotalTime());
+                        assertEquals(reference[s][t], routeTime(graph, result.getRoute()));
+                    }
+                }
+            }
+        }
+    }
+
+    static Graph randomGraph(Random random, int nodes, int edges) {
+        Graph graph = new Graph();
+        for (int i = 0; i < nodes; i++) {
+            graph.addConnection(new Connection("N" + i, "N" + ((i + 1) % nodes), 50 + random.nextInt(50)));
+        }
+        for (int i = 0; i < edges; i++) {
+            graph.addConnection(new Connection("N" + random.nextInt(nodes), "N" + random.nextInt(nodes), random.nextInt(100)));
+        }
+        return graph;
+    }
+
+    // Floyd-Warshall over the minimum parallel edge weights
+    static int[][] allPairs(CompactGraph graph) {
+        int n = graph.nodeCount();
+        int[][] d = new int[n][n];
+        for (int[] row : d) {
+            Arrays.fill(row, Integer.MAX_VALUE);
+        }
+        for (int u = 0; u < n; u++) {
+            d[u][u] = 0;
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                d[u][graph.target(e)] = Math.min(d[u][graph.target(e)], graph.weight(e));
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            for (int i = 0; i < n; i++) {
+                if (d[i][k] == Integer.MAX_VALUE) continue;
+                for (int j = 0; j < n; j++) {
+                    if (d[k][j] != Integer.MAX_VALUE && d[i][k] + d[k][j] < d[i][j]) {
+                        d[i][j] = d[i][k] + d[k][j];
+                    }
+                }
+            }
+        }
+        return d;
+    }
+
+    static int routeTime(CompactGraph graph, List<String> route) {
+        int total = 0;
+        for (int i = 1; i < route.size(); i++) {
+            int u = graph.idOf(route.get(i - 1));
+            int v = graph.idOf(route.get(i));
+            int best = Integer.MAX_VALUE;
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                if (graph.target(e) == v) {
+                    best = Math.min(best, graph.weight(e));
+                }
+            }
+            total += best;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,93 @@
+package com.ruta.api.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+class DistanceMatrixTest {
+
+    @Test
+    void testMatchesReferenceDistances() {
+        Random random = new Random(17);
+        for (int round = 0; round < 20; round++) {
+            CompactGraph graph = DijkstraSearchTest.randomGraph(random, 40, 90).compact();
+            int[][] reference = DijkstraSearchTest.allPairs(graph);
+            int[] origins = randomIds(random, graph.nodeCount(), 15);
+            int[] destinations = randomIds(random, graph.nodeCount(), 25);
+
+            DistanceMatrix matrix = DistanceMatrix.compute(graph, origins, destinations);
+
+            assertEquals(origins.length, matrix.rows());
+            assertEquals(destinations.length, matrix.columns());
+            for (int i = 0; i < origins.length; i++) {
+                for (int j = 0; j < destinations.length; j++) {
+                    int expected = origins[i] < 0 || destinations[j] < 0 || reference[origins[i]][destinations[j]] == Integer.MAX_VALUE
+                            ? DistanceMatrix.UNREACHABLE
+                            : reference[origins[i]][destinations[j]];
+                    assertEquals(expected, matrix.time(i, j), origins[i] + "->" + destinations[j]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testUnknownAndUnreachableLocationsUseSentinel() {
+        Graph graph = new Graph();
+        graph.addConnection(new Connection("A", "B", 10));
+        graph.addConnection(new Connection("C", "D", 5));
+        CompactGraph compact = graph.compact();
+        int a = compact.idOf("A");
+        int b = compact.idOf("B");
+        int d = compact.idOf("D");
+
+        DistanceMatrix matrix = DistanceMatrix.compute(compact, new int[]{a, -1}, new int[]{b, d, a});
+
+        assertEquals(10, matrix.time(0, 0));
+        assertEquals(DistanceMatrix.UNREACHABLE, matrix.time(0, 1));
+        assertEquals(0, matrix.time(0, 2));
+        assertEquals(DistanceMatrix.UNREACHABLE, matrix.time(1, 0));
+    }
+
+    // 1000 x 1000 matrix on a 40 x 40 grid: 1600 locations and 6240 directed connections
+    @Test
+    void testThousandByThousandMatrix() {
+        CompactGraph graph = AltSearchTest.grid(40).compact();
+        Random random = new Random(23);
+        int[] nodes = new int[graph.nodeCount()];
+        for (int v = 0; v < nodes.length; v++) {
+            nodes[v] = v;
+        }
+        for (int i = nodes.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = swap;
+        }
+        int[] origins = Arrays.copyOf(nodes, 1_000);
+        int[] destinations = Arrays.copyOfRange(nodes, nodes.length - 1_000, nodes.length);
+
+        DistanceMatrix.compute(graph, origins, destinations); // JIT warm-up
+        long start = System.nanoTime();
+        DistanceMatrix matrix = DistanceMatrix.compute(graph, origins, destinations);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        for (int sample = 0; sample < 200; sample++) {
+            int i = random.nextInt(origins.length);
+            int j = random.nextInt(destinations.length);
+            RouteResult reference = DijkstraSearch.shortestRoute(graph, origins[i], destinations[j]);
+            assertEquals(reference.getTotalTime(), matrix.time(i, j));
+        }
+        assertTrue(elapsedMillis < 10_000,
+                "1000x1000 matrix over " + graph.nodeCount() + " nodes took " + elapsedMillis + " ms");
+    }
+
+    private static int[] randomIds(Random random, int nodeCount, int count) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = random.nextInt(10) == 0 ? -1 : random.nextInt(nodeCount);
+        }
+        return ids;
+    }
+}
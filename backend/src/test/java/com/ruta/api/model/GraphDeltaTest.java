@@ -0,0 +1,196 @@
+package com.ruta.api.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class GraphDeltaTest {
+
+    @Test
+    void testUpsertReplacesParallelConnectionsAndDeleteRemovesThem() {
+        Graph graph = new Graph();
+        graph.addConnection(new Connection("A", "B", 10));
+        graph.addConnection(new Connection("A", "B", 7));
+        graph.addConnection(new Connection("B", "C", 5));
+        CompactGraph base = graph.compact();
+
+        GraphUpdate update = base.apply(new GraphDelta().upsert("A", "B", 20).delete("B", "C").upsert("C", "D", 1));
+        CompactGraph next = update.getGraph();
+
+        assertEquals(List.of("A>B:20"), strings(next.getConnectionsFrom("A")));
+        assertTrue(next.getConnectionsFrom("B").isEmpty());
+        assertEquals(4, next.nodeCount());
+        assertEquals(2, next.edgeCount());
+        assertTrue(update.isLocationsAdded());
+        assertEquals(3, update.getChanges().size());
+        assertFalse(update.isIncreaseOnly());
+        // The previous version keeps serving its own edges
+        assertEquals(List.of("A", "B", "C"), base.findShortestRoute("A", "C"));
+        assertNull(next.findShortestRoute("A", "C"));
+    }
+
+    @Test
+    void testRandomDeltasMatchRebuiltGraph() {
+        Random random = new Random(31);
+        for (int round = 0; round < 20; round++) {
+            int nodes = 30;
+            List<int[]> reference = new ArrayList<>();
+            Graph graph = new Graph();
+            for (int i = 0; i < 80; i++) {
+                int[] edge = {random.nextInt(nodes), random.nextInt(nodes), random.nextInt(100)};
+                reference.add(edge);
+                graph.addConnection(new Connection("N" + edge[0], "N" + edge[1], edge[2]));
+            }
+            CompactGraph current = graph.compact();
+            List<CompactGraph> versions = new ArrayList<>();
+            List<int[][]> expectedDistances = new ArrayList<>();
+
+            for (int step = 0; step < 40; step++) {
+                GraphDelta delta = new GraphDelta();
+                int operations = 1 + random.nextInt(6);
+                for (int i = 0; i < operations; i++) {
+                    // A few ids past the initial range exercise locations added by deltas
+                    int u = random.nextInt(nodes + 3);
+                    int t = random.nextInt(nodes + 3);
+                    if (random.nextInt(3) == 0) {
+                        delta.delete("N" + u, "N" + t);
+                        reference.removeIf(edge -> edge[0] == u && edge[1] == t);
+                    } else {
+                        int time = random.nextInt(100);
+                        delta.upsert("N" + u, "N" + t, time);
+                        upsert(reference, u, t, time);
+                    }
+                }
+                current = current.apply(delta).getGraph();
+
+                CompactGraph rebuilt = rebuild(reference);
+                assertEquals(rebuilt.edgeCount(), current.edgeCount());
+                for (int u = 0; u < rebuilt.nodeCount(); u++) {
+                    String name = rebuilt.nameOf(u);
+                    assertEquals(strings(rebuilt.getConnectionsFrom(name)), strings(current.getConnectionsFrom(name)), name);
+                }
+                int[][] distances = distancesByName(current, rebuilt);
+                assertArrayEquals(DijkstraSearchTest.allPairs(rebuilt), distances);
+                for (int i = 0; i < 20; i++) {
+                    String from = "N" + random.nextInt(nodes);
+                    String to = "N" + random.nextInt(nodes);
+                    RouteResult forward = current.findRoute(from, to, RoutingAlgorithm.DIJKSTRA);
+                    RouteResult both = current.findRoute(from, to, RoutingAlgorithm.BIDIRECTIONAL);
+                    assertEquals(forward == null ? null : forward.getTotalTime(), both == null ? null : both.getTotalTime());
+                }
+                versions.add(current);
+                expectedDistances.add(DijkstraSearchTest.allPairs(current));
+            }
+            // Older versions are not disturbed by the slots later versions appended
+            for (int v = 0; v < versions.size(); v++) {
+                assertArrayEquals(expectedDistances.get(v), DijkstraSearchTest.allPairs(versions.get(v)));
+            }
+        }
+    }
+
+    @Test
+    void testRouteImpactNeverKeepsAChangedResult() {
+        Random random = new Random(8);
+        for (int round = 0; round < 30; round++) {
+            CompactGraph before = DijkstraSearchTest.randomGraph(random, 40, 100).compact();
+            before.attachLandmarks(LandmarkIndex.build(before, 4, LandmarkSelection.FARTHEST, round));
+            GraphDelta delta = new GraphDelta();
+            for (int i = 0, operations = 1 + random.nextInt(4); i < operations; i++) {
+                String from = "N" + random.nextInt(40);
+                String to = "N" + random.nextInt(40);
+                if (random.nextBoolean()) {
+                    delta.delete(from, to);
+                } else {
+                    delta.upsert(from, to, random.nextInt(150));
+                }
+            }
+            GraphUpdate update = before.apply(delta);
+            RouteImpact impact = new RouteImpact(before, update);
+            CompactGraph after = update.getGraph();
+
+            int kept = 0;
+            for (int s = 0; s < 40; s++) {
+                for (int t = 0; t < 40; t++) {
+                    RouteResult old = before.findRoute("N" + s, "N" + t, RoutingAlgorithm.DIJKSTRA);
+                    if (!impact.mayChange("N" + s, "N" + t, old)) {
+                        kept++;
+                        RouteResult fresh = after.findRoute("N" + s, "N" + t, RoutingAlgorithm.DIJKSTRA);
+                        assertEquals(old == null, fresh == null);
+                        if (old != null) {
+                            assertEquals(fresh.getTotalTime(), old.getTotalTime());
+                            assertEquals(old.getTotalTime(), DijkstraSearchTest.routeTime(after, old.getRoute()));
+                        }
+                    }
+                }
+            }
+            assertTrue(kept > 0);
+        }
+    }
+
+    @Test
+    void testReboundLandmarksStayAdmissibleAfterIncreases() {
+        CompactGraph before = AltSearchTest.grid(20).compact();
+        before.attachLandmarks(LandmarkIndex.build(before, 4, LandmarkSelection.AVOID, 2));
+        GraphUpdate update = before.apply(new GraphDelta().upsert("5-5", "5-6", 90).delete("10-10", "11-10"));
+        assertTrue(update.isIncreaseOnly());
+        CompactGraph after = update.getGraph();
+        after.attachLandmarks(before.landmarks().reboundTo(after));
+
+        for (int i = 0; i < 20; i++) {
+            String from = i + "-" + (19 - i);
+            String to = (19 - i) + "-" + i;
+            assertEquals(after.findRoute(from, to, RoutingAlgorithm.DIJKSTRA).getTotalTime(),
+                    after.findRoute(from, to, RoutingAlgorithm.ALT).getTotalTime());
+        }
+    }
+
+    private static void upsert(List<int[]> reference, int u, int t, int time) {
+        boolean replaced = false;
+        for (int i = 0; i < reference.size(); i++) {
+            int[] edge = reference.get(i);
+            if (edge[0] == u && edge[1] == t) {
+                if (replaced) {
+                    reference.remove(i--);
+                } else {
+                    edge[2] = time;
+                    replaced = true;
+                }
+            }
+        }
+        if (!replaced) {
+            reference.add(new int[]{u, t, time});
+        }
+    }
+
+    private static CompactGraph rebuild(List<int[]> reference) {
+        Graph graph = new Graph();
+        for (int[] edge : reference) {
+            graph.addConnection(new Connection("N" + edge[0], "N" + edge[1], edge[2]));
+        }
+        return graph.compact();
+    }
+
+    // All-pairs distances of graph, indexed by the ids the rebuilt reference gives the same names
+    private static int[][] distancesByName(CompactGraph graph, CompactGraph reference) {
+        int[][] own = DijkstraSearchTest.allPairs(graph);
+        int n = reference.nodeCount();
+        int[][] mapped = new int[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                mapped[i][j] = own[graph.idOf(reference.nameOf(i))][graph.idOf(reference.nameOf(j))];
+            }
+        }
+        return mapped;
+    }
+
+    private static List<String> strings(List<Connection> connections) {
+        List<String> result = new ArrayList<>();
+        for (Connection connection : connections) {
+            result.add(connection.getSource() + ">" + connection.getTarget() + ":" + connection.getTime());
+        }
+        return result;
+    }
+}
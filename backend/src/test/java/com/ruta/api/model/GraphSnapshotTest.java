@@ -0,0 +1,131 @@
+package com.ruta.api.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+class GraphSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRoundTripKeepsGraphAndIndexes() throws IOException {
+        CompactGraph graph = DijkstraSearchTest.randomGraph(new Random(5), 300, 1500).compact();
+        graph.attachLandmarks(LandmarkIndex.build(graph, 6, LandmarkSelection.FARTHEST, 1));
+        graph.attachHierarchy(ContractionHierarchy.build(graph));
+        Path file = dir.resolve("g.graph");
+
+        GraphSnapshot.write(graph, 0, file);
+        CompactGraph loaded = GraphSnapshot.read(file).graph();
+
+        assertNotEquals(graph.version(), loaded.version());
+        assertEquals(graph.nodeCount(), loaded.nodeCount());
+        assertEquals(graph.edgeCount(), loaded.edgeCount());
+        assertNotNull(loaded.landmarks());
+        assertNotNull(loaded.hierarchy());
+        assertEquals(graph.hierarchy().shortcutCount(), loaded.hierarchy().shortcutCount());
+        for (int u = 0; u < graph.nodeCount(); u++) {
+            assertEquals(graph.nameOf(u), loaded.nameOf(u));
+            assertEquals(graph.getConnectionsFrom(graph.nameOf(u)), loaded.getConnectionsFrom(loaded.nameOf(u)));
+        }
+        Random random = new Random(9);
+        for (int i = 0; i < 200; i++) {
+            String from = "N" + random.nextInt(300);
+            String to = "N" + random.nextInt(300);
+            RouteResult expected = graph.findRoute(from, to, RoutingAlgorithm.DIJKSTRA);
+            for (RoutingAlgorithm algorithm : List.of(RoutingAlgorithm.ALT, RoutingAlgorithm.CH, RoutingAlgorithm.BIDIRECTIONAL)) {
+                RouteResult actual = loaded.findRoute(from, to, algorithm);
+                assertEquals(expected == null ? null : expected.getTotalTime(),
+                        actual == null ? null : actual.getTotalTime(), algorithm + " " + from + "->" + to);
+            }
+        }
+        assertEquals(List.of("g.graph"), List.of(dir.toFile().list()));
+    }
+
+    @Test
+    void testDeltaVersionIsWrittenAsPlainGraph() throws IOException {
+        CompactGraph base = AltSearchTest.grid(10).compact();
+        CompactGraph patched = base.apply(new GraphDelta().upsert("0-0", "9-9", 1).delete("5-5", "5-6")
+                .upsert("new", "0-0", 3)).getGraph();
+        Path file = dir.resolve("delta.graph");
+
+        GraphSnapshot.write(patched, 0, file);
+        CompactGraph loaded = GraphSnapshot.read(file).graph();
+
+        assertNull(loaded.landmarks());
+        assertNull(loaded.hierarchy());
+        assertArrayEquals(DijkstraSearchTest.allPairs(patched), DijkstraSearchTest.allPairs(loaded));
+        assertEquals(4, loaded.findRoute("new", "9-9", RoutingAlgorithm.DIJKSTRA).getTotalTime());
+        // The restored arrays keep slack, so a delta on the loaded graph appends in place
+        assertEquals(2, loaded.apply(new GraphDelta().upsert("new", "9-9", 2)).getGraph()
+                .findRoute("new", "9-9", RoutingAlgorithm.DIJKSTRA).getTotalTime());
+    }
+
+    @Test
+    void testTruncatedOrCorruptedFilesAreRejected() throws IOException {
+        CompactGraph graph = AltSearchTest.grid(8).compact();
+        graph.attachHierarchy(ContractionHierarchy.build(graph));
+        Path file = dir.resolve("g.graph");
+        GraphSnapshot.write(graph, 0, file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        for (int length : new int[]{0, 10, GraphSnapshot.HEADER_BYTES, bytes.length / 2, bytes.length - 1}) {
+            Path cut = Files.write(dir.resolve("cut-" + length), Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> GraphSnapshot.read(cut), "length " + length);
+        }
+
+        Random random = new Random(3);
+        for (int i = 0; i < 20; i++) {
+            byte[] flipped = bytes.clone();
+            int position = GraphSnapshot.HEADER_BYTES + random.nextInt(bytes.length - GraphSnapshot.HEADER_BYTES);
+            flipped[position] ^= (byte) (1 << random.nextInt(8));
+            Path damaged = Files.write(dir.resolve("flip-" + i), flipped);
+            assertThrows(IOException.class, () -> GraphSnapshot.read(damaged), "byte " + position);
+        }
+
+        byte[] otherVersion = bytes.clone();
+        otherVersion[8] = (byte) (GraphSnapshot.FORMAT_VERSION + 1);
+        Path future = Files.write(dir.resolve("future"), otherVersion);
+        IOException error = assertThrows(IOException.class, () -> GraphSnapshot.read(future));
+        assertTrue(error.getMessage().startsWith("Unsupported snapshot format"));
+    }
+
+    @Test
+    void testRefusesSnapshotsTooLargeToReadBack() throws IOException {
+        Path file = dir.resolve("g.graph");
+        Graph small = new Graph();
+        small.addConnection(new Connection("A", "B", 4));
+        GraphSnapshot.write(small.compact(), 0, file);
+
+        IOException e = assertThrows(IOException.class,
+                () -> GraphSnapshot.write(AltSearchTest.grid(30).compact(), 0, file, 4096));
+        assertTrue(e.getMessage().startsWith("Graph too large for a snapshot"), e.getMessage());
+        // The previous snapshot is left as it was, with no temporary file beside it
+        assertEquals(2, GraphSnapshot.read(file).graph().nodeCount());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(file), files.toList());
+        }
+    }
+
+    @Test
+    void testRewriteReplacesTheWholeFile() throws IOException {
+        Path file = dir.resolve("g.graph");
+        GraphSnapshot.write(AltSearchTest.grid(30).compact(), 0, file);
+        Graph small = new Graph();
+        small.addConnection(new Connection("A", "B", 4));
+        GraphSnapshot.write(small.compact(), 0, file);
+
+        CompactGraph loaded = GraphSnapshot.read(file).graph();
+        assertEquals(2, loaded.nodeCount());
+        assertEquals(List.of("A", "B"), loaded.findShortestRoute("A", "B"));
+    }
+}
@@ -0,0 +1,164 @@
+package com.ruta.api.model;
+
+import com.ruta.api.model.SyntheticGraphs.Topology;
+import com.ruta.api.util.ConnectionCsvParser;
+import com.ruta.api.util.CsvFormatException;
+import com.ruta.api.util.MappedCsvIngestor;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Scaling harness, not part of the regular build: run it with {@code mvn test -Pscaling}. For every topology
+ * and size it writes a synthetic upload, ingests it the way the upload endpoint would, and records ingest time,
+ * retained heap, process RSS and route query latency percentiles on the resulting {@link Graph}. A size that
+ * runs out of memory is recorded as such and ends that topology's series.
+ *
+ * <p>Tunable with {@code -Dscaling.sizes=10000,100000}, {@code -Dscaling.topologies=ROAD}, {@code -Dscaling.queries}
+ * and {@code -Dscaling.seed}. The report is printed and written to {@code target/scaling-report.csv}.
+ */
+@Tag("scaling")
+class ScalingReportTest {
+    // Same cut-over as the upload endpoint's default upload.parallel.min-bytes
+    private static final long PARALLEL_MIN_BYTES = 8L * 1024 * 1024;
+    // Untimed queries first, so the percentiles are not mostly JIT compilation
+    private static final int WARMUP_QUERIES = 50;
+    private static final String COLUMNS = "topology,edges,locations,csv_bytes,parse_ms,compact_ms,heap_bytes,"
+            + "estimated_bytes,rss_bytes,queries,unreachable,p50_us,p90_us,p99_us,max_us,status";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testReportScaling() throws IOException {
+        int[] sizes = Arrays.stream(System.getProperty("scaling.sizes", "10000,100000,1000000,10000000").split(","))
+                .mapToInt(size -> Integer.parseInt(size.trim())).toArray();
+        List<Topology> topologies = Arrays.stream(
+                        System.getProperty("scaling.topologies", "ROAD,SCALE_FREE,RANDOM_SPARSE").split(","))
+                .map(name -> Topology.valueOf(name.trim().toUpperCase(Locale.ROOT))).toList();
+        int queries = Integer.getInteger("scaling.queries", 200);
+        long seed = Long.getLong("scaling.seed", 42L);
+
+        List<String> rows = new ArrayList<>();
+        rows.add(COLUMNS);
+        System.out.println(COLUMNS);
+        for (Topology topology : topologies) {
+            for (int edges : sizes) {
+                String row = measure(topology, edges, seed, queries);
+                rows.add(row);
+                System.out.println(row);
+                if (!row.endsWith(",ok")) {
+                    break;
+                }
+            }
+        }
+        Files.createDirectories(Path.of("target"));
+        Files.write(Path.of("target", "scaling-report.csv"), rows);
+        assertTrue(rows.size() > 1);
+    }
+
+    private String measure(Topology topology, int edges, long seed, int queries) throws IOException {
+        Path file = dir.resolve(topology + "-" + edges + ".csv");
+        String stage = "generate";
+        try {
+            SyntheticGraphs.writeCsv(topology, edges, seed, file);
+            long csvBytes = Files.size(file);
+            long heapBefore = usedHeapAfterGc();
+
+            stage = "parse";
+            long start = System.nanoTime();
+            Graph graph = ingest(file, csvBytes);
+            long parseNanos = System.nanoTime() - start;
+
+            stage = "compact";
+            start = System.nanoTime();
+            CompactGraph compact = graph.compact();
+            long compactNanos = System.nanoTime() - start;
+            long heapBytes = Math.max(0, usedHeapAfterGc() - heapBefore); // GC noise can outweigh small graphs
+            long rssBytes = residentSetBytes();
+
+            stage = "query";
+            SplittableRandom random = new SplittableRandom(seed);
+            for (int i = 0; i < WARMUP_QUERIES; i++) {
+                graph.findRoute(compact.nameOf(random.nextInt(compact.nodeCount())),
+                        compact.nameOf(random.nextInt(compact.nodeCount())));
+            }
+            long[] micros = new long[queries];
+            int unreachable = 0;
+            for (int i = 0; i < queries; i++) {
+                String from = compact.nameOf(random.nextInt(compact.nodeCount()));
+                String to = compact.nameOf(random.nextInt(compact.nodeCount()));
+                start = System.nanoTime();
+                RouteResult result = graph.findRoute(from, to);
+                micros[i] = (System.nanoTime() - start) / 1000;
+                if (result == null || result.getRoute().isEmpty()) {
+                    unreachable++;
+                }
+            }
+            Arrays.sort(micros);
+            return String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,ok",
+                    topology, edges, compact.nodeCount(), csvBytes, parseNanos / 1_000_000,
+                    compactNanos / 1_000_000, heapBytes, compact.estimatedBytes(), rssBytes, queries, unreachable,
+                    percentile(micros, 50), percentile(micros, 90), percentile(micros, 99),
+                    queries == 0 ? 0 : micros[queries - 1]);
+        } catch (OutOfMemoryError e) {
+            return String.format(Locale.ROOT, "%s,%d,,,,,,,,,,,,,,out of memory during %s", topology, edges, stage);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Upload endpoint's choice of parser for a file of this size
+    private static Graph ingest(Path file, long bytes) throws IOException {
+        try {
+            if (bytes >= PARALLEL_MIN_BYTES) {
+                return new MappedCsvIngestor(file, Runtime.getRuntime().availableProcessors()).parse();
+            }
+            try (InputStream in = Files.newInputStream(file)) {
+                return new ConnectionCsvParser().parse(in);
+            }
+        } catch (CsvFormatException e) {
+            throw new IllegalStateException("Generated CSV rejected: " + e.getMessage(), e);
+        }
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percent / 100.0) - 1)];
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    // VmRSS of this process where /proc has it, -1 elsewhere
+    private static long residentSetBytes() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // not Linux
+        }
+        return -1;
+    }
+}
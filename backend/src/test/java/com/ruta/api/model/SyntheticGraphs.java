@@ -0,0 +1,174 @@
+package com.ruta.api.model;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic networks for tests and the scaling harness. A topology, edge count and seed always
+ * give the same connections in the same order, whether written as an upload CSV or built straight into a
+ * {@link Graph}; both name locations {@code L0}, {@code L1}, ... and register them in order of first appearance,
+ * the way the upload parser does, so the two forms have identical location ids.
+ */
+public final class SyntheticGraphs {
+
+    public enum Topology {
+        // Grid of two-way streets, plus faster one-way shortcuts between nearby crossings
+        ROAD,
+        // Preferential attachment: a few hubs with a great many connections, most locations with a handful
+        SCALE_FREE,
+        // Uniformly random connections, about three per location; not necessarily connected
+        RANDOM_SPARSE
+    }
+
+    private static final String HEADER = "loc_start;loc_end;time";
+
+    @FunctionalInterface
+    private interface EdgeSink {
+        void accept(int source, int target, int time) throws IOException;
+    }
+
+    private SyntheticGraphs() {
+    }
+
+    public static Graph graph(Topology topology, int edges, long seed) {
+        Graph graph = new Graph();
+        LocationIds ids = new LocationIds(graph);
+        try {
+            generate(topology, edges, seed, (source, target, time) -> {
+                int from = ids.of(source);
+                graph.addEdge(from, ids.of(target), time);
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // nothing is written
+        }
+        return graph;
+    }
+
+    // Writes the upload CSV, header line included
+    public static void writeCsv(Topology topology, int edges, long seed, Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.write('\n');
+            StringBuilder line = new StringBuilder(32);
+            generate(topology, edges, seed, (source, target, time) -> {
+                line.setLength(0);
+                line.append('L').append(source).append(";L").append(target).append(';').append(time).append('\n');
+                out.append(line);
+            });
+        }
+    }
+
+    // Graph id of each generated location, registered on first use like the parser does
+    private static final class LocationIds {
+        private final Graph graph;
+        private int[] ids = new int[0];
+
+        LocationIds(Graph graph) {
+            this.graph = graph;
+        }
+
+        int of(int location) {
+            if (location >= ids.length) {
+                int previous = ids.length;
+                ids = Arrays.copyOf(ids, Math.max(location + 1, previous * 2));
+                Arrays.fill(ids, previous, ids.length, -1);
+            }
+            if (ids[location] < 0) {
+                ids[location] = graph.addLocation("L" + location);
+            }
+            return ids[location];
+        }
+    }
+
+    private static void generate(Topology topology, int edges, long seed, EdgeSink sink) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        switch (topology) {
+            case ROAD -> road(edges, random, sink);
+            case SCALE_FREE -> scaleFree(edges, random, sink);
+            case RANDOM_SPARSE -> randomSparse(edges, random, sink);
+        }
+    }
+
+    // Streets take 10-59 per block; shortcuts about 5-14 per block of Manhattan distance and use up the last ~10%
+    private static void road(int edges, SplittableRandom random, EdgeSink sink) throws IOException {
+        int side = Math.max(2, (int) Math.sqrt(edges * 0.9 / 4));
+        int emitted = 0;
+        for (int row = 0; row < side && emitted < edges; row++) {
+            for (int column = 0; column < side && emitted < edges; column++) {
+                int node = row * side + column;
+                if (column + 1 < side) {
+                    emitted += street(node, node + 1, edges - emitted, random, sink);
+                }
+                if (row + 1 < side && emitted < edges) {
+                    emitted += street(node, node + side, edges - emitted, random, sink);
+                }
+            }
+        }
+        while (emitted < edges) {
+            int row = random.nextInt(side);
+            int column = random.nextInt(side);
+            int toRow = Math.clamp(row + random.nextInt(-8, 9), 0, side - 1);
+            int toColumn = Math.clamp(column + random.nextInt(-8, 9), 0, side - 1);
+            int blocks = Math.abs(toRow - row) + Math.abs(toColumn - column);
+            if (blocks == 0) {
+                continue;
+            }
+            sink.accept(row * side + column, toRow * side + toColumn, blocks * random.nextInt(5, 15));
+            emitted++;
+        }
+    }
+
+    private static int street(int a, int b, int budget, SplittableRandom random, EdgeSink sink) throws IOException {
+        sink.accept(a, b, random.nextInt(10, 60));
+        if (budget == 1) {
+            return 1;
+        }
+        sink.accept(b, a, random.nextInt(10, 60));
+        return 2;
+    }
+
+    // Every new location links twice, both ways, to locations picked in proportion to their degree
+    private static void scaleFree(int edges, SplittableRandom random, EdgeSink sink) throws IOException {
+        int[] endpoints = new int[Math.max(edges, 6) + 1];
+        int endpointCount = 0;
+        int emitted = 0;
+        for (int node = 0; node < 3 && emitted < edges; node++) {
+            int next = (node + 1) % 3;
+            sink.accept(node, next, random.nextInt(1, 101));
+            emitted++;
+            if (emitted < edges) {
+                sink.accept(next, node, random.nextInt(1, 101));
+                emitted++;
+            }
+            endpoints[endpointCount++] = node;
+            endpoints[endpointCount++] = next;
+        }
+        for (int node = 3; emitted < edges; node++) {
+            for (int link = 0; link < 2 && emitted < edges; link++) {
+                int target = endpoints[random.nextInt(endpointCount)];
+                sink.accept(node, target, random.nextInt(1, 101));
+                emitted++;
+                if (emitted < edges) {
+                    sink.accept(target, node, random.nextInt(1, 101));
+                    emitted++;
+                }
+                endpoints[endpointCount++] = node;
+                endpoints[endpointCount++] = target;
+            }
+        }
+    }
+
+    private static void randomSparse(int edges, SplittableRandom random, EdgeSink sink) throws IOException {
+        int locations = Math.max(2, edges / 3);
+        for (int i = 0; i < edges; i++) {
+            int source = random.nextInt(locations);
+            int target = random.nextInt(locations - 1);
+            sink.accept(source, target >= source ? target + 1 : target, random.nextInt(1, 1001));
+        }
+    }
+}
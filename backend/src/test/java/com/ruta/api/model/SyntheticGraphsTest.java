@@ -0,0 +1,76 @@
+package com.ruta.api.model;
+
+import com.ruta.api.model.SyntheticGraphs.Topology;
+import com.ruta.api.util.ConnectionCsvParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class SyntheticGraphsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testCsvAndInMemoryFormsAreTheSameGraph() throws Exception {
+        for (Topology topology : Topology.values()) {
+            Path file = dir.resolve(topology + ".csv");
+            SyntheticGraphs.writeCsv(topology, 5000, 7, file);
+            Graph parsed;
+            try (InputStream in = Files.newInputStream(file)) {
+                parsed = new ConnectionCsvParser().parse(in);
+            }
+            assertEquals(adjacency(parsed.compact()), adjacency(SyntheticGraphs.graph(topology, 5000, 7).compact()),
+                    topology.name());
+        }
+    }
+
+    @Test
+    void testSameSeedGivesTheSameGraph() {
+        for (Topology topology : Topology.values()) {
+            List<String> first = adjacency(SyntheticGraphs.graph(topology, 2000, 3).compact());
+            assertEquals(first, adjacency(SyntheticGraphs.graph(topology, 2000, 3).compact()), topology.name());
+            assertNotEquals(first, adjacency(SyntheticGraphs.graph(topology, 2000, 4).compact()), topology.name());
+        }
+    }
+
+    @Test
+    void testProducesExactlyTheRequestedConnections() {
+        for (Topology topology : Topology.values()) {
+            for (int edges : new int[] {1, 2, 5, 17, 1000, 12345}) {
+                assertEquals(edges, SyntheticGraphs.graph(topology, edges, 1).compact().edgeCount(),
+                        topology + " " + edges);
+            }
+        }
+    }
+
+    @Test
+    void testTopologiesHaveTheirShape() {
+        CompactGraph road = SyntheticGraphs.graph(Topology.ROAD, 40000, 5).compact();
+        RouteResult across = road.findRoute("L0", road.nameOf(road.nodeCount() - 1));
+        assertFalse(across.getRoute().isEmpty());
+
+        CompactGraph scaleFree = SyntheticGraphs.graph(Topology.SCALE_FREE, 40000, 5).compact();
+        int maxDegree = 0;
+        for (int u = 0; u < scaleFree.nodeCount(); u++) {
+            maxDegree = Math.max(maxDegree, scaleFree.edgeEnd(u) - scaleFree.edgeStart(u));
+        }
+        assertTrue(maxDegree > 20 * scaleFree.edgeCount() / scaleFree.nodeCount(), "hub degree " + maxDegree);
+    }
+
+    private static List<String> adjacency(CompactGraph graph) {
+        List<String> edges = new ArrayList<>();
+        for (int u = 0; u < graph.nodeCount(); u++) {
+            for (int e = graph.edgeStart(u), end = graph.edgeEnd(u); e < end; e++) {
+                edges.add(graph.nameOf(u) + ">" + graph.nameOf(graph.target(e)) + ":" + graph.weight(e));
+            }
+        }
+        return edges;
+    }
+}
@@ -2,15 +2,37 @@ package com.ruta.api.service;
 
 import com.ruta.api.model.Connection;
 import com.ruta.api.model.Graph;
+import com.ruta.api.model.GraphDelta;
+import com.ruta.api.model.RouteResult;
+import com.ruta.api.model.RoutingAlgorithm;
+import com.ruta.api.model.SearchStats;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 @ExtendWith(MockitoExtension.class)
 class CompanyGraphServiceTest {
@@ -172,4 +194,426 @@ class CompanyGraphServiceTest {
         int totalTime = companyGraphService.calculateRouteTime(COMPANY_ID, route);
         assertEquals(45, totalTime); // 10 + 15 + 20
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testCachedRoutesAreNotServedAfterReload() {
+        companyGraphService.addConnection(COMPANY_ID, new Connection("A", "B", 10));
+        companyGraphService.addConnection(COMPANY_ID, new Connection("B", "C", 15));
+        companyGraphService.commitUpload(COMPANY_ID);
+
+        assertEquals(25, companyGraphService.findRoute(COMPANY_ID, "A", "C").getTotalTime());
+        assertEquals(25, companyGraphService.findRoute(COMPANY_ID, "A", "C").getTotalTime());
+        assertEquals(1, companyGraphService.getRouteCacheStats().getHits());
+
+        companyGraphService.clearGraph(COMPANY_ID);
+        companyGraphService.addConnection(COMPANY_ID, new Connection("A", "C", 5));
+        companyGraphService.commitUpload(COMPANY_ID);
+
+        assertEquals(List.of("A", "C"), companyGraphService.findRoute(COMPANY_ID, "A", "C").getRoute());
+        assertEquals(5, companyGraphService.findRoute(COMPANY_ID, "A", "C").getTotalTime());
+    }
+
+    @Test
+    void testFindRoutesKeepsRequestOrderAndReportsFailuresPerPair() {
+        companyGraphService.addConnection(COMPANY_ID, new Connection("A", "B", 10));
+        companyGraphService.addConnection(COMPANY_ID, new Connection("B", "C", 15));
+        companyGraphService.addConnection(COMPANY_ID, new Connection("C", "D", 20));
+        companyGraphService.commitUpload(COMPANY_ID);
+
+        List<RouteOutcome> outcomes = companyGraphService.findRoutes(COMPANY_ID,
+                List.of("A", "B", "A", "D", "X", "A"),
+                List.of("D", "C", "C", "A", "A", "A"));
+
+        assertEquals(6, outcomes.size());
+        assertEquals(45, outcomes.get(0).getResult().getTotalTime());
+        assertEquals(List.of("B", "C"), outcomes.get(1).getResult().getRoute());
+        assertEquals(25, outcomes.get(2).getResult().getTotalTime());
+        assertFalse(outcomes.get(3).isFound());
+        assertEquals("No route found between D and A", outcomes.get(3).getError());
+        assertFalse(outcomes.get(4).isFound());
+        assertEquals(List.of("A"), outcomes.get(5).getResult().getRoute());
+        assertEquals(0, outcomes.get(5).getResult().getTotalTime());
+    }
+
+    @Test
+    void testDeltaKeepsCachedRoutesItCannotChange() {
+        companyGraphService.addConnection(COMPANY_ID, new Connection("A", "B", 10));
+        companyGraphService.addConnection(COMPANY_ID, new Connection("B", "C", 15));
+        companyGraphService.addConnection(COMPANY_ID, new Connection("C", "D", 20));
+        companyGraphService.addConnection(COMPANY_ID, new Connection("A", "D", 60));
+        companyGraphService.commitUpload(COMPANY_ID);
+        assertEquals(25, companyGraphService.findRoute(COMPANY_ID, "A", "C").getTotalTime());
+        assertEquals(45, companyGraphService.findRoute(COMPANY_ID, "A", "D").getTotalTime());
+
+        // Slowing the unused direct connection cannot change either cached route
+        companyGraphService.applyDelta(COMPANY_ID, new GraphDelta().upsert("A", "D", 70));
+        long hits = companyGraphService.getRouteCacheStats().getHits();
+        assertEquals(25, companyGraphService.findRoute(COMPANY_ID, "A", "C").getTotalTime());
+        assertEquals(45, companyGraphService.findRoute(COMPANY_ID, "A", "D").getTotalTime());
+        assertEquals(hits + 2, companyGraphService.getRouteCacheStats().getHits());
+
+        // Slowing a connection on the cached route forces a fresh search
+        companyGraphService.applyDelta(COMPANY_ID, new GraphDelta().upsert("B", "C", 40).delete("A", "D"));
+        assertEquals(70, companyGraphService.findRoute(COMPANY_ID, "A", "D").getTotalTime());
+        assertEquals(50, companyGraphService.findRoute(COMPANY_ID, "A", "C").getTotalTime());
+    }
+
+    @Test
+    void testPublishedSnapshotIsIsolatedFromStagingGraph() {
+        Graph staged = new Graph();
+        staged.addConnection(new Connection("A", "B", 10));
+        companyGraphService.publishGraph(COMPANY_ID, staged);
+
+        staged.addConnection(new Connection("B", "C", 5));
+
+        assertNull(companyGraphService.findRoute(COMPANY_ID, "A", "C"));
+        assertEquals(2, companyGraphService.getGraph(COMPANY_ID).nodeCount());
+    }
+
+    @Test
+    void testQueriesSeeWholeSnapshotsWhileUploadsArePublished() throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        companyGraphService.publishGraph(COMPANY_ID, chain(0));
+
+        Thread[] readers = new Thread[4];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                while (running.get() && failure.get() == null) {
+                    try {
+                        RouteResult result = companyGraphService.findRoute(COMPANY_ID, "N0", "N49");
+                        // Every hop of one upload has the same time, so a mixed graph shows up as an odd total
+                        if (result == null || result.getTotalTime() % 49 != 0) {
+                            failure.set("inconsistent route: " + (result == null ? null : result.getTotalTime()));
+                        }
+                    } catch (RuntimeException e) {
+                        failure.set(e.toString());
+                    }
+                }
+            });
+            readers[r].start();
+        }
+        for (int upload = 1; upload <= 200; upload++) {
+            companyGraphService.publishGraph(COMPANY_ID, chain(upload));
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(49 * 201, companyGraphService.findRoute(COMPANY_ID, "N0", "N49").getTotalTime());
+    }
+
+    @Test
+    void testOffHeapGraphsServeQueriesWhileVersionsAreReleased() throws InterruptedException {
+        CompanyGraphService service = new CompanyGraphService();
+        ReflectionTestUtils.setField(service, "offHeapGraphs", true);
+        ReflectionTestUtils.setField(service, "cacheMaxBytes", 0L);
+        ReflectionTestUtils.setField(service, "coalescingEnabled", false);
+        service.init();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        service.publishGraph(COMPANY_ID, chain(0));
+
+        Thread[] readers = new Thread[4];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                while (running.get() && failure.get() == null) {
+                    try {
+                        RouteResult result = service.findRoute(COMPANY_ID, "N0", "N49");
+                        if (result == null || result.getRoute().size() != 50) {
+                            failure.set("unexpected route: " + (result == null ? null : result.getRoute()));
+                        }
+                    } catch (RuntimeException e) {
+                        failure.set(e.toString());
+                    }
+                }
+            });
+            readers[r].start();
+        }
+        try {
+            for (int upload = 1; upload <= 100; upload++) {
+                service.publishGraph(COMPANY_ID, chain(upload));
+                service.applyDelta(COMPANY_ID, new GraphDelta().upsert("N10", "N11", 1));
+            }
+        } finally {
+            running.set(false);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+
+        try {
+            assertNull(failure.get());
+            assertTrue(service.getGraph(COMPANY_ID).isOffHeap());
+            assertEquals(48 * 101 + 1, service.findRoute(COMPANY_ID, "N0", "N49").getTotalTime());
+            assertTrue(service.getMemoryStats().getOffHeapBytes() > 0);
+            assertEquals(49, service.getOrCreateGraph(COMPANY_ID).compact().edgeCount());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void testGraphsSurviveRestartThroughSnapshots(@TempDir Path storage) throws Exception {
+        // Any logged change is enough to fold the log into a snapshot
+        CompanyGraphService first = serviceWithStorage(storage, 1);
+        first.publishGraph(COMPANY_ID, chain(3));
+        Path snapshot = awaitSingleFile(storage);
+        first.shutdown();
+
+        // Leftovers of an interrupted write and a damaged snapshot must not stop the next start
+        Files.write(storage.resolve("leftover.graph.tmp"), new byte[]{1, 2, 3});
+        Files.write(storage.resolve(Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("broken".getBytes(StandardCharsets.UTF_8)) + ".graph"), new byte[40]);
+
+        CompanyGraphService second = serviceWithStorage(storage, 1);
+        try {
+            assertEquals(4 * 49, second.findRoute(COMPANY_ID, "N0", "N49").getTotalTime());
+            assertNotNull(second.getGraph(COMPANY_ID).hierarchy());
+            assertNull(second.getGraph("broken"));
+            assertFalse(Files.exists(storage.resolve("leftover.graph.tmp")));
+
+            second.clearGraph(COMPANY_ID);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (Files.exists(snapshot) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse(Files.exists(snapshot));
+        } finally {
+            second.shutdown();
+        }
+    }
+
+    @Test
+    void testChangesAreReplayedFromTheLog(@TempDir Path storage) throws Exception {
+        CompanyGraphService first = serviceWithStorage(storage, Long.MAX_VALUE);
+        first.publishGraph(COMPANY_ID, chain(1));
+        first.applyDelta(COMPANY_ID, new GraphDelta().upsert("N10", "N11", 50).upsert("N0", "N49", 90)
+                .delete("N20", "N21"));
+        first.addConnection(COMPANY_ID, new Connection("N20", "N21", 7));
+        first.addConnection("other", new Connection("A", "B", 1));
+        first.clearGraph("other");
+        first.addConnection("third", new Connection("X", "Y", 4));
+        List<Connection> expected = first.getGraph(COMPANY_ID).getConnectionsFrom("N20");
+        first.shutdown();
+
+        CompanyGraphService second = serviceWithStorage(storage, Long.MAX_VALUE);
+        try {
+            assertEquals(90, second.findRoute(COMPANY_ID, "N0", "N49").getTotalTime());
+            assertEquals(50, second.getGraph(COMPANY_ID).getConnection("N10", "N11").getTime());
+            assertEquals(expected, second.getGraph(COMPANY_ID).getConnectionsFrom("N20"));
+            assertNull(second.getGraph("other"));
+            assertEquals(List.of("X", "Y"), second.findShortestRoute("third", "X", "Y"));
+            second.applyDelta("third", new GraphDelta().upsert("Y", "Z", 2));
+        } finally {
+            second.shutdown();
+        }
+
+        // Records logged after a restart continue the same sequence
+        CompanyGraphService third = serviceWithStorage(storage, Long.MAX_VALUE);
+        try {
+            assertEquals(6, third.findRoute("third", "X", "Z").getTotalTime());
+            assertEquals(90, third.findRoute(COMPANY_ID, "N0", "N49").getTotalTime());
+        } finally {
+            third.shutdown();
+        }
+    }
+
+    @Test
+    void testIdleGraphsAreSpilledAndReloadedOnQuery(@TempDir Path spill) throws Exception {
+        CompanyGraphService service = new CompanyGraphService();
+        ReflectionTestUtils.setField(service, "memoryBudgetBytes", 1L);
+        ReflectionTestUtils.setField(service, "spillDir", spill.toString());
+        service.init();
+        try {
+            service.publishGraph("a", chain(1));
+            service.publishGraph("b", chain(2));
+            service.publishGraph("c", chain(3));
+            // Only the most recently used graph stays on the heap when even one exceeds the budget
+            awaitSpilled(service, 2);
+            assertTrue(service.getMemoryStats().getTenants().stream()
+                    .filter(GraphMemoryStats.TenantMemory::isResident)
+                    .allMatch(tenant -> tenant.getCompanyId().equals("c")));
+
+            assertEquals(2 * 49, service.findRoute("a", "N0", "N49").getTotalTime());
+            assertEquals(1, service.getMemoryStats().getReloads());
+            awaitSpilled(service, 2);
+            assertNull(service.findRoute("unknown", "N0", "N1"));
+
+            // Changes to a spilled graph apply on top of it
+            service.applyDelta("b", new GraphDelta().upsert("N0", "N49", 5));
+            assertEquals(5, service.findRoute("b", "N0", "N49").getTotalTime());
+            assertEquals(3 * 10, service.findRoute("b", "N0", "N10").getTotalTime());
+
+            service.clearGraph("a");
+            awaitSpilled(service, 1);
+            GraphMemoryStats stats = service.getMemoryStats();
+            assertEquals(2, stats.getTenants().size());
+            assertTrue(stats.getEvictions() >= 3);
+            assertTrue(stats.getMaxReloadMicros() >= stats.getLastReloadMicros());
+            assertTrue(stats.getTenants().stream().allMatch(tenant -> tenant.getEstimatedBytes() > 0));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private static void awaitSpilled(CompanyGraphService service, int spilled) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (service.getMemoryStats().getSpilledGraphs() != spilled && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(spilled, service.getMemoryStats().getSpilledGraphs());
+    }
+
+    private static CompanyGraphService serviceWithStorage(Path storage, long compactBytes) {
+        CompanyGraphService service = new CompanyGraphService();
+        ReflectionTestUtils.setField(service, "storageDir", storage.toString());
+        ReflectionTestUtils.setField(service, "walCompactBytes", compactBytes);
+        service.init();
+        return service;
+    }
+
+    // Waits for the background snapshot write, which lands with a single rename
+    private static Path awaitSingleFile(Path directory) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            try (Stream<Path> files = Files.list(directory)) {
+                List<Path> snapshots = files.filter(file -> file.toString().endsWith(".graph")).toList();
+                if (!snapshots.isEmpty()) {
+                    return snapshots.get(0);
+                }
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("No snapshot written to " + directory);
+    }
+
+    @Test
+    void testStatsQueriesRunTheirOwnSearch() {
+        companyGraphService.publishGraph(COMPANY_ID, chain(0));
+        assertNotNull(companyGraphService.findRoute(COMPANY_ID, "N0", "N49"));
+
+        // The route is cached by now, yet a stats query searches again and reports it
+        RouteResult traced = companyGraphService.findRouteWithStats(COMPANY_ID, "N0", "N49", RoutingAlgorithm.AUTO);
+        assertEquals(49, traced.getTotalTime());
+        SearchStats stats = traced.getStats();
+        assertTrue(stats.getSettledNodes() > 0);
+        assertTrue(stats.getRelaxedEdges() > 0);
+        assertTrue(stats.getHeapOperations() >= stats.getSettledNodes());
+        assertNull(companyGraphService.findRoute(COMPANY_ID, "N0", "N49").getStats());
+
+        RouteResult unreachable = companyGraphService.findRouteWithStats(COMPANY_ID, "N49", "N0", RoutingAlgorithm.DIJKSTRA);
+        assertTrue(unreachable.getRoute().isEmpty());
+        assertEquals(1, unreachable.getStats().getSettledNodes());
+
+        RouteResult noGraph = companyGraphService.findRouteWithStats("other", "N0", "N1", RoutingAlgorithm.AUTO);
+        assertTrue(noGraph.getRoute().isEmpty());
+        assertEquals(0, noGraph.getStats().getSettledNodes());
+    }
+
+    @Test
+    void testQueriesAndBuildsAreRecordedAsFlightRecorderEvents(@TempDir Path dir) throws Exception {
+        Path dump = dir.resolve("routing.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.ruta.RouteQuery").withoutThreshold();
+            recording.enable("com.ruta.GraphBuild").withoutThreshold();
+            recording.start();
+            companyGraphService.publishGraph(COMPANY_ID, chain(0));
+            companyGraphService.findRoute(COMPANY_ID, "N0", "N49");
+            companyGraphService.findRoute(COMPANY_ID, "N0", "N49");
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        List<RecordedEvent> queries = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.ruta.RouteQuery")).toList();
+        assertEquals(2, queries.size());
+        assertEquals(COMPANY_ID, queries.get(0).getString("companyId"));
+        assertTrue(queries.get(0).getBoolean("found"));
+        assertTrue(queries.get(0).getBoolean("searched"));
+        assertTrue(queries.get(0).getInt("settledNodes") > 0);
+        assertFalse(queries.get(1).getBoolean("searched")); // answered from the cache
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("com.ruta.GraphBuild")
+                && e.getString("stage").equals("compact") && e.getInt("locations") == 50));
+    }
+
+    @Test
+    void testVirtualThreadCallersShareScratchWithoutPinning(@TempDir Path dir) throws Exception {
+        CompanyGraphService service = new CompanyGraphService();
+        ReflectionTestUtils.setField(service, "storageDir", dir.resolve("storage").toString());
+        ReflectionTestUtils.setField(service, "cacheMaxBytes", 0L);
+        ReflectionTestUtils.setField(service, "coalescingEnabled", false);
+        service.init();
+        // Plain console logging locks its handler; under Spring it goes through SLF4J instead
+        Logger serviceLogger = Logger.getLogger("com.ruta.api.service");
+        Level level = serviceLogger.getLevel();
+        serviceLogger.setLevel(Level.WARNING);
+        Path dump = dir.resolve("pinning.jfr");
+        List<String> failures = new CopyOnWriteArrayList<>();
+        try {
+            // One of each call first, so class loading does not show up as pinning
+            service.publishGraph(COMPANY_ID, chain(0));
+            service.applyDelta(COMPANY_ID, new GraphDelta().upsert("N0", "N1", 1));
+            service.findRoutes(COMPANY_ID, List.of("N0"), List.of("N49"));
+            service.findRouteWithStats(COMPANY_ID, "N0", "N49", RoutingAlgorithm.DIJKSTRA);
+            try (Recording recording = new Recording()) {
+                recording.enable("jdk.VirtualThreadPinned").withoutThreshold().withStackTrace();
+                recording.start();
+                try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+                    for (int i = 0; i < 400; i++) {
+                        int client = i;
+                        clients.execute(() -> {
+                            try {
+                                mixedCall(service, client, failures);
+                            } catch (RuntimeException e) {
+                                failures.add(e.toString());
+                            }
+                        });
+                    }
+                }
+                recording.stop();
+                recording.dump(dump);
+            }
+        } finally {
+            serviceLogger.setLevel(level);
+            service.shutdown();
+        }
+
+        assertEquals(List.of(), failures);
+        assertEquals(List.of(), RecordingFile.readAllEvents(dump).stream()
+                .filter(e -> e.getEventType().getName().equals("jdk.VirtualThreadPinned"))
+                .map(RecordedEvent::toString).toList());
+    }
+
+    private static void mixedCall(CompanyGraphService service, int client, List<String> failures) {
+        switch (client % 4) {
+            case 0 -> service.publishGraph("upload-" + client % 8, chain(client));
+            case 1 -> service.applyDelta(COMPANY_ID, new GraphDelta().upsert("N0", "N1", client));
+            case 2 -> {
+                // Pooled search spaces still leave the work of this thread's own search behind
+                RouteResult result = service.findRouteWithStats(COMPANY_ID, "N0", "N49", RoutingAlgorithm.DIJKSTRA);
+                if (result.getStats().getSettledNodes() != 50) {
+                    failures.add("settled " + result.getStats().getSettledNodes() + " of 50 locations");
+                }
+            }
+            default -> {
+                List<RouteOutcome> outcomes = service.findRoutes(COMPANY_ID, List.of("N0", "N10", "N0"),
+                        List.of("N49", "N20", "N10"));
+                if (!outcomes.stream().allMatch(RouteOutcome::isFound)) {
+                    failures.add("batch route missing");
+                }
+            }
+        }
+    }
+
+    private static Graph chain(int upload) {
+        Graph graph = new Graph();
+        for (int i = 0; i + 1 < 50; i++) {
+            graph.addConnection(new Connection("N" + i, "N" + (i + 1), upload + 1));
+        }
+        return graph;
+    }
+}
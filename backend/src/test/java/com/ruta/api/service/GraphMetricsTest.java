@@ -0,0 +1,76 @@
+package com.ruta.api.service;
+
+import com.ruta.api.model.Graph;
+import com.ruta.api.model.RoutingAlgorithm;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+
+class GraphMetricsTest {
+
+    @Test
+    void testServiceRecordsQueriesBuildsAndGraphSizes() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        CompanyGraphService service = new CompanyGraphService();
+        ReflectionTestUtils.setField(service, "metrics", new GraphMetrics(registry));
+        ReflectionTestUtils.setField(service, "cacheMaxBytes", 0L);
+        ReflectionTestUtils.setField(service, "coalescingEnabled", false);
+        service.init();
+        try {
+            Graph graph = new Graph();
+            for (int i = 0; i < 9; i++) {
+                graph.addEdge(graph.addLocation("N" + i), graph.addLocation("N" + (i + 1)), 1);
+            }
+            service.publishGraph("acme", graph);
+
+            assertNotNull(service.findRoute("acme", "N0", "N9"));
+            assertNull(service.findRoute("acme", "N9", "N0"));
+            assertNull(service.findRoute("acme", "N0", "missing", RoutingAlgorithm.DIJKSTRA));
+
+            assertEquals(2, registry.get("routing.query").tag("algorithm", "auto").timer().count());
+            assertEquals(1, registry.get("routing.query").tag("algorithm", "dijkstra").timer().count());
+            assertEquals(2, registry.get("routing.unreachable").counter().count());
+            assertEquals(3, registry.get("routing.settled.nodes").summary().count());
+            assertTrue(registry.get("routing.relaxed.edges").summary().totalAmount() >= 9);
+            assertEquals(1, registry.get("graph.build").tag("stage", "compact").timer().count());
+            assertEquals(10, registry.get("graph.locations").tag("company", "acme").gauge().value());
+            assertEquals(9, registry.get("graph.connections").tag("company", "acme").gauge().value());
+
+            service.clearGraph("acme");
+            assertNull(registry.find("graph.locations").tag("company", "acme").gauge());
+            assertNull(registry.find("graph.connections").tag("company", "acme").gauge());
+            assertNull(registry.find("graph.estimated.bytes").tag("company", "acme").gauge());
+
+            service.publishGraph("acme", graph);
+            assertEquals(10, registry.get("graph.locations").tag("company", "acme").gauge().value());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void testRecordingAQueryDoesNotAllocate() {
+        GraphMetrics metrics = new GraphMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        for (int round = 0; ; round++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 100_000; i++) {
+                metrics.recordQuery(RoutingAlgorithm.AUTO, 1_000 + i, (i & 7) != 0);
+                metrics.recordSearch(i & 1023, i & 4095);
+            }
+            long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+            // The first rounds pay for class loading and JIT; steady state must not allocate per query
+            if (allocated < 4096 || round == 20) {
+                assertTrue(allocated < 4096, allocated + " bytes for 100000 queries");
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.ruta.api.service;
+
+import com.ruta.api.model.Connection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+class UploadJobServiceTest {
+
+    private static final String COMPANY_ID = "acme";
+
+    private final CompanyGraphService graphs = new CompanyGraphService();
+    private UploadJobService uploads;
+
+    @AfterEach
+    void tearDown() {
+        if (uploads != null) {
+            uploads.shutdown();
+        }
+        graphs.shutdown();
+    }
+
+    @Test
+    void testJobPublishesGraphAndReportsProgress() throws Exception {
+        uploads = service(graphs, 1, 4, 100);
+        String csv = "loc_start;loc_end;time\nA;B;5\n\nB;C;7\n";
+
+        UploadJob job = await(uploads.submit(COMPANY_ID, csv(csv)));
+
+        assertEquals(UploadJob.Phase.SUCCEEDED, job.getPhase());
+        assertEquals(csv.length(), job.getBytesTotal());
+        assertEquals(job.getBytesTotal(), job.getBytesRead());
+        assertEquals(4, job.getRowsParsed());
+        assertEquals(Integer.valueOf(2), job.getConnections());
+        assertNull(job.getError());
+        assertSame(job, uploads.getJob(job.getJobId()));
+        assertEquals(List.of("A", "B", "C"), graphs.findShortestRoute(COMPANY_ID, "A", "C"));
+    }
+
+    @Test
+    void testInvalidLineFailsJobAndKeepsPreviousGraph() throws Exception {
+        uploads = service(graphs, 1, 4, 100);
+        graphs.addConnection(COMPANY_ID, new Connection("X", "Y", 3));
+
+        UploadJob job = await(uploads.submit(COMPANY_ID, csv("A;B;5\nB;C;7\nC;D;soon\nD;E;1")));
+
+        assertEquals(UploadJob.Phase.FAILED, job.getPhase());
+        assertEquals("Invalid time", job.getError());
+        assertEquals(Integer.valueOf(3), job.getErrorLine());
+        assertNull(job.getConnections());
+        assertEquals(3, graphs.findRoute(COMPANY_ID, "X", "Y").getTotalTime());
+        assertNull(graphs.findRoute(COMPANY_ID, "A", "B"));
+    }
+
+    @Test
+    void testGzipJobIsSpooledCompressedAndReportsLinesOfThePlainFile() throws Exception {
+        uploads = service(graphs, 1, 4, 100);
+        byte[] gzip = gzip("loc_start;loc_end;time\n" + "A;B;5\nB;C;7\n".repeat(1000) + "C;D;soon\n");
+
+        UploadJob job = await(uploads.submit(COMPANY_ID, new ByteArrayInputStream(gzip)));
+
+        assertEquals(UploadJob.Phase.FAILED, job.getPhase());
+        assertEquals("Invalid time", job.getError());
+        assertEquals(Integer.valueOf(2002), job.getErrorLine());
+        assertEquals(gzip.length, job.getBytesTotal());
+        assertTrue(job.getBytesRead() <= job.getBytesTotal());
+    }
+
+    @Test
+    void testFullQueueRejectsJobsAndOldStatusesAreDropped() throws Exception {
+        CompanyGraphService blocked = mock(CompanyGraphService.class);
+        CountDownLatch publishing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            publishing.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        }).when(blocked).publishGraph(eq(COMPANY_ID), any());
+        uploads = service(blocked, 1, 1, 1);
+
+        UploadJob running = uploads.submit(COMPANY_ID, csv("A;B;1"));
+        assertTrue(publishing.await(10, TimeUnit.SECONDS));
+        assertEquals(UploadJob.Phase.PUBLISHING, running.getPhase());
+        UploadJob queued = uploads.submit(COMPANY_ID, csv("A;B;2"));
+        assertEquals(UploadJob.Phase.QUEUED, queued.getPhase());
+        assertThrows(RejectedExecutionException.class, () -> uploads.submit(COMPANY_ID, csv("A;B;3")));
+
+        release.countDown();
+        await(queued);
+        // Only the most recent finished job is kept; it is dropped right after the next one finishes
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (uploads.getJob(running.getJobId()) != null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNull(uploads.getJob(running.getJobId()));
+        assertSame(queued, uploads.getJob(queued.getJobId()));
+        verify(blocked, times(2)).publishGraph(eq(COMPANY_ID), any());
+    }
+
+    private static UploadJobService service(CompanyGraphService graphs, int threads, int queueCapacity,
+                                            int retainedJobs) {
+        UploadJobService service = new UploadJobService();
+        ReflectionTestUtils.setField(service, "companyGraphService", graphs);
+        ReflectionTestUtils.setField(service, "threads", threads);
+        ReflectionTestUtils.setField(service, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(service, "retainedJobs", retainedJobs);
+        service.init();
+        return service;
+    }
+
+    private static InputStream csv(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static UploadJob await(UploadJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!job.isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(job.isFinished(), "job still " + job.getPhase());
+        return job;
+    }
+}
@@ -0,0 +1,118 @@
+package com.ruta.api.util;
+
+import com.ruta.api.model.Graph;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedUploadsTest {
+
+    private static final String CSV = "loc_start;loc_end;time\nA;B;10\n\nB;C;15\n";
+
+    @Test
+    void testInflatesGzipAndZlibRecognizedByTheirFirstBytes() throws Exception {
+        for (byte[] body : new byte[][]{gzip(CSV), zlib(CSV), CSV.getBytes(StandardCharsets.UTF_8)}) {
+            Graph graph = parse(body, null);
+
+            assertEquals(25, graph.compact().findRoute("A", "C").getTotalTime());
+        }
+    }
+
+    @Test
+    void testContentEncodingCoversBareDeflate() throws Exception {
+        assertEquals(25, parse(deflate(CSV), "deflate").compact().findRoute("A", "C").getTotalTime());
+        assertEquals(25, parse(gzip(CSV), " GZIP ").compact().findRoute("A", "C").getTotalTime());
+        assertTrue(CompressedUploads.isSupported("x-gzip"));
+        assertFalse(CompressedUploads.isSupported("br"));
+        assertThrows(IllegalArgumentException.class,
+                () -> CompressedUploads.decode(new ByteArrayInputStream(new byte[0]), "br", Long.MAX_VALUE));
+    }
+
+    @Test
+    void testReportsTheSameLinesAsThePlainFile() {
+        String csv = "A;B;10\n".repeat(50_000) + "A;B\n";
+
+        for (byte[] body : new byte[][]{gzip(csv), zlib(csv), csv.getBytes(StandardCharsets.UTF_8)}) {
+            CsvFormatException e = assertThrows(CsvFormatException.class, () -> parse(body, null));
+            assertEquals("Invalid format at line 50001", e.getMessage());
+        }
+    }
+
+    @Test
+    void testRejectsCorruptAndTruncatedData() {
+        byte[] gzip = gzip("A;B;10\n".repeat(10_000));
+        byte[] truncated = Arrays.copyOf(gzip, gzip.length / 2);
+        byte[] corrupt = gzip.clone();
+        corrupt[gzip.length / 2] ^= 0x55;
+
+        assertThrows(InvalidCompressedDataException.class, () -> parse(truncated, null));
+        assertThrows(InvalidCompressedDataException.class, () -> parse(corrupt, null));
+        assertThrows(InvalidCompressedDataException.class, () -> parse(CSV.getBytes(StandardCharsets.UTF_8), "gzip"));
+    }
+
+    @Test
+    void testStopsOnceTheInflatedSizePassesTheLimit() throws Exception {
+        String csv = "A;B;10\n".repeat(10_000);
+        byte[] gzip = gzip(csv);
+
+        try (InputStream in = CompressedUploads.decode(new ByteArrayInputStream(gzip), null, csv.length() - 1)) {
+            assertThrows(UploadTooLargeException.class, () -> new ConnectionCsvParser().parse(in));
+        }
+        try (InputStream in = CompressedUploads.decode(new ByteArrayInputStream(gzip), null, csv.length())) {
+            assertEquals(10_000, new ConnectionCsvParser().parse(in).edgeCount());
+        }
+    }
+
+    @Test
+    void testRecognizesCompressedStarts() throws Exception {
+        assertTrue(CompressedUploads.startsCompressed(new ByteArrayInputStream(gzip(CSV))));
+        assertTrue(CompressedUploads.startsCompressed(new ByteArrayInputStream(zlib(CSV))));
+        assertFalse(CompressedUploads.startsCompressed(new ByteArrayInputStream("x;y;1\n".getBytes(StandardCharsets.UTF_8))));
+        assertFalse(CompressedUploads.startsCompressed(new ByteArrayInputStream(new byte[]{0x78})));
+    }
+
+    private static Graph parse(byte[] body, String contentEncoding) throws IOException, CsvFormatException {
+        try (InputStream in = CompressedUploads.decode(new ByteArrayInputStream(body), contentEncoding, Long.MAX_VALUE)) {
+            return new ConnectionCsvParser().parse(in);
+        }
+    }
+
+    private static byte[] gzip(String content) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] zlib(String content) {
+        return deflated(content, false);
+    }
+
+    private static byte[] deflate(String content) {
+        return deflated(content, true);
+    }
+
+    private static byte[] deflated(String content, boolean bare) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION, bare))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,151 @@
+package com.ruta.api.util;
+
+import com.ruta.api.model.CompactGraph;
+import com.ruta.api.model.Graph;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+class ConnectionCsvParserTest {
+
+    @Test
+    void testParsesConnectionsAndSkipsHeader() throws Exception {
+        Graph graph = parse("loc_start;loc_end;time\nA;B;10\n\nB;C;15\n");
+
+        CompactGraph compact = graph.compact();
+        assertEquals(2, compact.edgeCount());
+        assertEquals(25, compact.findRoute("A", "C").getTotalTime());
+    }
+
+    @Test
+    void testReportsLineNumbers() {
+        assertEquals("Invalid format at line 3", error("A;B;10\n\nA;B\n"));
+        assertEquals("Invalid time at line 2", error("A;B;10\nA;B;x\n"));
+        assertEquals("Invalid data at line 2", error("A;B;10\r\nA; ;5\r\n"));
+        assertEquals("Invalid data at line 1", error("A;B;-1"));
+    }
+
+    @Test
+    void testMatchesStringBasedParsingOnEdgeCases() throws Exception {
+        String[] inputs = {
+                "a;b;c\n1;2;3",            // header
+                "a;b\n1;2;3",              // two-field first line is not a header
+                "A;B;10;\nB;C;5;;",        // trailing empty fields are dropped
+                "A;B;10;x",                // a fourth field is not
+                "A;B;",                    // empty time is dropped, leaving two fields
+                ";B;10",                   // leading empty field is kept
+                "  A \t; B ;  7 \r\n",     // trimming
+                "A;B;+7\nA;C;-0",          // signs
+                "A;B;2147483647\nA;C;2147483648",
+                "A;B;١٢",        // parseInt accepts non-ASCII digits
+                "ñandú;Ñuñoa;3\nÑuñoa;ñandú;4",
+                "A;B;1\rB;C;2\r\rC;D;3",   // bare carriage returns end lines too
+                "\n\n \t \nh;e;x\nA;B;1",
+                ";;;",
+                "A;B;1\n;;;\n",
+        };
+        for (String input : inputs) {
+            assertEquals(reference(input), actual(input), input);
+        }
+    }
+
+    @Test
+    void testMatchesStringBasedParsingOnRandomInput() throws Exception {
+        Random random = new Random(3);
+        String alphabet = "AB ;;\t1-9\r\n\nxñ+";
+        for (int round = 0; round < 2_000; round++) {
+            StringBuilder input = new StringBuilder();
+            int length = random.nextInt(60);
+            for (int i = 0; i < length; i++) {
+                input.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertEquals(reference(input.toString()), actual(input.toString()), input.toString());
+        }
+    }
+
+    @Test
+    void testLinesLongerThanTheBuffer() throws Exception {
+        String name = "L".repeat(200_000);
+        Graph graph = parse("A;" + name + ";4\n" + name + ";C;6");
+
+        assertEquals(10, graph.compact().findRoute("A", "C").getTotalTime());
+    }
+
+    private static Graph parse(String csv) throws IOException, CsvFormatException {
+        return new ConnectionCsvParser().parse(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String error(String csv) {
+        CsvFormatException e = assertThrows(CsvFormatException.class, () -> parse(csv));
+        return e.getMessage();
+    }
+
+    private static List<String> actual(String csv) throws IOException {
+        try {
+            CompactGraph graph = parse(csv).compact();
+            List<String> edges = new ArrayList<>();
+            for (int u = 0; u < graph.nodeCount(); u++) {
+                for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                    edges.add(graph.nameOf(u) + "|" + graph.nameOf(graph.target(e)) + "|" + graph.weight(e));
+                }
+            }
+            Collections.sort(edges);
+            return edges;
+        } catch (CsvFormatException e) {
+            return List.of(e.getMessage());
+        }
+    }
+
+    // The upload loop as it was before the byte-level parser, reduced to its result
+    private static List<String> reference(String csv) throws IOException {
+        List<String> edges = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8));
+        String line;
+        int lineNumber = 0;
+        boolean isFirstLine = true;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) continue;
+            if (isFirstLine) {
+                try {
+                    String[] parts = line.split(";");
+                    if (parts.length == 3) {
+                        Integer.parseInt(parts[2].trim());
+                    }
+                } catch (NumberFormatException e) {
+                    isFirstLine = false;
+                    continue;
+                }
+                isFirstLine = false;
+            }
+            String[] parts = line.split(";");
+            if (parts.length != 3) {
+                return List.of("Invalid format at line " + lineNumber);
+            }
+            String source = parts[0].trim();
+            String target = parts[1].trim();
+            int time;
+            try {
+                time = Integer.parseInt(parts[2].trim());
+            } catch (NumberFormatException e) {
+                return List.of("Invalid time at line " + lineNumber);
+            }
+            if (source.isEmpty() || target.isEmpty() || time < 0) {
+                return List.of("Invalid data at line " + lineNumber);
+            }
+            edges.add(source + "|" + target + "|" + time);
+        }
+        Collections.sort(edges);
+        return edges;
+    }
+}
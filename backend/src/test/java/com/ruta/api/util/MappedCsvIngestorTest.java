@@ -0,0 +1,93 @@
+package com.ruta.api.util;
+
+import com.ruta.api.model.CompactGraph;
+import com.ruta.api.model.Graph;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class MappedCsvIngestorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testMatchesSequentialParserForEveryChunkSize() throws Exception {
+        String csv = "\n \r\nloc_start;loc_end;time\r\nA;B;10\nB;C;15\r\rC;A;7\n\nA;D;1;;\nD;B;2";
+        for (int chunkBytes = 1; chunkBytes <= csv.length() + 1; chunkBytes++) {
+            assertEquals(sequential(csv), mapped(csv, chunkBytes), "chunk " + chunkBytes);
+        }
+    }
+
+    @Test
+    void testReportsGlobalLineNumbers() throws Exception {
+        String csv = "A;B;1\nB;C;2\n\nC;D;3\nD;E\nE;F;x\n";
+        for (int chunkBytes = 1; chunkBytes <= csv.length(); chunkBytes++) {
+            assertEquals(List.of("Invalid format at line 5"), mapped(csv, chunkBytes), "chunk " + chunkBytes);
+        }
+        assertEquals(List.of("Invalid time at line 3"), mapped("A;B;1\n\nC;D;z\nE;F;-1\n", 4));
+    }
+
+    @Test
+    void testMatchesSequentialParserOnRandomFiles() throws Exception {
+        Random random = new Random(21);
+        for (int round = 0; round < 200; round++) {
+            StringBuilder csv = new StringBuilder(round % 2 == 0 ? "from;to;time\n" : "");
+            int lines = random.nextInt(200);
+            for (int i = 0; i < lines; i++) {
+                csv.append('N').append(random.nextInt(30)).append(';')
+                   .append('N').append(random.nextInt(30)).append(';');
+                csv.append(random.nextInt(100) == 0 ? "bad" : String.valueOf(random.nextInt(50)));
+                csv.append(random.nextBoolean() ? "\n" : "\r\n");
+            }
+            int chunkBytes = 1 + random.nextInt(64);
+            assertEquals(sequential(csv.toString()), mapped(csv.toString(), chunkBytes), csv.toString());
+        }
+    }
+
+    private List<String> mapped(String csv, int chunkBytes) throws IOException {
+        Path file = Files.writeString(dir.resolve("upload-" + chunkBytes + ".csv"), csv);
+        MappedCsvIngestor ingestor = new MappedCsvIngestor(file, 4, chunkBytes);
+        try {
+            Graph graph = ingestor.parse();
+            List<String> result = edges(graph);
+            result.add("lines " + ingestor.lineCount());
+            return result;
+        } catch (CsvFormatException e) {
+            return List.of(e.getMessage());
+        }
+    }
+
+    private static List<String> sequential(String csv) throws IOException {
+        ConnectionCsvParser parser = new ConnectionCsvParser();
+        try {
+            Graph graph = parser.parse(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+            List<String> result = edges(graph);
+            result.add("lines " + parser.lineCount());
+            return result;
+        } catch (CsvFormatException e) {
+            return List.of(e.getMessage());
+        }
+    }
+
+    // Edges by id, so the comparison also checks that location ids follow first appearance in the file
+    private static List<String> edges(Graph graph) {
+        CompactGraph compact = graph.compact();
+        List<String> edges = new ArrayList<>();
+        for (int u = 0; u < compact.nodeCount(); u++) {
+            for (int e = compact.edgeStart(u); e < compact.edgeEnd(u); e++) {
+                edges.add(u + ":" + compact.nameOf(u) + "->" + compact.target(e) + ":" + compact.weight(e));
+            }
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,100 @@
+package com.ruta.api.util;
+
+import com.ruta.api.model.Graph;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadAheadInputStreamTest {
+
+    @Test
+    void testParsingStartsBeforeTheLastByteArrives() throws Exception {
+        CountDownLatch parsedFirstRows = new CountDownLatch(1);
+        AtomicBoolean writerSawParsing = new AtomicBoolean();
+        PipedOutputStream network = new PipedOutputStream();
+        PipedInputStream body = new PipedInputStream(network, 1 << 16);
+        Thread writer = new Thread(() -> {
+            try {
+                network.write("loc_start;loc_end;time\nA;B;10\n".getBytes(StandardCharsets.UTF_8));
+                network.flush();
+                // The rest of the body is only sent once the parser has handled the first rows
+                writerSawParsing.set(parsedFirstRows.await(10, TimeUnit.SECONDS));
+                network.write("B;C;15\n".getBytes(StandardCharsets.UTF_8));
+                network.close();
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        writer.start();
+
+        Graph graph;
+        try (ReadAheadInputStream in = new ReadAheadInputStream(body, 2, Long.MAX_VALUE)) {
+            graph = new ConnectionCsvParser((bytes, lines) -> {
+                if (lines > 0) {
+                    parsedFirstRows.countDown();
+                }
+            }).parse(in);
+        }
+        writer.join();
+
+        assertTrue(writerSawParsing.get());
+        assertEquals(25, graph.compact().findRoute("A", "C").getTotalTime());
+    }
+
+    @Test
+    void testFailsOnceTheLimitIsPassed() {
+        byte[] csv = "A;B;10\nB;C;15\n".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+
+        try (ReadAheadInputStream in = new ReadAheadInputStream(new ByteArrayInputStream(csv), 2, csv.length - 1)) {
+            UploadTooLargeException e = assertThrows(UploadTooLargeException.class, () -> new ConnectionCsvParser().parse(in));
+            assertEquals(csv.length - 1, e.getMaxBytes());
+        }
+        try (ReadAheadInputStream in = new ReadAheadInputStream(new ByteArrayInputStream(csv), 2, csv.length)) {
+            assertDoesNotThrow(() -> new ConnectionCsvParser().parse(in));
+        }
+    }
+
+    @Test
+    void testCloseAfterAParseErrorStopsReading() {
+        // A body that never ends: a bad row first, then valid rows forever
+        AtomicLong served = new AtomicLong();
+        InputStream endless = new InputStream() {
+            private final byte[] row = "A;B;10\n".getBytes(StandardCharsets.UTF_8);
+
+            @Override
+            public int read() {
+                long at = served.getAndIncrement();
+                return at < 12 ? "A;B;1\nA;B;x\n".charAt((int) at) : row[(int) (at % row.length)];
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                for (int i = 0; i < len; i++) {
+                    b[off + i] = (byte) read();
+                }
+                return len;
+            }
+        };
+
+        ReadAheadInputStream in = new ReadAheadInputStream(endless, 2, Long.MAX_VALUE);
+        CsvFormatException e = assertThrows(CsvFormatException.class, () -> new ConnectionCsvParser().parse(in));
+        in.close();
+        long afterClose = served.get();
+
+        assertEquals(2, e.getLineNumber());
+        // Only the chunks in flight were read: the parser's one, the read-ahead and the one being filled
+        assertTrue(afterClose <= 4L * 64 * 1024, "read " + afterClose + " bytes");
+        assertEquals(afterClose, served.get());
+    }
+}